@@ -1,6 +1,11 @@
 -- ============================================
 -- Database Schema cho MedCard System (v2)
 -- MySQL Database
+--
+-- Server tự áp dụng schema lúc khởi động từ các migration trong
+-- src/main/resources/db/migration (ghi version vào bảng schema_version).
+-- File này dùng để tạo database và dữ liệu mẫu bằng tay, schema ở đây
+-- phải giống kết quả của tất cả migration; khi thêm migration mới thì cập nhật cả file này.
 -- ============================================
 
 -- Tạo database nếu chưa có
@@ -23,6 +28,7 @@ CREATE TABLE IF NOT EXISTS staff_info (
     email VARCHAR(150) COMMENT 'Email công việc',
     active TINYINT(1) NOT NULL DEFAULT 1 COMMENT 'Trạng thái: 1=Hoạt động, 0=Khoá',
     last_login_at DATETIME COMMENT 'Lần đăng nhập gần nhất',
+    avatar_url VARCHAR(500) NULL COMMENT 'URL ảnh đại diện trên MinIO',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT 'Thời gian tạo',
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT 'Thời gian cập nhật',
     INDEX idx_staff_id (staff_id),
@@ -251,6 +257,77 @@ CREATE TABLE IF NOT EXISTS card_sessions (
     INDEX idx_expires_at (expires_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='Session keys cho audit';
 
+-- ============================================
+-- 8.2b. Bảng handshake xác thực thẻ đang chờ (Auth Sessions)
+--   - Chỉ dùng khi server.sessionStore=jdbc (nhiều node dùng chung)
+--   - record: [version][createdAt][độ dài challenge][challengeServer], không chứa static key
+-- ============================================
+CREATE TABLE IF NOT EXISTS auth_sessions (
+    session_id CHAR(32) NOT NULL COMMENT 'Temp session ID trả về ở auth/start',
+    card_id VARCHAR(64) NOT NULL COMMENT 'ID thẻ gửi ở auth/start',
+    record VARBINARY(255) NOT NULL COMMENT 'Dữ liệu handshake dạng nhị phân',
+    expires_at BIGINT NOT NULL COMMENT 'Thời điểm hết hạn (epoch ms)',
+    PRIMARY KEY (session_id),
+    INDEX idx_expires (expires_at),
+    INDEX idx_card_expires (card_id, expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='Handshake xác thực thẻ đang chờ';
+
+-- ============================================
+-- 8.2c. Outbox thay đổi cho delta sync (Change Log)
+--   - GET /api/sync?since=<id> trả về thuốc, đơn thuốc, nhân viên, thẻ đã đổi sau token
+--   - op: U = tạo/sửa, D = xóa (tombstone)
+-- ============================================
+CREATE TABLE IF NOT EXISTS change_log (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT 'Change token',
+    entity VARCHAR(20) NOT NULL COMMENT 'medicine, prescription, staff, card',
+    entity_id VARCHAR(64) NOT NULL COMMENT 'Khóa của bản ghi (code, id, staff_id, card_id)',
+    op CHAR(1) NOT NULL COMMENT 'U = tạo/sửa, D = xóa',
+    changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (id),
+    INDEX idx_changed (changed_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='Thay đổi cho delta sync';
+
+-- ============================================
+-- 8.3. Bảng giao dịch thanh toán (Transactions)
+--   - Giao dịch nhận từ bank server (QR) hoặc thu tiền mặt
+--   - idempotency_key unique để bank gửi lại không bị ghi trùng
+-- ============================================
+CREATE TABLE IF NOT EXISTS transactions (
+    id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT,
+    bank_id VARCHAR(64) NOT NULL,
+    amount BIGINT NOT NULL,
+    ref VARCHAR(191) NOT NULL,
+    prescription_id BIGINT NULL COMMENT 'Đơn thuốc được thanh toán (parse từ "medcard {id}" trong ref/content)',
+    content TEXT NULL,
+    staff_id VARCHAR(64) NULL,
+    ts_ms BIGINT NOT NULL,
+    idempotency_key VARCHAR(191) NOT NULL,
+    payment_method VARCHAR(16) NOT NULL DEFAULT 'qr',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id),
+    UNIQUE KEY uniq_idem (idempotency_key),
+    INDEX idx_bank (bank_id),
+    INDEX idx_prescription (prescription_id, created_at),
+    INDEX idx_staff (staff_id),
+    INDEX idx_method (payment_method),
+    INDEX idx_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- ============================================
+-- 8.4. Bảng log thao tác hệ thống (System Logs)
+--   - Log từ client (POST /api/system/logs), giao dịch, hủy thanh toán...
+-- ============================================
+CREATE TABLE IF NOT EXISTS system_logs (
+    id INTEGER PRIMARY KEY AUTO_INCREMENT,
+    action VARCHAR(50) NOT NULL,
+    admin_staff_id VARCHAR(50),
+    description TEXT,
+    created_at VARCHAR(50) NOT NULL,
+    INDEX idx_action (action),
+    INDEX idx_admin (admin_staff_id),
+    INDEX idx_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- ============================================
 -- 9. Views hữu ích
 -- ============================================
@@ -0,0 +1,183 @@
+package dnd.server.db;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đọc một ResultSet 10k dòng (cột giống danh sách thuốc) thành danh sách row
+ * - legacyConvert: convertResultSetToList trước đây, đọc metadata (tên, kiểu cột) ở mỗi cột của mỗi dòng
+ *   và HashMap capacity mặc định
+ * - cachedMapperMaps: đường query() hiện tại, RowMapper cache theo SQL, HashMap đủ capacity
+ * - cachedMapperRows: đường queryRows(), Row dùng chung schema, giá trị theo index
+ * ResultSet là CachedRowSet trong bộ nhớ (không cần database), cùng chi phí getter cho cả ba cách
+ * Chạy: gradle jmh -PjmhArgs="RowMapperBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+    private static final int ROWS = 10_000;
+    private static final String SQL = "SELECT id, code, name, unit, quantity, min_quantity, price, expiry_date, updated_at FROM medicines";
+
+    private DbManager dbManager;
+    private CachedRowSet resultSet;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dbManager = DbManager.getInstance();
+
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(9);
+        column(metaData, 1, "id", Types.BIGINT);
+        column(metaData, 2, "code", Types.VARCHAR);
+        column(metaData, 3, "name", Types.VARCHAR);
+        column(metaData, 4, "unit", Types.VARCHAR);
+        column(metaData, 5, "quantity", Types.INTEGER);
+        column(metaData, 6, "min_quantity", Types.INTEGER);
+        column(metaData, 7, "price", Types.DECIMAL);
+        column(metaData, 8, "expiry_date", Types.DATE);
+        column(metaData, 9, "updated_at", Types.TIMESTAMP);
+
+        resultSet = RowSetProvider.newFactory().createCachedRowSet();
+        resultSet.setMetaData(metaData);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ROWS; i++) {
+            resultSet.moveToInsertRow();
+            resultSet.updateLong(1, i + 1);
+            resultSet.updateString(2, "MED" + i);
+            resultSet.updateString(3, "Medicine " + i);
+            resultSet.updateString(4, "box");
+            resultSet.updateInt(5, i % 500);
+            resultSet.updateInt(6, 10);
+            resultSet.updateBigDecimal(7, BigDecimal.valueOf(1000 + i, 2));
+            resultSet.updateDate(8, new Date(now + i * 86_400_000L));
+            resultSet.updateTimestamp(9, new Timestamp(now));
+            resultSet.insertRow();
+        }
+        resultSet.moveToCurrentRow();
+        // Không acceptChanges (cần connection): dòng vừa insert vẫn đọc được khi duyệt
+        if (resultSet.size() != ROWS) {
+            throw new IllegalStateException("Expected " + ROWS + " rows, got " + resultSet.size());
+        }
+    }
+
+    @Benchmark
+    public List<HashMap<String, Object>> legacyConvert() throws SQLException {
+        resultSet.beforeFirst();
+        return legacyConvertResultSetToList(resultSet);
+    }
+
+    @Benchmark
+    public List<HashMap<String, Object>> cachedMapperMaps() throws SQLException {
+        resultSet.beforeFirst();
+        return dbManager.readMaps(resultSet, dbManager.rowMapperFor(SQL, resultSet.getMetaData()));
+    }
+
+    @Benchmark
+    public List<Row> cachedMapperRows() throws SQLException {
+        resultSet.beforeFirst();
+        RowMapper mapper = dbManager.rowMapperFor(SQL, resultSet.getMetaData());
+        List<Row> rows = new ArrayList<>();
+        while (resultSet.next()) {
+            rows.add(mapper.readRow(resultSet));
+        }
+        return rows;
+    }
+
+    private static void column(RowSetMetaDataImpl metaData, int index, String name, int type) throws SQLException {
+        metaData.setColumnName(index, name);
+        metaData.setColumnLabel(index, name);
+        metaData.setColumnType(index, type);
+    }
+
+    /**
+     * Bản sao convertResultSetToList/getValueByType trước khi có RowMapper (không đóng ResultSet để dùng lại)
+     */
+    private static List<HashMap<String, Object>> legacyConvertResultSetToList(ResultSet rs) throws SQLException {
+        List<HashMap<String, Object>> list = new ArrayList<>();
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        while (rs.next()) {
+            HashMap<String, Object> map = new HashMap<>();
+
+            for (int i = 1; i <= columnCount; i++) {
+                String columnName = metaData.getColumnName(i);
+                int columnType = metaData.getColumnType(i);
+                Object value = legacyValueByType(rs, i, columnType);
+                map.put(columnName, value);
+            }
+
+            list.add(map);
+        }
+        return list;
+    }
+
+    private static Object legacyValueByType(ResultSet rs, int index, int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.BIGINT:
+                return rs.getLong(index);
+            case Types.INTEGER:
+                return rs.getInt(index);
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return rs.getByte(index);
+            case Types.FLOAT:
+            case Types.REAL:
+                return rs.getFloat(index);
+            case Types.DOUBLE:
+                return rs.getDouble(index);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return rs.getBigDecimal(index);
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return rs.getBoolean(index);
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return rs.getString(index);
+            case Types.DATE:
+                return rs.getDate(index);
+            case Types.TIME:
+                return rs.getTime(index);
+            case Types.TIMESTAMP:
+                return rs.getTimestamp(index);
+            case Types.BLOB:
+                return rs.getBytes(index);
+            case Types.CLOB:
+                return rs.getClob(index);
+            default:
+                return rs.getObject(index);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package dnd.server.handler;
+
+import dnd.server.api.ApiRouter;
+import dnd.server.db.DbManager;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Số kết nối mới mỗi giây: dựng pipeline giống ChannelInitializer của MedCardServer rồi đóng kết nối
+ * - sharedRouter: một HttpServerHandler (@Sharable) và ApiRouter dựng một lần lúc khởi động
+ * - perChannelRouter: mỗi kết nối dựng ApiRouter (~55 endpoint) và HttpServerHandler mới như trước đây
+ * Kết nối là EmbeddedChannel (không qua socket) để chỉ đo phần việc của server khi accept
+ * Chạy: gradle jmh -PjmhArgs="ConnectionSetupBenchmark -prof gc" (thư mục có server.properties, minio.properties)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionSetupBenchmark {
+    private DbManager dbManager;
+    private EndpointExecutor endpointExecutor;
+    private HttpServerHandler sharedHandler;
+
+    @Setup
+    public void setUp() {
+        // Không start pool: endpoint chỉ giữ tham chiếu DbManager, không query khi được dựng
+        dbManager = DbManager.getInstance();
+        endpointExecutor = EndpointExecutor.getInstance();
+        sharedHandler = new HttpServerHandler(new ApiRouter(dbManager), endpointExecutor);
+    }
+
+    @Benchmark
+    public boolean sharedRouter() {
+        return connect(sharedHandler);
+    }
+
+    @Benchmark
+    public boolean perChannelRouter() {
+        return connect(new HttpServerHandler(new ApiRouter(dbManager), endpointExecutor));
+    }
+
+    private static boolean connect(HttpServerHandler handler) {
+        EmbeddedChannel channel = new EmbeddedChannel(
+            new HttpServerCodec(),
+            new HttpObjectAggregator(1048576),
+            handler);
+        return channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,130 @@
+package dnd.server.service;
+
+import dnd.server.crypto.CryptoUtils;
+import dnd.server.db.CardKeyDao;
+import dnd.server.db.CardSessionDao;
+import dnd.server.db.DbManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Một lần đăng nhập thẻ đầy đủ phía server: auth/start -> auth/verify -> auth/complete
+ * giống các endpoint (AuthenticationService, SessionStore trong bộ nhớ, xóa static key sau complete)
+ * - Database được thay bằng CardKeyDao/CardSessionDao giả: chỉ đo crypto, cache thẻ và session store
+ * - Chữ ký của thẻ được tính trước cho một challenge cố định (ký là việc của thẻ), verify chạy trên cặp đó;
+ *   chi phí verify RSA không phụ thuộc giá trị challenge
+ * - Mỗi thread một thẻ và store riêng (authSessionsPerCard không bỏ session của thread khác)
+ * Chạy: gradle jmh -PjmhArgs="AuthHandshakeBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class AuthHandshakeBenchmark {
+    private static final String CARD_ID = "0102030405060708090A0B0C0D0E0F10";
+
+    private AuthenticationService authService;
+    private SessionStore sessionStore;
+    private byte[] signedChallenge;
+    private byte[] signature;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        // Static key mã hóa bằng master key placeholder của AuthenticationService (0x42 x 32)
+        byte[] masterKey = new byte[32];
+        Arrays.fill(masterKey, (byte) 0x42);
+        byte[] iv = CryptoUtils.randomBytes(16);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(masterKey, "AES"), new IvParameterSpec(iv));
+        byte[] staticKeyEncrypted = cipher.doFinal(CryptoUtils.randomBytes(32));
+
+        HashMap<String, Object> card = new HashMap<>();
+        card.put("card_id", CARD_ID);
+        card.put("public_key_rsa", keyPair.getPublic().getEncoded());
+        card.put("static_key_encrypted", staticKeyEncrypted);
+        card.put("static_key_iv", iv);
+        card.put("status", 1);
+
+        DbManager dbManager = DbManager.getInstance(); // Không start, DAO giả không dùng đến
+        CardKeyDao cardKeyDao = new CardKeyDao(dbManager) {
+            @Override
+            public HashMap<String, Object> findCredentials(String cardId) {
+                return new HashMap<>(card);
+            }
+
+            @Override
+            public int updateLastAuth(String cardId) {
+                return 1;
+            }
+        };
+        CardSessionDao cardSessionDao = new CardSessionDao(dbManager) {
+            @Override
+            public Long insertSession(String cardId, String sessionId, byte[] challengeServer,
+                                      byte[] challengeCard, Timestamp expiresAt) {
+                return 1L;
+            }
+        };
+        authService = new AuthenticationService(cardKeyDao, cardSessionDao, new CardCredentialCache(cardKeyDao, 1000, 300));
+        sessionStore = new InMemorySessionStore(10000, 3);
+
+        signedChallenge = CryptoUtils.generateChallenge();
+        Signature signer = Signature.getInstance("SHA1withRSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(signedChallenge);
+        signature = signer.sign();
+    }
+
+    @Benchmark
+    public AuthenticationService.AuthCompleteResult handshake() {
+        // auth/start
+        AuthenticationService.AuthStartResult start = authService.startAuthentication(CARD_ID);
+        String tempSessionId = CryptoUtils.randomHex(16);
+        SessionManager.AuthSession pending = new SessionManager.AuthSession(
+            CARD_ID, start.staticKey, start.publicKeyBytes, start.publicKey, start.challengeServer);
+        if (!sessionStore.put(tempSessionId, pending)) {
+            throw new IllegalStateException("Session store full");
+        }
+
+        // auth/verify
+        byte[] challengeCard = CryptoUtils.generateChallenge();
+        SessionManager.AuthSession verifying = sessionStore.get(tempSessionId);
+        if (!authService.verifySignature(verifying.publicKey, signedChallenge, signature, challengeCard).valid) {
+            throw new IllegalStateException("Signature rejected");
+        }
+
+        // auth/complete
+        SessionManager.AuthSession session = sessionStore.take(tempSessionId);
+        try {
+            return authService.completeAuthentication(session.cardId, session.staticKey, session.challengeServer, challengeCard);
+        } finally {
+            session.destroy();
+        }
+    }
+}
@@ -1,8 +1,21 @@
 package dnd.server;
 
+import dnd.server.api.ApiRouter;
+import dnd.server.config.ServerConfig;
+import dnd.server.db.ChangeLog;
+import dnd.server.db.DbConfig;
 import dnd.server.db.DbManager;
+import dnd.server.db.SchemaManager;
+import dnd.server.handler.EndpointExecutor;
 import dnd.server.handler.HttpServerHandler;
+import dnd.server.service.BatchExpiryIndex;
+import dnd.server.service.LogWriter;
+import dnd.server.service.PrescriptionTimeoutEngine;
+import dnd.server.service.SessionManager;
+import dnd.server.service.StatsSnapshot;
+import dnd.server.service.TransactionLinkBackfill;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
@@ -15,11 +28,11 @@ import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 
+import java.sql.SQLException;
 import java.util.logging.Logger;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.HashMap;
 
 /**
  * MedCard Server sử dụng Netty để xử lý HTTP REST API
@@ -32,9 +45,11 @@ public class MedCardServer {
     private EventLoopGroup workerGroup;
     private Channel serverChannel;
     private DbManager dbManager;
+    private EndpointExecutor endpointExecutor;
     private boolean running = false;
     private int port;
     private ScheduledExecutorService scheduler;
+    private ScheduledExecutorService timeoutScheduler;
 
     public MedCardServer(int port) {
         this.port = port;
@@ -61,8 +76,47 @@ public class MedCardServer {
         }
         logger.info("✓ Database đã kết nối!");
 
-        // Khởi động scheduled task để tự động hủy đơn thuốc quá 5 phút
-        startPrescriptionTimeoutTask();
+        // Áp dụng migration schema một lần, endpoint không chạy DDL nữa
+        try {
+            new SchemaManager(dbManager).migrate(DbConfig.getInstance().isAutoMigrate());
+        } catch (SQLException e) {
+            dbManager.shutdown();
+            throw new RuntimeException("Schema database không hợp lệ: " + e.getMessage(), e);
+        }
+
+        // Khởi tạo worker pool cho endpoint handlers (tách blocking I/O khỏi event loop)
+        endpointExecutor = EndpointExecutor.getInstance();
+        endpointExecutor.start(ServerConfig.getInstance());
+
+        // Ghi system_logs/audit_history bất đồng bộ theo batch
+        LogWriter.getInstance().start(ServerConfig.getInstance());
+
+        // Gắn prescription_id cho các giao dịch cũ chỉ có "medcard {id}" trong content
+        new TransactionLinkBackfill(dbManager).startInBackground();
+
+        // Scheduler chung cho các tác vụ nền
+        scheduler = Executors.newScheduledThreadPool(1);
+
+        // Tự động hủy đơn thuốc quá hạn chưa thanh toán (timer wheel theo deadline)
+        // Thread riêng: tick mỗi giây không phải chờ các tác vụ nền chậm (dọn change_log, reload index...)
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+        PrescriptionTimeoutEngine.getInstance().start(timeoutScheduler, ServerConfig.getInstance());
+
+        // Dọn các handshake xác thực thẻ bị bỏ dở
+        SessionManager.getInstance().startExpirySweep(scheduler);
+
+        // Dọn change_log của delta sync quá thời gian giữ
+        ChangeLog.startPruning(dbManager, scheduler, ServerConfig.getInstance().getChangeLogRetentionDays());
+
+        // Load index lô thuốc theo hạn dùng và reload định kỳ
+        startBatchExpiryIndex(ServerConfig.getInstance());
+
+        // Số liệu dashboard: tính một lần rồi cập nhật theo delta, tính lại định kỳ
+        startStatsSnapshot(ServerConfig.getInstance());
+
+        // Router và handler được tạo một lần, dùng chung cho mọi connection
+        ApiRouter apiRouter = new ApiRouter(dbManager);
+        HttpServerHandler httpServerHandler = new HttpServerHandler(apiRouter, endpointExecutor);
 
         // Tạo event loop groups
         bossGroup = new NioEventLoopGroup(1);
@@ -74,6 +128,7 @@ public class MedCardServer {
                     .channel(NioServerSocketChannel.class)
                     .option(ChannelOption.SO_BACKLOG, 128)
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT) // Response buffers từ pool
                     .handler(new LoggingHandler(LogLevel.INFO))
                     .childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
@@ -81,7 +136,7 @@ public class MedCardServer {
                             ch.pipeline()
                                     .addLast(new HttpServerCodec()) // HTTP encoder/decoder
                                     .addLast(new HttpObjectAggregator(1048576)) // Aggregate HTTP messages (max 1MB)
-                                    .addLast(new HttpServerHandler(dbManager)); // Custom handler
+                                    .addLast(httpServerHandler); // Shared handler
                         }
                     });
 
@@ -109,17 +164,8 @@ public class MedCardServer {
         logger.info("Đang dừng server...");
 
         // Dừng scheduled task
-        if (scheduler != null) {
-            scheduler.shutdown();
-            try {
-                if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                    scheduler.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                scheduler.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
-        }
+        shutdownScheduler(timeoutScheduler);
+        shutdownScheduler(scheduler);
 
         if (serverChannel != null) {
             serverChannel.close();
@@ -133,6 +179,14 @@ public class MedCardServer {
             bossGroup.shutdownGracefully();
         }
 
+        // Dừng worker pool sau khi không còn nhận request mới
+        if (endpointExecutor != null) {
+            endpointExecutor.shutdown();
+        }
+
+        // Ghi nốt các log đang chờ trước khi đóng connection pool
+        LogWriter.getInstance().stop();
+
         // Đóng database connection pool
         if (dbManager != null) {
             dbManager.shutdown();
@@ -149,79 +203,68 @@ public class MedCardServer {
         return running;
     }
 
-    /**
-     * Khởi động scheduled task để tự động hủy đơn thuốc quá 5 phút chưa thanh toán
-     */
-    private void startPrescriptionTimeoutTask() {
-        scheduler = Executors.newScheduledThreadPool(1);
-        
-        // Chạy task mỗi 30 giây để kiểm tra và hủy đơn thuốc quá 5 phút
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                cancelExpiredPrescriptions();
-            } catch (Exception e) {
-                logger.warning("Error in prescription timeout task: " + e.getMessage());
+    private static void shutdownScheduler(ScheduledExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
             }
-        }, 30, 30, TimeUnit.SECONDS); // Bắt đầu sau 30s, lặp lại mỗi 30s
-        
-        logger.info("✓ Prescription timeout task đã khởi động (chạy mỗi 30 giây)");
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
-     * Hủy các đơn thuốc đã quá 5 phút chưa được thanh toán
+     * Load BatchExpiryIndex lúc khởi động và reload định kỳ trên scheduler
+     * Nếu load lỗi thì index sẽ được load lại ở request đầu tiên cần đến
      */
-    private void cancelExpiredPrescriptions() {
+    private void startBatchExpiryIndex(ServerConfig config) {
+        BatchExpiryIndex expiryIndex = BatchExpiryIndex.getInstance();
         try {
-            // Tìm các prescription có status = 0 (Mới) hoặc 1 (Đang xử lý)
-            // và created_at > 5 phút trước, chưa có transaction thanh toán
-            String sql = """
-                SELECT p.id, p.prescription_code, p.created_at
-                FROM prescriptions p
-                WHERE (p.status = 0 OR p.status = 1)
-                  AND p.created_at < DATE_SUB(NOW(), INTERVAL 5 MINUTE)
-                  AND NOT EXISTS (
-                      SELECT 1 FROM transactions t
-                      WHERE t.ref = CONCAT('medcard ', p.id)
-                  )
-                """;
-            
-            java.util.List<HashMap<String, Object>> expiredPrescriptions = dbManager.query(sql);
-            
-            if (expiredPrescriptions.isEmpty()) {
-                return; // Không có đơn nào cần hủy
+            if (expiryIndex.reload()) {
+                logger.info("✓ Batch expiry index đã load");
             }
-            
-            logger.info("Tìm thấy " + expiredPrescriptions.size() + " đơn thuốc quá 5 phút chưa thanh toán");
-            
-            // Cập nhật status = 3 (Hủy) cho các đơn này
-            String updateSql = """
-                UPDATE prescriptions
-                SET status = 3, updated_at = NOW()
-                WHERE id = ?
-                  AND (status = 0 OR status = 1)
-                  AND created_at < DATE_SUB(NOW(), INTERVAL 5 MINUTE)
-                  AND NOT EXISTS (
-                      SELECT 1 FROM transactions t
-                      WHERE t.ref = CONCAT('medcard ', prescriptions.id)
-                  )
-                """;
-            
-            int cancelledCount = 0;
-            for (HashMap<String, Object> prescription : expiredPrescriptions) {
-                Long prescriptionId = ((Number) prescription.get("id")).longValue();
-                int affected = dbManager.update(updateSql, prescriptionId);
-                if (affected > 0) {
-                    cancelledCount++;
-                    String prescriptionCode = (String) prescription.get("prescription_code");
-                    logger.info("Đã hủy đơn thuốc: " + prescriptionCode + " (ID: " + prescriptionId + ") - quá 5 phút chưa thanh toán");
+        } catch (SQLException e) {
+            logger.warning("Không load được batch expiry index: " + e.getMessage());
+        }
+
+        int reloadSeconds = config.getBatchIndexReloadSeconds();
+        if (reloadSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    expiryIndex.reload();
+                } catch (Exception e) {
+                    logger.warning("Error reloading batch expiry index: " + e.getMessage());
                 }
-            }
-            
-            if (cancelledCount > 0) {
-                logger.info("Đã tự động hủy " + cancelledCount + " đơn thuốc quá 5 phút");
-            }
-        } catch (Exception e) {
-            logger.warning("Lỗi khi hủy đơn thuốc quá 5 phút: " + e.getMessage());
+            }, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Tính StatsSnapshot lúc khởi động và tính lại định kỳ trên scheduler
+     * Nếu lỗi thì snapshot sẽ được tính ở request đầu tiên cần đến
+     */
+    private void startStatsSnapshot(ServerConfig config) {
+        StatsSnapshot stats = StatsSnapshot.getInstance();
+        if (stats.recompute()) {
+            logger.info("✓ Dashboard stats đã load");
+        } else {
+            logger.warning("Không load được dashboard stats");
+        }
+
+        int recomputeSeconds = config.getStatsRecomputeSeconds();
+        if (recomputeSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    stats.recompute();
+                } catch (Exception e) {
+                    logger.warning("Error recomputing dashboard stats: " + e.getMessage());
+                }
+            }, recomputeSeconds, recomputeSeconds, TimeUnit.SECONDS);
         }
     }
 
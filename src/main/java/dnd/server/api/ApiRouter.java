@@ -2,37 +2,49 @@ package dnd.server.api;
 
 import dnd.server.db.DbManager;
 import dnd.server.endpoints.*;
+import dnd.server.service.TableVersions;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
 /**
  * Router để route các API requests đến các endpoint handlers tương ứng
+ * Được tạo một lần khi server khởi động và dùng chung cho mọi connection,
+ * cây routes không thay đổi sau khi khởi tạo nên an toàn khi truy cập đa luồng
  */
 public class ApiRouter {
     private static final Logger logger = Logger.getLogger(ApiRouter.class.getName());
     
     private final DbManager dbManager;
-    private final Map<String, EndpointHandler> routes;
+    private final RouteTree routes;
+    private final RequestCoalescer coalescer = RequestCoalescer.getInstance();
+    private final TableVersions tableVersions = TableVersions.getInstance();
 
     public ApiRouter(DbManager dbManager) {
         this.dbManager = dbManager;
-        this.routes = new HashMap<>();
-        registerRoutes();
+        this.routes = new RouteTree();
+        registerRoutes(routes);
+        logger.info("Đã đăng ký " + routes.size() + " routes");
     }
 
     /**
      * Đăng ký các routes
+     * Route GET được đọc đồng loạt bởi nhiều client (danh sách thuốc, dashboard, nhân viên) được đánh dấu
+     * coalesced(): các request giống hệt đang chạy đồng thời dùng chung một lần xử lý (RequestCoalescer)
+     * Route GET chỉ đọc danh mục (thuốc, nhân viên, thẻ) có versionedBy(): ETag theo version bảng, client gửi
+     * If-None-Match khớp thì nhận 304 mà không chạy query. Mọi route ghi vào các bảng đó phải có invalidates()
      */
-    private void registerRoutes() {
+    private void registerRoutes(RouteTree routes) {
         // Medicines endpoints
-        routes.put("GET /api/medicines", new MedicinesEndpoint(dbManager));
-        routes.put("GET /api/medicines/:id", new MedicineDetailEndpoint(dbManager));
-        routes.put("POST /api/medicines", new CreateMedicineEndpoint(dbManager));
-        routes.put("PUT /api/medicines/:id", new UpdateMedicineEndpoint(dbManager));
-        routes.put("DELETE /api/medicines/:id", new DeleteMedicineEndpoint(dbManager));
+        routes.put("GET /api/medicines", new MedicinesEndpoint(dbManager))
+            .versionedBy(TableVersions.MEDICINES, TableVersions.MEDICINE_BATCHES).coalesced();
+        routes.put("GET /api/medicines/:id", new MedicineDetailEndpoint(dbManager))
+            .versionedBy(TableVersions.MEDICINES);
+        routes.put("POST /api/medicines", new CreateMedicineEndpoint(dbManager))
+            .invalidates(TableVersions.MEDICINES, TableVersions.MEDICINE_BATCHES);
+        routes.put("PUT /api/medicines/:id", new UpdateMedicineEndpoint(dbManager))
+            .invalidates(TableVersions.MEDICINES, TableVersions.MEDICINE_BATCHES);
+        routes.put("DELETE /api/medicines/:id", new DeleteMedicineEndpoint(dbManager))
+            .invalidates(TableVersions.MEDICINES, TableVersions.MEDICINE_BATCHES);
         
         // Prescriptions endpoints
         routes.put("GET /api/prescriptions", new PrescriptionsEndpoint(dbManager));
@@ -41,23 +53,27 @@ public class ApiRouter {
         routes.put("PUT /api/prescriptions/:id", new UpdatePrescriptionEndpoint(dbManager));
         routes.put("GET /api/prescriptions/:id/qr-code", new dnd.server.endpoints.GetPrescriptionQrEndpoint(dbManager));
         routes.put("GET /api/prescriptions/:id/payment-status", new dnd.server.endpoints.GetPrescriptionPaymentStatusEndpoint(dbManager));
+        routes.put("GET /api/prescriptions/:id/payment-events", new dnd.server.endpoints.PrescriptionPaymentEventsEndpoint(dbManager));
         routes.put("POST /api/prescriptions/:id/cancel-payment", new dnd.server.endpoints.CancelPrescriptionPaymentEndpoint(dbManager));
         
         // Inventory endpoints
         routes.put("GET /api/inventory/logs", new InventoryLogsEndpoint(dbManager));
-        routes.put("POST /api/inventory/import", new ImportInventoryEndpoint(dbManager));
-        routes.put("POST /api/inventory/export", new ExportInventoryEndpoint(dbManager));
+        routes.put("POST /api/inventory/import", new ImportInventoryEndpoint(dbManager))
+            .invalidates(TableVersions.MEDICINES, TableVersions.MEDICINE_BATCHES);
+        routes.put("POST /api/inventory/export", new ExportInventoryEndpoint(dbManager))
+            .invalidates(TableVersions.MEDICINES, TableVersions.MEDICINE_BATCHES);
         
         // History endpoints
         routes.put("GET /api/history", new HistoryEndpoint(dbManager));
         
         // Dashboard/Stats endpoints
-        routes.put("GET /api/dashboard/stats", new DashboardStatsEndpoint(dbManager));
+        routes.put("GET /api/dashboard/stats", new DashboardStatsEndpoint(dbManager)).coalesced();
         
         // Authentication endpoints
         routes.put("POST /api/auth/start", new dnd.server.endpoints.AuthStartEndpoint(dbManager));
         routes.put("POST /api/auth/verify", new dnd.server.endpoints.AuthVerifyEndpoint(dbManager));
-        routes.put("POST /api/auth/complete", new dnd.server.endpoints.AuthCompleteEndpoint(dbManager));
+        routes.put("POST /api/auth/complete", new dnd.server.endpoints.AuthCompleteEndpoint(dbManager))
+            .invalidates(TableVersions.CARD_KEYS); // Cập nhật last_auth_at
         
         // Admin endpoints
         routes.put("POST /api/admin/login", new dnd.server.endpoints.AdminLoginEndpoint(dbManager));
@@ -66,30 +82,47 @@ public class ApiRouter {
         routes.put("POST /api/system/logs", new dnd.server.endpoints.SystemLogEndpoint(dbManager));
         routes.put("GET /api/system/logs/system", new dnd.server.endpoints.SystemLogsListEndpoint(dbManager));
         routes.put("GET /api/system/logs/audit", new dnd.server.endpoints.AuditHistoryEndpoint(dbManager));
-        routes.put("GET /api/system/inventory/summary", new dnd.server.endpoints.InventorySummaryEndpoint(dbManager));
+        routes.put("GET /api/system/inventory/summary", new dnd.server.endpoints.InventorySummaryEndpoint(dbManager)).coalesced();
         
         // Staff endpoints
-        routes.put("GET /api/staff", new dnd.server.endpoints.StaffListEndpoint(dbManager));
-        routes.put("GET /api/staff/:id/profile", new dnd.server.endpoints.GetStaffProfileEndpoint(dbManager));
-        routes.put("POST /api/staff", new dnd.server.endpoints.CreateStaffEndpoint(dbManager));
-        routes.put("PUT /api/staff/:id", new dnd.server.endpoints.UpdateStaffEndpoint(dbManager));
-        routes.put("PUT /api/staff/:id/active", new dnd.server.endpoints.UpdateStaffActiveEndpoint(dbManager));
-        routes.put("PUT /api/staff/:id/password", new dnd.server.endpoints.ResetStaffPasswordEndpoint(dbManager));
-        routes.put("POST /api/staff/:id/admin", new dnd.server.endpoints.GrantAdminEndpoint(dbManager));
-        routes.put("DELETE /api/staff/:id/admin", new dnd.server.endpoints.RevokeAdminEndpoint(dbManager));
-        routes.put("POST /api/staff/:id/avatar", new dnd.server.endpoints.UploadStaffAvatarEndpoint(dbManager));
+        routes.put("GET /api/staff", new dnd.server.endpoints.StaffListEndpoint(dbManager))
+            .versionedBy(TableVersions.STAFF_INFO, TableVersions.ADMIN_ACCOUNTS, TableVersions.CARD_KEYS).coalesced();
+        routes.put("GET /api/staff/:id/profile", new dnd.server.endpoints.GetStaffProfileEndpoint(dbManager))
+            .versionedBy(TableVersions.STAFF_INFO);
+        routes.put("POST /api/staff", new dnd.server.endpoints.CreateStaffEndpoint(dbManager))
+            .invalidates(TableVersions.STAFF_INFO);
+        routes.put("PUT /api/staff/:id", new dnd.server.endpoints.UpdateStaffEndpoint(dbManager))
+            .invalidates(TableVersions.STAFF_INFO);
+        routes.put("PUT /api/staff/:id/active", new dnd.server.endpoints.UpdateStaffActiveEndpoint(dbManager))
+            .invalidates(TableVersions.STAFF_INFO);
+        routes.put("PUT /api/staff/:id/password", new dnd.server.endpoints.ResetStaffPasswordEndpoint(dbManager))
+            .invalidates(TableVersions.STAFF_INFO);
+        routes.put("POST /api/staff/:id/admin", new dnd.server.endpoints.GrantAdminEndpoint(dbManager))
+            .invalidates(TableVersions.ADMIN_ACCOUNTS);
+        routes.put("DELETE /api/staff/:id/admin", new dnd.server.endpoints.RevokeAdminEndpoint(dbManager))
+            .invalidates(TableVersions.ADMIN_ACCOUNTS);
+        routes.put("POST /api/staff/:id/avatar", new dnd.server.endpoints.UploadStaffAvatarEndpoint(dbManager))
+            .invalidates(TableVersions.STAFF_INFO);
         
         // Card endpoints
-        routes.put("POST /api/cards/issue", new dnd.server.endpoints.IssueCardEndpoint(dbManager));
+        routes.put("POST /api/cards/issue", new dnd.server.endpoints.IssueCardEndpoint(dbManager))
+            .invalidates(TableVersions.CARD_KEYS);
         routes.put("GET /api/cards/issue-counter/:type", new dnd.server.endpoints.GetIssueCounterEndpoint(dbManager));
-        routes.put("GET /api/cards", new dnd.server.endpoints.GetAllCardsEndpoint(dbManager));
-        routes.put("GET /api/cards/:id", new dnd.server.endpoints.GetCardEndpoint(dbManager));
+        routes.put("GET /api/cards", new dnd.server.endpoints.GetAllCardsEndpoint(dbManager))
+            .versionedBy(TableVersions.CARD_KEYS);
+        routes.put("GET /api/cards/:id", new dnd.server.endpoints.GetCardEndpoint(dbManager))
+            .versionedBy(TableVersions.CARD_KEYS);
         routes.put("GET /api/cards/:id/keys", new dnd.server.endpoints.GetCardKeysEndpoint(dbManager));
-        routes.put("GET /api/cards/staff/:id", new dnd.server.endpoints.GetCardsByStaffEndpoint(dbManager));
-        routes.put("PUT /api/cards/staff/:id/revoke", new dnd.server.endpoints.RevokeCardByStaffEndpoint(dbManager));
-        routes.put("PUT /api/cards/:id/revoke", new dnd.server.endpoints.RevokeCardEndpoint(dbManager));
-        routes.put("PUT /api/cards/:id/activate", new dnd.server.endpoints.ActivateCardEndpoint(dbManager));
-        routes.put("PUT /api/cards/:id/last-auth", new dnd.server.endpoints.UpdateCardLastAuthEndpoint(dbManager));
+        routes.put("GET /api/cards/staff/:id", new dnd.server.endpoints.GetCardsByStaffEndpoint(dbManager))
+            .versionedBy(TableVersions.CARD_KEYS);
+        routes.put("PUT /api/cards/staff/:id/revoke", new dnd.server.endpoints.RevokeCardByStaffEndpoint(dbManager))
+            .invalidates(TableVersions.CARD_KEYS);
+        routes.put("PUT /api/cards/:id/revoke", new dnd.server.endpoints.RevokeCardEndpoint(dbManager))
+            .invalidates(TableVersions.CARD_KEYS);
+        routes.put("PUT /api/cards/:id/activate", new dnd.server.endpoints.ActivateCardEndpoint(dbManager))
+            .invalidates(TableVersions.CARD_KEYS);
+        routes.put("PUT /api/cards/:id/last-auth", new dnd.server.endpoints.UpdateCardLastAuthEndpoint(dbManager))
+            .invalidates(TableVersions.CARD_KEYS);
         routes.put("POST /api/cards/sessions", new dnd.server.endpoints.CreateCardSessionEndpoint(dbManager));
         
         // APDU forwarding endpoint
@@ -98,97 +131,71 @@ public class ApiRouter {
         // Card info endpoint
         routes.put("GET /api/card/:id/staff", new dnd.server.endpoints.GetStaffIdEndpoint(dbManager));
         
-        // Health check
+        // Delta sync cho client desktop
+        routes.put("GET /api/sync", new SyncEndpoint(dbManager));
+        
+        // Nhiều request trong một round trip, sub-request được route lại qua router này
+        routes.put("POST /api/batch", new BatchEndpoint(this));
+        
+        // Health check và metrics
         routes.put("GET /api/health", new HealthCheckEndpoint(dbManager));
+        routes.put("GET /api/metrics", new MetricsEndpoint(dbManager));
         
         // Bank transaction endpoint
         routes.put("POST /api/transactions", new dnd.server.endpoints.TransactionEndpoint(dbManager));
     }
 
     /**
-     * Xử lý HTTP request và trả về HTTP response
+     * Xử lý request và trả về response
      */
-    public HttpResponse handle(HttpRequest request) {
+    public Response handle(Request request) {
         String method = request.getMethod().toUpperCase();
         String path = request.getPath();
         
         // Tìm route khớp
-        EndpointHandler handler = findHandler(method, path);
+        RouteTree.Route route = routes.find(method, path);
         
-        if (handler == null) {
+        if (route == null) {
             logger.warning("Không tìm thấy handler cho: " + method + " " + path);
-            return HttpResponse.notFound("Endpoint không tồn tại: " + method + " " + path);
+            return Response.notFound("Endpoint không tồn tại: " + method + " " + path);
         }
 
         try {
-            // Convert HttpRequest thành Request (legacy) để tương thích với endpoints
-            Request legacyRequest = convertToLegacyRequest(request);
-            Response legacyResponse = handler.handle(legacyRequest);
-            
-            // Convert Response thành HttpResponse
-            return convertToHttpResponse(legacyResponse);
-        } catch (Exception e) {
-            logger.severe("Lỗi khi xử lý request: " + e.getMessage());
-            e.printStackTrace();
-            return HttpResponse.internalError("Lỗi server: " + e.getMessage());
-        }
-    }
+            request.route = route;
+            request.pathParams = route.extractParams(path);
 
-    /**
-     * Convert HttpRequest thành Request (legacy) để tương thích
-     */
-    private Request convertToLegacyRequest(HttpRequest httpRequest) {
-        return Request.fromHttpRequest(httpRequest);
-    }
-
-    /**
-     * Convert Response thành HttpResponse
-     */
-    private HttpResponse convertToHttpResponse(Response response) {
-        if (response.getStatusCode() == 200) {
-            return HttpResponse.success(response.getMessage(), response.getData());
-        } else {
-            String errorMsg = response.getError() != null 
-                ? response.getError().get("message").getAsString() 
-                : "Error";
-            return HttpResponse.error(response.getStatusCode(), errorMsg);
-        }
-    }
-
-    /**
-     * Tìm handler phù hợp với method và path
-     */
-    private EndpointHandler findHandler(String method, String path) {
-        // Thử exact match trước
-        String key = method + " " + path;
-        EndpointHandler handler = routes.get(key);
-        if (handler != null) {
-            return handler;
-        }
+            // ETag tính trước khi chạy handler: dữ liệu handler đọc không thể cũ hơn version trong ETag
+            String etag = route.getVersionedBy().length > 0 ? tableVersions.etag(route.getVersionedBy()) : null;
+            if (etag != null && ETags.matches(request.getHeader("if-none-match"), etag)) {
+                return Response.notModified(etag);
+            }
 
-        // Thử pattern matching cho routes có parameters (ví dụ: /api/medicines/:id)
-        for (Map.Entry<String, EndpointHandler> entry : routes.entrySet()) {
-            String routeKey = entry.getKey();
-            String[] parts = routeKey.split(" ", 2);
-            if (parts.length == 2 && parts[0].equals(method)) {
-                String routePath = parts[1];
-                if (matchesPath(routePath, path)) {
-                    return entry.getValue();
+            try {
+                if (route.isCoalesced()) {
+                    return coalescer.handle(request, () -> withEtag(route.getHandler().handle(request), etag));
+                }
+                return withEtag(route.getHandler().handle(request), etag);
+            } finally {
+                // Tăng version sau khi handler đã commit, kể cả khi lỗi (tăng thừa chỉ làm client tải lại)
+                // Route ghi không khai báo bảng vẫn bump (không bảng nào) để tăng writes() cho RequestCoalescer
+                if (route.getInvalidates().length > 0 || !"GET".equals(method)) {
+                    tableVersions.bump(route.getInvalidates());
                 }
             }
+        } catch (Exception e) {
+            logger.severe("Lỗi khi xử lý request: " + e.getMessage());
+            e.printStackTrace();
+            return Response.internalError("Lỗi server: " + e.getMessage());
         }
-
-        return null;
     }
 
     /**
-     * Kiểm tra xem path có khớp với route pattern không
-     * Ví dụ: /api/medicines/:id khớp với /api/medicines/123
+     * Gắn ETag theo version cho response 200 (response lỗi không được cache)
      */
-    private boolean matchesPath(String routePattern, String actualPath) {
-        // Convert pattern sang regex
-        String regex = routePattern.replaceAll(":[^/]+", "[^/]+");
-        return Pattern.matches(regex, actualPath);
+    private static Response withEtag(Response response, String etag) {
+        if (etag == null || response.getStatusCode() != 200 || response.isEventStream()) {
+            return response;
+        }
+        return response.withEtag(etag);
     }
 }
-
@@ -0,0 +1,61 @@
+package dnd.server.api;
+
+import dnd.server.util.HexUtils;
+import io.netty.buffer.ByteBuf;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Tạo và so khớp ETag cho response GET
+ * - ETag theo nội dung: SHA-256 của body (16 byte đầu), dùng khi route không có TableVersions
+ * - If-None-Match so khớp theo kiểu weak (RFC 9110): bỏ tiền tố W/, chấp nhận danh sách và "*"
+ */
+public final class ETags {
+    private static final int HASH_BYTES = 16;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private ETags() {
+    }
+
+    /**
+     * ETag strong theo nội dung body (không thay đổi readerIndex của buffer)
+     */
+    public static String ofContent(ByteBuf content) {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        digest.update(content.nioBuffer());
+        byte[] hash = Arrays.copyOf(digest.digest(), HASH_BYTES);
+        return "\"h" + HexUtils.bytesToHexLower(hash) + "\"";
+    }
+
+    /**
+     * Header If-None-Match có chứa etag không
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
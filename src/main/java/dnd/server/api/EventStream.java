@@ -0,0 +1,137 @@
+package dnd.server.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response dạng Server-Sent Events (text/event-stream): kết nối được giữ mở,
+ * endpoint (hoặc listener của nó) gửi event bất cứ lúc nào
+ * - Endpoint tạo EventStream, đăng ký listener rồi trả về Response.eventStream(stream),
+ *   worker thread được trả lại ngay, không bị giữ trong suốt kết nối
+ * - Event gửi trước khi HttpServerHandler gắn kết nối (attach) được giữ lại và gửi sau
+ * - onClose chạy một lần khi stream đóng, dù do server (close) hay client ngắt kết nối
+ * Thread-safe, send/close có thể gọi từ bất kỳ thread nào
+ */
+public class EventStream {
+    private final List<String> pending = new ArrayList<>();
+    private final List<Runnable> closeHandlers = new ArrayList<>();
+    private Sink sink;
+    private boolean closed;
+    private boolean closeRequested;
+
+    /**
+     * Gửi một event, data được serialize thành JSON trên một dòng
+     */
+    public void send(String event, Object data) {
+        StringBuilder frame = new StringBuilder();
+        if (event != null) {
+            frame.append("event: ").append(event).append('\n');
+        }
+        frame.append("data: ").append(JsonResponseWriter.gson().toJson(data)).append("\n\n");
+        write(frame.toString());
+    }
+
+    /**
+     * Gửi comment (client bỏ qua), dùng làm heartbeat giữ kết nối qua proxy
+     */
+    public void comment(String text) {
+        write(": " + text + "\n\n");
+    }
+
+    private synchronized void write(String frame) {
+        if (closed || closeRequested) {
+            return;
+        }
+        if (sink == null) {
+            pending.add(frame);
+        } else {
+            sink.write(frame);
+        }
+    }
+
+    /**
+     * Kết thúc stream sau các event đã gửi
+     */
+    public void close() {
+        Sink current;
+        synchronized (this) {
+            if (closed || closeRequested) {
+                return;
+            }
+            closeRequested = true;
+            current = sink;
+        }
+        if (current != null) {
+            current.end();
+        }
+        // Chưa attach: HttpServerHandler sẽ gửi các event còn giữ rồi kết thúc ngay
+    }
+
+    /**
+     * Đăng ký việc cần làm khi stream đóng (ví dụ hủy subscription)
+     * Nếu stream đã đóng thì chạy ngay
+     */
+    public void onClose(Runnable handler) {
+        synchronized (this) {
+            if (!closed) {
+                closeHandlers.add(handler);
+                return;
+            }
+        }
+        handler.run();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Gắn kết nối HTTP, gọi bởi HttpServerHandler sau khi đã gửi header
+     */
+    public void attach(Sink sink) {
+        boolean end;
+        synchronized (this) {
+            this.sink = sink;
+            for (String frame : pending) {
+                sink.write(frame);
+            }
+            pending.clear();
+            end = closeRequested;
+        }
+        if (end) {
+            sink.end();
+        }
+    }
+
+    /**
+     * Kết nối đã đóng (server kết thúc hoặc client ngắt), gọi bởi HttpServerHandler
+     */
+    public void disconnected() {
+        List<Runnable> handlers;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            sink = null;
+            pending.clear();
+            handlers = new ArrayList<>(closeHandlers);
+            closeHandlers.clear();
+        }
+        for (Runnable handler : handlers) {
+            handler.run();
+        }
+    }
+
+    /**
+     * Nơi ghi event ra kết nối HTTP (do HttpServerHandler cung cấp)
+     */
+    public interface Sink {
+        void write(String frame);
+
+        /**
+         * Gửi phần kết thúc response và đóng kết nối
+         */
+        void end();
+    }
+}
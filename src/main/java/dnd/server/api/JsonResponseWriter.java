@@ -0,0 +1,235 @@
+package dnd.server.api;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.text.DateFormat;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serialize Response thẳng vào ByteBuf (pooled) qua JsonWriter,
+ * không tạo JsonObject tree hay String trung gian
+ * - Gson dùng chung, đã đăng ký type adapter cho các kiểu DbManager.query trả về
+ *   (Map rows, Timestamp, BigDecimal, byte[]); output giống hệt Gson mặc định
+ * - Gson này cũng dùng để đọc request body (Request.getBodyAs): Timestamp và byte[] chỉ đổi cách ghi,
+ *   đọc vẫn dùng adapter mặc định của Gson
+ */
+public final class JsonResponseWriter {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(new WriteOnlyAdapterFactory())
+            .registerTypeAdapter(BigDecimal.class, new BigDecimalAdapter().nullSafe())
+            .registerTypeAdapterFactory(new ObjectMapAdapterFactory())
+            .create();
+
+    private JsonResponseWriter() {
+    }
+
+    /**
+     * Gson dùng chung (thread-safe) cho việc serialize response
+     */
+    public static Gson gson() {
+        return gson;
+    }
+
+    /**
+     * Ghi response vào buffer cấp phát từ allocator
+     * Buffer được release nếu serialize lỗi
+     */
+    public static ByteBuf write(Response response, ByteBufAllocator allocator) throws IOException {
+        ByteBuf buffer = allocator.buffer(INITIAL_CAPACITY);
+        try (Writer writer = new OutputStreamWriter(new ByteBufOutputStream(buffer), StandardCharsets.UTF_8)) {
+            response.writeJson(writer);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Serialize response ra mảng byte UTF-8 (để dùng chung cho nhiều client)
+     */
+    public static byte[] toBytes(Response response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_CAPACITY);
+        try (Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            response.writeJson(writer);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Adapter chỉ thay cách ghi Timestamp và byte[], đọc chuyển cho adapter mặc định của Gson
+     */
+    private static class WriteOnlyAdapterFactory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            Class<? super T> rawType = typeToken.getRawType();
+            if (rawType == Timestamp.class) {
+                TypeAdapter<Timestamp> delegate = (TypeAdapter<Timestamp>) gson.getDelegateAdapter(this, typeToken);
+                return (TypeAdapter<T>) new TimestampAdapter(delegate).nullSafe();
+            }
+            if (rawType == byte[].class) {
+                TypeAdapter<byte[]> delegate = (TypeAdapter<byte[]>) gson.getDelegateAdapter(this, typeToken);
+                return (TypeAdapter<T>) new ByteArrayAdapter(delegate).nullSafe();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Timestamp: cùng format với DateTypeAdapter mặc định của Gson (DateFormat DEFAULT, Locale.US),
+     * nhưng mỗi thread giữ một DateFormat riêng thay vì synchronized trên một instance
+     */
+    private static class TimestampAdapter extends TypeAdapter<Timestamp> {
+        private static final ThreadLocal<DateFormat> FORMAT = ThreadLocal.withInitial(
+                () -> DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT, Locale.US));
+
+        private final TypeAdapter<Timestamp> delegate;
+
+        TimestampAdapter(TypeAdapter<Timestamp> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(JsonWriter out, Timestamp value) throws IOException {
+            out.value(FORMAT.get().format(value));
+        }
+
+        @Override
+        public Timestamp read(JsonReader in) throws IOException {
+            return delegate.read(in);
+        }
+    }
+
+    private static class BigDecimalAdapter extends TypeAdapter<BigDecimal> {
+        @Override
+        public void write(JsonWriter out, BigDecimal value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public BigDecimal read(JsonReader in) throws IOException {
+            return new BigDecimal(in.nextString());
+        }
+    }
+
+    /**
+     * byte[] ghi dạng mảng số như Gson mặc định
+     */
+    private static class ByteArrayAdapter extends TypeAdapter<byte[]> {
+        private final TypeAdapter<byte[]> delegate;
+
+        ByteArrayAdapter(TypeAdapter<byte[]> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(JsonWriter out, byte[] value) throws IOException {
+            out.beginArray();
+            for (byte b : value) {
+                out.value(b);
+            }
+            out.endArray();
+        }
+
+        @Override
+        public byte[] read(JsonReader in) throws IOException {
+            return delegate.read(in);
+        }
+    }
+
+    /**
+     * Adapter cho Map có value kiểu Object (các row HashMap<String, Object> từ DbManager
+     * và các Map data do endpoint tạo): ghi trực tiếp các kiểu thường gặp,
+     * các kiểu khác chuyển cho Gson theo runtime type
+     */
+    private static class ObjectMapAdapterFactory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            if (!Map.class.isAssignableFrom(typeToken.getRawType()) || !hasObjectValues(typeToken.getType())) {
+                return null;
+            }
+            TypeAdapter<T> delegate = gson.getDelegateAdapter(this, typeToken);
+            return (TypeAdapter<T>) new ObjectMapAdapter(gson, (TypeAdapter<Map<?, ?>>) delegate);
+        }
+
+        private static boolean hasObjectValues(Type type) {
+            if (type instanceof Class) {
+                return true; // Raw type (ví dụ HashMap khi serialize theo getClass())
+            }
+            if (type instanceof ParameterizedType) {
+                Type[] args = ((ParameterizedType) type).getActualTypeArguments();
+                return args.length == 2 && args[1] == Object.class;
+            }
+            return false;
+        }
+    }
+
+    private static class ObjectMapAdapter extends TypeAdapter<Map<?, ?>> {
+        private final Gson gson;
+        private final TypeAdapter<Map<?, ?>> delegate;
+
+        ObjectMapAdapter(Gson gson, TypeAdapter<Map<?, ?>> delegate) {
+            this.gson = gson;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(JsonWriter out, Map<?, ?> map) throws IOException {
+            if (map == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object value = entry.getValue();
+                if (value == null) {
+                    continue; // Gson mặc định bỏ qua null (serializeNulls = false)
+                }
+                out.name(String.valueOf(entry.getKey()));
+                writeValue(out, value);
+            }
+            out.endObject();
+        }
+
+        private void writeValue(JsonWriter out, Object value) throws IOException {
+            if (value instanceof String) {
+                out.value((String) value);
+            } else if (value instanceof Integer || value instanceof Long
+                    || value instanceof Short || value instanceof Byte || value instanceof BigDecimal) {
+                out.value((Number) value);
+            } else if (value instanceof Boolean) {
+                out.value((Boolean) value);
+            } else {
+                gson.toJson(value, value.getClass(), out);
+            }
+        }
+
+        @Override
+        public Map<?, ?> read(JsonReader in) throws IOException {
+            return delegate.read(in);
+        }
+    }
+}
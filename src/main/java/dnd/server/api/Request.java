@@ -1,37 +1,80 @@
 package dnd.server.api;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Request object đại diện cho một API request
+ * Được tạo trực tiếp từ Netty FullHttpRequest, header keys lưu dưới dạng lowercase
  */
 public class Request {
     public String method; // GET, POST, PUT, DELETE
     public String path;
     public Map<String, String> headers;
     public JsonObject body;
+    public JsonArray bodyArray; // Body là mảng JSON (POST /api/batch), khi đó body là null
     public Map<String, String> queryParams;
+    public Map<String, String> pathParams; // Tham số trong path, ví dụ :id trong /api/medicines/:id
+    public RouteTree.Route route; // Route đã khớp, null nếu chưa route hoặc không khớp
 
     private Request() {
         this.headers = new HashMap<>();
         this.queryParams = new HashMap<>();
+        this.pathParams = Collections.emptyMap();
     }
 
     /**
-     * Tạo Request từ HttpRequest
+     * Parse từ Netty FullHttpRequest
      */
-    public static Request fromHttpRequest(HttpRequest httpRequest) {
+    public static Request fromNettyRequest(FullHttpRequest nettyRequest) {
         Request request = new Request();
-        request.method = httpRequest.getMethod();
-        request.path = httpRequest.getPath();
-        request.headers = httpRequest.getHeaders();
-        request.body = httpRequest.getBody();
-        request.queryParams = httpRequest.getQueryParams();
+
+        // Method
+        request.method = nettyRequest.method().name();
+
+        // Path và query params
+        QueryStringDecoder decoder = new QueryStringDecoder(nettyRequest.uri());
+        request.path = decoder.path();
+
+        // Query parameters
+        decoder.parameters().forEach((key, values) -> {
+            if (!values.isEmpty()) {
+                request.queryParams.put(key, values.get(0));
+            }
+        });
+
+        // Headers
+        nettyRequest.headers().forEach(entry -> {
+            request.headers.put(entry.getKey().toLowerCase(), entry.getValue());
+        });
+
+        // Body (nếu có)
+        if (nettyRequest.content().readableBytes() > 0) {
+            String bodyString = nettyRequest.content().toString(StandardCharsets.UTF_8);
+            if (!bodyString.isEmpty()) {
+                try {
+                    JsonElement json = JsonParser.parseString(bodyString);
+                    if (json.isJsonArray()) {
+                        request.bodyArray = json.getAsJsonArray();
+                    } else {
+                        request.body = json.getAsJsonObject();
+                    }
+                } catch (Exception e) {
+                    // Nếu không parse được JSON, để null
+                    request.body = null;
+                }
+            }
+        }
+
         return request;
     }
 
@@ -50,7 +93,7 @@ public class Request {
             if (json.has("headers") && json.get("headers").isJsonObject()) {
                 JsonObject headersObj = json.getAsJsonObject("headers");
                 headersObj.entrySet().forEach(entry -> {
-                    request.headers.put(entry.getKey(), entry.getValue().getAsString());
+                    request.headers.put(entry.getKey().toLowerCase(), entry.getValue().getAsString());
                 });
             }
             
@@ -71,6 +114,47 @@ public class Request {
         }
     }
 
+    /**
+     * Tạo sub-request của POST /api/batch
+     * Format: {"method": "GET", "path": "/api/medicines?x=1", "query": {}, "body": {}}
+     * Header (Authorization...) lấy từ request batch, trừ If-None-Match
+     * @throws IllegalArgumentException nếu không có path hoặc field sai kiểu
+     */
+    public static Request subRequest(Request parent, JsonElement element) {
+        try {
+            JsonObject json = element.getAsJsonObject();
+            if (!json.has("path")) {
+                throw new IllegalArgumentException("path is required");
+            }
+            Request request = new Request();
+            request.method = json.has("method") ? json.get("method").getAsString().toUpperCase() : "GET";
+
+            QueryStringDecoder decoder = new QueryStringDecoder(json.get("path").getAsString());
+            request.path = decoder.path();
+            decoder.parameters().forEach((key, values) -> {
+                if (!values.isEmpty()) {
+                    request.queryParams.put(key, values.get(0));
+                }
+            });
+            if (json.has("query")) {
+                json.getAsJsonObject("query").entrySet().forEach(entry -> {
+                    request.queryParams.put(entry.getKey(), entry.getValue().getAsString());
+                });
+            }
+            if (json.has("body") && !json.get("body").isJsonNull()) {
+                request.body = json.getAsJsonObject("body");
+            }
+
+            request.headers.putAll(parent.headers);
+            request.headers.remove("if-none-match");
+            return request;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid batch request: " + e.getMessage(), e);
+        }
+    }
+
     public String getMethod() {
         return method;
     }
@@ -84,7 +168,11 @@ public class Request {
     }
 
     public String getHeader(String key) {
-        return headers.get(key);
+        return headers.get(key.toLowerCase());
+    }
+
+    public JsonArray getBodyArray() {
+        return bodyArray;
     }
 
     public JsonObject getBody() {
@@ -95,8 +183,7 @@ public class Request {
         if (body == null) {
             return null;
         }
-        Gson gson = new Gson();
-        return gson.fromJson(body, clazz);
+        return JsonResponseWriter.gson().fromJson(body, clazz);
     }
 
     public Map<String, String> getQueryParams() {
@@ -110,5 +197,20 @@ public class Request {
     public String getQueryParam(String key, String defaultValue) {
         return queryParams.getOrDefault(key, defaultValue);
     }
+
+    public Map<String, String> getPathParams() {
+        return pathParams;
+    }
+
+    public RouteTree.Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Lấy giá trị tham số trong path đã được router tách sẵn (ví dụ: "id")
+     */
+    public String getPathParam(String name) {
+        return pathParams.get(name);
+    }
 }
 
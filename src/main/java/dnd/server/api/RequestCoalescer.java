@@ -0,0 +1,188 @@
+package dnd.server.api;
+
+import dnd.server.config.ServerConfig;
+import dnd.server.service.TableVersions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Gộp các GET giống hệt nhau đang chạy đồng thời (single-flight) cho các route đăng ký bằng Route.coalesced()
+ * - Request giống nhau: cùng route, path, query params và header Authorization
+ * - Request đầu tiên (leader) chạy endpoint và serialize response một lần ra byte[],
+ *   các request đến trong lúc leader đang chạy (follower) chờ và nhận cùng mảng byte đó
+ * - Không cache: leader xong là key được xóa, request đến sau chạy lại endpoint
+ * - Leader ghi lại TableVersions.writes() lúc bắt đầu: follower không nhận kết quả của leader bắt đầu trước
+ *   một lần ghi mà follower đã thấy (client vừa ghi xong phải đọc được dữ liệu mình ghi),
+ *   follower đó thay leader cũ và tự chạy
+ * - Follower chờ tối đa server.coalesceWaitMs, quá thì tự chạy endpoint
+ * - Response không serialize sẵn được (streamed, SSE, text) hoặc leader lỗi thì follower tự chạy endpoint
+ */
+public class RequestCoalescer {
+    private static final Logger logger = Logger.getLogger(RequestCoalescer.class.getName());
+
+    private static RequestCoalescer instance;
+
+    private final ConcurrentHashMap<List<String>, Flight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final TableVersions tableVersions;
+    private final long waitMs;
+
+    private RequestCoalescer(TableVersions tableVersions, long waitMs) {
+        this.tableVersions = tableVersions;
+        this.waitMs = waitMs;
+    }
+
+    public static synchronized RequestCoalescer getInstance() {
+        if (instance == null) {
+            instance = new RequestCoalescer(TableVersions.getInstance(), ServerConfig.getInstance().getCoalesceWaitMs());
+        }
+        return instance;
+    }
+
+    /**
+     * Việc cần chạy cho một request (thường là handler của route)
+     */
+    public interface Work {
+        Response run() throws Exception;
+    }
+
+    /**
+     * Chạy work, hoặc nhận kết quả của request giống hệt đang chạy
+     */
+    public Response handle(Request request, Work work) throws Exception {
+        List<String> key = keyOf(request);
+        Flight flight = new Flight(tableVersions.writes());
+        while (true) {
+            Flight running = inFlight.putIfAbsent(key, flight);
+            if (running == null) {
+                break;
+            }
+            if (running.writes >= flight.writes) {
+                return follow(running, work);
+            }
+            // Leader bắt đầu trước lần ghi gần nhất, kết quả có thể thiếu lần ghi đó
+            if (inFlight.replace(key, running, flight)) {
+                break;
+            }
+        }
+
+        leaders.increment();
+        Response shared = null;
+        try {
+            Response response = work.run();
+            shared = share(response);
+            return shared != null ? shared : response;
+        } finally {
+            // Xóa trước khi complete: request đến sau thời điểm này phải tự chạy, không nhận kết quả cũ
+            inFlight.remove(key, flight);
+            flight.result.complete(shared);
+        }
+    }
+
+    private Response follow(Flight running, Work work) throws Exception {
+        followers.increment();
+        Response shared;
+        try {
+            shared = running.result.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            shared = null;
+        }
+        return shared != null ? shared : work.run();
+    }
+
+    /**
+     * Số request đã tự chạy endpoint
+     */
+    public long getLeaderCount() {
+        return leaders.sum();
+    }
+
+    /**
+     * Số request nhận kết quả của request giống hệt đang chạy
+     */
+    public long getFollowerCount() {
+        return followers.sum();
+    }
+
+    /**
+     * Tỉ lệ request được gộp trên tổng số request qua coalescer
+     */
+    public double getHitRatio() {
+        long hit = followers.sum();
+        long total = hit + leaders.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Số follower chờ quá server.coalesceWaitMs và tự chạy endpoint
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Số key đang có request chạy
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Serialize response để dùng chung, null nếu không dùng chung được
+     */
+    private static Response share(Response response) {
+        if (response.isStreamed() || response.isEventStream() || response.getContentType() != null) {
+            return null;
+        }
+        if (response.getSerializedJson() != null) {
+            return response;
+        }
+        try {
+            return Response.serialized(response.getStatusCode(), JsonResponseWriter.toBytes(response))
+                .withEtag(response.getEtag());
+        } catch (Exception e) {
+            logger.warning("Không serialize được response để dùng chung: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Key dạng list (so sánh từng phần tử) để giá trị query/header không thể ghép thành key của request khác
+     */
+    private static List<String> keyOf(Request request) {
+        List<String> key = new ArrayList<>();
+        key.add(request.getRoute().getPattern());
+        key.add(request.getPath());
+        key.add(request.getHeader("authorization"));
+        // Thứ tự query param không làm request khác nhau
+        for (Map.Entry<String, String> param : new TreeMap<>(request.getQueryParams()).entrySet()) {
+            key.add(param.getKey());
+            key.add(param.getValue());
+        }
+        return key;
+    }
+
+    /**
+     * Request đang chạy (leader) của một key
+     */
+    private static final class Flight {
+        final long writes; // TableVersions.writes() lúc leader bắt đầu
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+
+        Flight(long writes) {
+            this.writes = writes;
+        }
+    }
+}
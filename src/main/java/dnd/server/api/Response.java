@@ -1,16 +1,34 @@
 package dnd.server.api;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Map;
 
 /**
  * Response object đại diện cho một API response
+ * Được serialize một lần duy nhất sang JSON khi gửi về client
  */
 public class Response {
+    private static final Gson gson = JsonResponseWriter.gson();
+
     private int statusCode;
     private String message;
     private Object data;
     private JsonObject error;
+    private StreamingBody streamingBody;
+    private String next; // Cursor cho trang tiếp theo (keyset pagination)
+    private String contentType; // Khác null nếu body là text thuần (data) thay vì JSON
+    private EventStream eventStream; // Khác null nếu là response Server-Sent Events
+    private byte[] serializedJson; // Khác null nếu body JSON đã được serialize sẵn (dùng chung, không sửa)
+    private String etag; // ETag đã tính sẵn (TableVersions), null thì HttpServerHandler hash body
 
     private Response(int statusCode, String message, Object data) {
         this.statusCode = statusCode;
@@ -34,6 +52,76 @@ public class Response {
         return new Response(200, message, data);
     }
 
+    /**
+     * Tạo success response cho một trang dữ liệu
+     * @param next Token cursor của trang tiếp theo, null nếu đã là trang cuối
+     */
+    public static Response page(Object data, String next) {
+        Response response = new Response(200, "Success", data);
+        response.next = next;
+        return response;
+    }
+
+    /**
+     * Tạo success response với mảng data được ghi dần từ StreamingBody
+     * Khi gửi qua HTTP, body được gửi dạng chunked ngay khi có dữ liệu
+     */
+    public static Response streamed(StreamingBody body) {
+        return streamed("Success", body);
+    }
+
+    public static Response streamed(String message, StreamingBody body) {
+        Response response = new Response(200, message, null);
+        response.streamingBody = body;
+        return response;
+    }
+
+    /**
+     * Tạo response có body là text thuần (ví dụ Prometheus metrics) thay vì JSON
+     * Khi ghi bằng writeJson thì text nằm trong field data như success response
+     */
+    public static Response text(String contentType, String body) {
+        Response response = new Response(200, "Success", body);
+        response.contentType = contentType;
+        return response;
+    }
+
+    /**
+     * Tạo response Server-Sent Events, kết nối được giữ mở cho đến khi stream đóng
+     */
+    public static Response eventStream(EventStream stream) {
+        Response response = new Response(200, "Success", null);
+        response.eventStream = stream;
+        return response;
+    }
+
+    /**
+     * Tạo response từ body JSON đã serialize (UTF-8), ví dụ kết quả dùng chung của RequestCoalescer
+     * Mảng byte được gửi nguyên văn và có thể dùng chung giữa nhiều response nên không được sửa
+     */
+    public static Response serialized(int statusCode, byte[] json) {
+        Response response = new Response(statusCode, null, null);
+        response.serializedJson = json;
+        return response;
+    }
+
+    /**
+     * Response 304 cho request có If-None-Match khớp ETag hiện tại (không có body)
+     */
+    public static Response notModified(String etag) {
+        Response response = new Response(304, null, null);
+        response.etag = etag;
+        return response;
+    }
+
+    /**
+     * Gắn ETag đã tính sẵn cho response vừa tạo (trước khi response được dùng chung hoặc gửi đi)
+     */
+    public Response withEtag(String etag) {
+        this.etag = etag;
+        return this;
+    }
+
     /**
      * Tạo error response
      */
@@ -59,22 +147,88 @@ public class Response {
      * Convert response sang JSON string
      */
     public String toJson() {
-        Gson gson = new Gson();
-        JsonObject json = new JsonObject();
-        json.addProperty("statusCode", statusCode);
-        
+        StringWriter writer = new StringWriter();
+        try {
+            writeJson(writer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Không thể serialize response", e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Ghi response ra JSON theo format trả về cho client:
+     * - Lỗi: {"statusCode": 400, "error": {"message": "..."}}
+     * - Thành công: {"statusCode": 200, "message": "...", "data": ...}
+     * - Một trang dữ liệu: {"statusCode": 200, "message": "...", "data": [...], "next": "<cursor>"}
+     * - Nếu data là Map và có key "success" (transaction endpoint) thì các field của data
+     *   được merge thẳng vào response: {"success": true, "message": "...", "transaction_id": "..."}
+     */
+    public void writeJson(Writer out) throws IOException {
+        if (serializedJson != null) {
+            out.write(new String(serializedJson, StandardCharsets.UTF_8));
+            out.flush();
+            return;
+        }
+
+        JsonWriter writer = gson.newJsonWriter(out);
+
         if (error != null) {
-            json.add("error", error);
-        } else {
-            if (message != null) {
-                json.addProperty("message", message);
-            }
-            if (data != null) {
-                json.add("data", gson.toJsonTree(data));
+            writer.beginObject();
+            writer.name("statusCode").value(statusCode);
+            writer.name("error");
+            gson.toJson(error, JsonElement.class, writer);
+            writer.endObject();
+            writer.flush();
+            return;
+        }
+
+        if (data instanceof Map && ((Map<?, ?>) data).containsKey("success")) {
+            writer.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) data).entrySet()) {
+                if (entry.getValue() != null) {
+                    writer.name(String.valueOf(entry.getKey()));
+                    gson.toJson(entry.getValue(), entry.getValue().getClass(), writer);
+                }
             }
+            writer.endObject();
+            writer.flush();
+            return;
+        }
+
+        writer.beginObject();
+        writer.name("statusCode").value(statusCode);
+        if (message != null) {
+            writer.name("message").value(message);
+        }
+        if (streamingBody != null) {
+            writer.name("data");
+            writeStreamedData(writer);
+        } else if (data != null) {
+            writer.name("data");
+            gson.toJson(data, data.getClass(), writer);
+        }
+        if (next != null) {
+            writer.name("next").value(next);
         }
-        
-        return gson.toJson(json);
+        writer.endObject();
+        writer.flush();
+    }
+
+    private void writeStreamedData(JsonWriter writer) throws IOException {
+        writer.beginArray();
+        try {
+            streamingBody.writeTo(item -> {
+                if (item == null) {
+                    writer.nullValue();
+                } else {
+                    gson.toJson(item, item.getClass(), writer);
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException("Lỗi khi đọc dữ liệu stream: " + e.getMessage(), e);
+        }
+        writer.endArray();
     }
 
     public int getStatusCode() {
@@ -89,6 +243,43 @@ public class Response {
         return data;
     }
 
+    public boolean isStreamed() {
+        return streamingBody != null;
+    }
+
+    /**
+     * Content type của body text thuần, null nếu là JSON
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    public boolean isEventStream() {
+        return eventStream != null;
+    }
+
+    public EventStream getEventStream() {
+        return eventStream;
+    }
+
+    /**
+     * Body JSON đã serialize sẵn, null nếu response cần được serialize khi gửi
+     */
+    public byte[] getSerializedJson() {
+        return serializedJson;
+    }
+
+    /**
+     * ETag đã tính sẵn, null nếu chưa có
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
     public JsonObject getError() {
         return error;
     }
@@ -0,0 +1,279 @@
+package dnd.server.api;
+
+import dnd.server.endpoints.EndpointHandler;
+import dnd.server.metrics.MetricsRegistry;
+import dnd.server.metrics.RouteMetrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cây route theo từng segment của path, tách riêng theo HTTP method
+ * - Segment literal luôn được ưu tiên hơn segment tham số (:param),
+ *   nếu nhánh literal không khớp đến cuối thì quay lui sang nhánh tham số
+ * - Không dùng regex, việc tìm route không tạo object mới;
+ *   chỉ khi route có tham số mới tạo Map chứa giá trị tham số
+ */
+public class RouteTree {
+    private final Map<String, Node> roots = new HashMap<>();
+
+    /**
+     * Đăng ký route theo key dạng "METHOD /path/:param"
+     */
+    public Route put(String routeKey, EndpointHandler handler) {
+        String[] parts = routeKey.split(" ", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid route key: " + routeKey);
+        }
+        return add(parts[0], parts[1], handler);
+    }
+
+    /**
+     * Đăng ký route cho method và path pattern (ví dụ: GET /api/medicines/:id)
+     */
+    public Route add(String method, String pattern, EndpointHandler handler) {
+        if (!pattern.startsWith("/")) {
+            throw new IllegalArgumentException("Route pattern must start with '/': " + pattern);
+        }
+
+        String[] segments = pattern.substring(1).split("/");
+        Node node = roots.computeIfAbsent(method.toUpperCase(), m -> new Node());
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Empty segment in route pattern: " + pattern);
+            }
+            node = segment.startsWith(":") ? node.paramChild() : node.literalChild(segment);
+        }
+
+        if (node.route != null) {
+            throw new IllegalStateException("Duplicate route: " + method + " " + pattern);
+        }
+        node.route = new Route(method.toUpperCase(), pattern, segments, handler);
+        return node.route;
+    }
+
+    /**
+     * Tìm route khớp với method và path
+     * @return Route hoặc null nếu không có route nào khớp
+     */
+    public Route find(String method, String path) {
+        Node root = roots.get(method);
+        if (root == null || path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        return find(root, path, 0);
+    }
+
+    /**
+     * @param pos vị trí dấu '/' đứng trước segment tiếp theo, hoặc path.length() nếu đã hết path
+     */
+    private static Route find(Node node, String path, int pos) {
+        if (pos == path.length()) {
+            return node.route;
+        }
+
+        int segmentStart = pos + 1;
+        int segmentEnd = path.indexOf('/', segmentStart);
+        if (segmentEnd < 0) {
+            segmentEnd = path.length();
+        }
+        if (segmentEnd == segmentStart) {
+            return null; // Segment rỗng ("//" hoặc "/" ở cuối)
+        }
+
+        Node literal = node.findLiteral(path, segmentStart, segmentEnd - segmentStart);
+        if (literal != null) {
+            Route route = find(literal, path, segmentEnd);
+            if (route != null) {
+                return route;
+            }
+        }
+
+        if (node.param != null) {
+            return find(node.param, path, segmentEnd);
+        }
+        return null;
+    }
+
+    /**
+     * Số route đã đăng ký
+     */
+    public int size() {
+        int count = 0;
+        for (Node root : roots.values()) {
+            count += root.countRoutes();
+        }
+        return count;
+    }
+
+    private static class Node {
+        private String[] literalKeys = new String[0];
+        private Node[] literalNodes = new Node[0];
+        private Node param;
+        private Route route;
+
+        Node literalChild(String segment) {
+            for (int i = 0; i < literalKeys.length; i++) {
+                if (literalKeys[i].equals(segment)) {
+                    return literalNodes[i];
+                }
+            }
+            int n = literalKeys.length;
+            String[] keys = new String[n + 1];
+            Node[] nodes = new Node[n + 1];
+            System.arraycopy(literalKeys, 0, keys, 0, n);
+            System.arraycopy(literalNodes, 0, nodes, 0, n);
+            keys[n] = segment;
+            nodes[n] = new Node();
+            literalKeys = keys;
+            literalNodes = nodes;
+            return nodes[n];
+        }
+
+        Node paramChild() {
+            if (param == null) {
+                param = new Node();
+            }
+            return param;
+        }
+
+        Node findLiteral(String path, int start, int length) {
+            for (int i = 0; i < literalKeys.length; i++) {
+                String key = literalKeys[i];
+                if (key.length() == length && path.regionMatches(start, key, 0, length)) {
+                    return literalNodes[i];
+                }
+            }
+            return null;
+        }
+
+        int countRoutes() {
+            int count = route != null ? 1 : 0;
+            for (Node child : literalNodes) {
+                count += child.countRoutes();
+            }
+            if (param != null) {
+                count += param.countRoutes();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Route đã đăng ký: method, pattern, handler, vị trí các tham số trong path và metrics của route
+     */
+    public static class Route {
+        private final String method;
+        private final String pattern;
+        private final EndpointHandler handler;
+        private final RouteMetrics metrics;
+        private final String[] paramNames; // null tại vị trí segment literal
+        private final int paramCount;
+        // Chỉ đổi lúc đăng ký route, trước khi server nhận request
+        private boolean coalesced;
+        private String[] versionedBy = new String[0];
+        private String[] invalidates = new String[0];
+
+        Route(String method, String pattern, String[] segments, EndpointHandler handler) {
+            this.method = method;
+            this.pattern = pattern;
+            this.handler = handler;
+            this.metrics = MetricsRegistry.getInstance().route(method, pattern);
+            this.paramNames = new String[segments.length];
+            int count = 0;
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i].startsWith(":")) {
+                    paramNames[i] = segments[i].substring(1);
+                    count++;
+                }
+            }
+            this.paramCount = count;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public EndpointHandler getHandler() {
+            return handler;
+        }
+
+        public RouteMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * Gộp các request giống hệt nhau đang chạy đồng thời (RequestCoalescer)
+         * Chỉ dùng cho route GET không có side effect và không phụ thuộc vào người gọi ngoài header Authorization
+         */
+        public Route coalesced() {
+            if (!"GET".equals(method)) {
+                throw new IllegalStateException("Only GET routes can be coalesced: " + method + " " + pattern);
+            }
+            coalesced = true;
+            return this;
+        }
+
+        public boolean isCoalesced() {
+            return coalesced;
+        }
+
+        /**
+         * ETag của route lấy từ version các bảng route đọc (TableVersions), If-None-Match khớp thì trả 304
+         * mà không chạy handler. Chỉ dùng khi response chỉ phụ thuộc vào các bảng này
+         * và mọi route ghi vào chúng đều khai báo invalidates()
+         */
+        public Route versionedBy(String... tables) {
+            if (!"GET".equals(method)) {
+                throw new IllegalStateException("Only GET routes can be versioned: " + method + " " + pattern);
+            }
+            versionedBy = tables;
+            return this;
+        }
+
+        /**
+         * Các bảng route này ghi vào, version được tăng sau mỗi lần route chạy xong
+         */
+        public Route invalidates(String... tables) {
+            invalidates = tables;
+            return this;
+        }
+
+        public String[] getVersionedBy() {
+            return versionedBy;
+        }
+
+        public String[] getInvalidates() {
+            return invalidates;
+        }
+
+        /**
+         * Lấy giá trị các tham số từ path đã khớp với route này
+         */
+        public Map<String, String> extractParams(String path) {
+            if (paramCount == 0) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, String> params = new HashMap<>(paramCount * 2);
+            int pos = 0;
+            for (String paramName : paramNames) {
+                int start = pos + 1;
+                int end = path.indexOf('/', start);
+                if (end < 0) {
+                    end = path.length();
+                }
+                if (paramName != null) {
+                    params.put(paramName, path.substring(start, end));
+                }
+                pos = end;
+            }
+            return params;
+        }
+    }
+}
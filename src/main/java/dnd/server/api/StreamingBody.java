@@ -0,0 +1,24 @@
+package dnd.server.api;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Nguồn dữ liệu cho response dạng stream: thay vì trả về List, endpoint ghi từng phần tử
+ * của mảng "data" ngay khi đọc được (ví dụ từ DbManager.stream), bộ nhớ không tăng theo số row
+ */
+@FunctionalInterface
+public interface StreamingBody {
+    /**
+     * Ghi lần lượt các phần tử của mảng data
+     */
+    void writeTo(ItemWriter out) throws SQLException, IOException;
+
+    /**
+     * Ghi một phần tử vào mảng data (serialize như các phần tử của List trong Response thường)
+     */
+    @FunctionalInterface
+    interface ItemWriter {
+        void write(Object item) throws IOException;
+    }
+}
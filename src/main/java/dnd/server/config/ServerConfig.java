@@ -0,0 +1,227 @@
+package dnd.server.config;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Configuration cho HTTP server (worker pool, giới hạn hàng đợi...)
+ * Load từ file server.properties, nếu không có thì dùng default
+ */
+public class ServerConfig {
+    private static final Logger logger = Logger.getLogger(ServerConfig.class.getName());
+
+    private static ServerConfig instance;
+    private final Properties properties = new Properties();
+
+    // Default values
+    private int workerThreads = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+    private int workerQueueCapacity = 256;
+    private int retryAfterSeconds = 1;
+    private int batchIndexReloadSeconds = 300;
+    private int statsRecomputeSeconds = 300;
+    private int prescriptionTimeoutSeconds = 300;
+    private int cardCacheSize = 1000;
+    private int cardCacheTtlSeconds = 300;
+    private int authSessionCapacity = 10000;
+    private int authSessionsPerCard = 3;
+    private String sessionStore = "memory";
+    private boolean tableVersionEtags = true;
+    private int changeLogRetentionDays = 7;
+    private int batchMaxRequests = 20;
+    private int logQueueCapacity = 10000;
+    private int logBatchSize = 200;
+    private int logFlushIntervalMs = 200;
+    private int coalesceWaitMs = 2000;
+
+    private ServerConfig() {
+        loadConfig();
+    }
+
+    public static synchronized ServerConfig getInstance() {
+        if (instance == null) {
+            instance = new ServerConfig();
+        }
+        return instance;
+    }
+
+    /**
+     * Load configuration từ server.properties trong thư mục hiện tại hoặc thư mục cha
+     */
+    private void loadConfig() {
+        String[] paths = {"server.properties", "../server.properties"};
+
+        for (String path : paths) {
+            try (InputStream input = new FileInputStream(path)) {
+                properties.load(input);
+                logger.info("Loaded server.properties from: " + path);
+                break;
+            } catch (IOException e) {
+                // Tiếp tục thử path tiếp theo
+            }
+        }
+
+        workerThreads = getInt("server.workerThreads", workerThreads);
+        workerQueueCapacity = getInt("server.workerQueueCapacity", workerQueueCapacity);
+        retryAfterSeconds = getInt("server.retryAfterSeconds", retryAfterSeconds);
+        batchIndexReloadSeconds = getInt("server.batchIndexReloadSeconds", batchIndexReloadSeconds);
+        statsRecomputeSeconds = getInt("server.statsRecomputeSeconds", statsRecomputeSeconds);
+        prescriptionTimeoutSeconds = getInt("server.prescriptionTimeoutSeconds", prescriptionTimeoutSeconds);
+        cardCacheSize = getInt("server.cardCacheSize", cardCacheSize);
+        cardCacheTtlSeconds = getInt("server.cardCacheTtlSeconds", cardCacheTtlSeconds);
+        authSessionCapacity = getInt("server.authSessionCapacity", authSessionCapacity);
+        authSessionsPerCard = getInt("server.authSessionsPerCard", authSessionsPerCard);
+        sessionStore = properties.getProperty("server.sessionStore", sessionStore).trim();
+        tableVersionEtags = Boolean.parseBoolean(
+            properties.getProperty("server.tableVersionEtags", Boolean.toString(tableVersionEtags)).trim());
+        changeLogRetentionDays = getInt("server.changeLogRetentionDays", changeLogRetentionDays);
+        batchMaxRequests = getInt("server.batchMaxRequests", batchMaxRequests);
+        logQueueCapacity = getInt("server.logQueueCapacity", logQueueCapacity);
+        logBatchSize = getInt("server.logBatchSize", logBatchSize);
+        logFlushIntervalMs = getInt("server.logFlushIntervalMs", logFlushIntervalMs);
+        coalesceWaitMs = getInt("server.coalesceWaitMs", coalesceWaitMs);
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warning("Giá trị không hợp lệ cho " + key + ": " + value + ", dùng default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Số thread xử lý endpoint (JDBC, MinIO...) ngoài event loop
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * Số request tối đa được xếp hàng chờ worker, vượt quá sẽ trả về 503
+     */
+    public int getWorkerQueueCapacity() {
+        return workerQueueCapacity;
+    }
+
+    /**
+     * Giá trị header Retry-After (giây) khi server quá tải
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Chu kỳ (giây) load lại toàn bộ index lô thuốc theo hạn dùng, <= 0 để tắt
+     */
+    public int getBatchIndexReloadSeconds() {
+        return batchIndexReloadSeconds;
+    }
+
+    /**
+     * Chu kỳ (giây) tính lại toàn bộ StatsSnapshot từ database, <= 0 để tắt
+     */
+    public int getStatsRecomputeSeconds() {
+        return statsRecomputeSeconds;
+    }
+
+    /**
+     * Thời gian (giây) một đơn thuốc được chờ thanh toán trước khi tự động hủy
+     */
+    public int getPrescriptionTimeoutSeconds() {
+        return prescriptionTimeoutSeconds;
+    }
+
+    /**
+     * Số thẻ tối đa trong cache thông tin xác thực, <= 0 để tắt cache
+     */
+    public int getCardCacheSize() {
+        return cardCacheSize;
+    }
+
+    /**
+     * Thời gian (giây) thông tin xác thực của thẻ được giữ trong cache, <= 0 để tắt cache
+     */
+    public int getCardCacheTtlSeconds() {
+        return cardCacheTtlSeconds;
+    }
+
+    /**
+     * Số handshake xác thực thẻ (auth/start chưa complete) tối đa được giữ cùng lúc
+     */
+    public int getAuthSessionCapacity() {
+        return authSessionCapacity;
+    }
+
+    /**
+     * Số handshake đang chờ tối đa của một thẻ, vượt quá thì bỏ handshake cũ nhất
+     */
+    public int getAuthSessionsPerCard() {
+        return authSessionsPerCard;
+    }
+
+    /**
+     * Nơi lưu handshake xác thực thẻ: memory (trong JVM, cần sticky session)
+     * hoặc jdbc (bảng auth_sessions, dùng chung khi chạy nhiều node)
+     */
+    public String getSessionStore() {
+        return sessionStore;
+    }
+
+    /**
+     * ETag của các route danh mục lấy theo version bảng trong bộ nhớ (không query, không hash body)
+     * Tắt khi chạy nhiều node hoặc có ghi database ngoài API: các route đó dùng ETag hash body
+     */
+    public boolean isTableVersionEtags() {
+        return tableVersionEtags;
+    }
+
+    /**
+     * Số ngày giữ change_log cho delta sync, client có token cũ hơn phải tải lại toàn bộ (<= 0 để không dọn)
+     */
+    public int getChangeLogRetentionDays() {
+        return changeLogRetentionDays;
+    }
+
+    /**
+     * Số sub-request tối đa trong một POST /api/batch
+     */
+    public int getBatchMaxRequests() {
+        return batchMaxRequests;
+    }
+
+    /**
+     * Số dòng log (system_logs, audit_history) tối đa chờ ghi, vượt quá thì ghi đồng bộ
+     */
+    public int getLogQueueCapacity() {
+        return logQueueCapacity;
+    }
+
+    /**
+     * Số dòng log tối đa trong một lần batch insert
+     */
+    public int getLogBatchSize() {
+        return logBatchSize;
+    }
+
+    /**
+     * Thời gian (ms) tối đa một dòng log chờ trước khi được ghi
+     */
+    public int getLogFlushIntervalMs() {
+        return logFlushIntervalMs;
+    }
+
+    /**
+     * Thời gian (ms) tối đa request chờ kết quả của request giống hệt đang chạy, quá thì tự chạy endpoint
+     */
+    public int getCoalesceWaitMs() {
+        return coalesceWaitMs;
+    }
+}
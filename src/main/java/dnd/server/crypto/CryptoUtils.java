@@ -29,6 +29,67 @@ public class CryptoUtils {
         }
     }
     
+    /** SecureRandom dùng chung (thread-safe), seed một lần thay vì tạo mới mỗi lần gọi */
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    // Instance Cipher/Mac/Signature/KeyFactory theo thread: getInstance(..., "BC") phải tra provider
+    // và khởi tạo engine mỗi lần gọi; instance không thread-safe nhưng init lại được với key mới
+    private static final ThreadLocal<Cipher> AES_CBC_PKCS5 = ThreadLocal.withInitial(() -> newCipher("AES/CBC/PKCS5Padding"));
+    private static final ThreadLocal<Cipher> AES_CBC_NO_PADDING = ThreadLocal.withInitial(() -> newCipher("AES/CBC/NoPadding"));
+    private static final ThreadLocal<Mac> HMAC_SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance("HmacSHA256", PROVIDER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    });
+    private static final ThreadLocal<Signature> SHA1_WITH_RSA = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("SHA1withRSA", PROVIDER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA1withRSA is not available", e);
+        }
+    });
+    private static final ThreadLocal<KeyFactory> RSA_KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return KeyFactory.getInstance("RSA", PROVIDER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("RSA KeyFactory is not available", e);
+        }
+    });
+    
+    private static Cipher newCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation, PROVIDER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transformation + " is not available", e);
+        }
+    }
+    
+    /**
+     * Mac HmacSHA256 của thread hiện tại, phải init với key trước khi dùng
+     * Chỉ dùng trong một lời gọi (không giữ lại qua lời gọi crypto khác trên cùng thread)
+     */
+    static Mac hmacSha256() {
+        return HMAC_SHA256.get();
+    }
+    
+    /**
+     * Sinh ngẫu nhiên numBytes byte từ SecureRandom dùng chung
+     */
+    public static byte[] randomBytes(int numBytes) {
+        byte[] bytes = new byte[numBytes];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Chuỗi hex thường ngẫu nhiên dài 2 * numBytes ký tự (dùng cho session ID)
+     */
+    public static String randomHex(int numBytes) {
+        return HexUtils.bytesToHexLower(randomBytes(numBytes));
+    }
+    
     /**
      * Giải mã static key từ database
      */
@@ -41,7 +102,7 @@ public class CryptoUtils {
         }
         
         try {
-            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding", PROVIDER);
+            Cipher cipher = AES_CBC_PKCS5.get();
             SecretKeySpec keySpec = new SecretKeySpec(masterKey, "AES");
             IvParameterSpec ivSpec = new IvParameterSpec(iv);
             cipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
@@ -57,10 +118,7 @@ public class CryptoUtils {
      * Tạo challenge ngẫu nhiên (32 bytes)
      */
     public static byte[] generateChallenge() {
-        SecureRandom random = new SecureRandom();
-        byte[] challenge = new byte[CHALLENGE_SIZE];
-        random.nextBytes(challenge);
-        return challenge;
+        return randomBytes(CHALLENGE_SIZE);
     }
     
     /**
@@ -76,7 +134,7 @@ public class CryptoUtils {
         }
         
         try {
-            Mac mac = Mac.getInstance("HmacSHA256", PROVIDER);
+            Mac mac = HMAC_SHA256.get();
             SecretKeySpec keySpec = new SecretKeySpec(staticKey, "HmacSHA256");
             mac.init(keySpec);
             return mac.doFinal(challengeCard);
@@ -86,16 +144,31 @@ public class CryptoUtils {
         }
     }
     
+    /**
+     * Parse public key RSA (X.509 DER) của thẻ
+     */
+    public static RSAPublicKey parseRSAPublicKey(byte[] publicKeyBytes) {
+        try {
+            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKeyBytes);
+            return (RSAPublicKey) RSA_KEY_FACTORY.get().generatePublic(keySpec);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse RSA public key", e);
+        }
+    }
+    
     /**
      * Xác minh chữ ký RSA
      */
     public static boolean verifyRSASignature(byte[] publicKeyBytes, byte[] data, byte[] signature) {
+        return verifyRSASignature(parseRSAPublicKey(publicKeyBytes), data, signature);
+    }
+    
+    /**
+     * Xác minh chữ ký RSA với public key đã parse (ví dụ từ CardCredentialCache)
+     */
+    public static boolean verifyRSASignature(PublicKey publicKey, byte[] data, byte[] signature) {
         try {
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA", PROVIDER);
-            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKeyBytes);
-            RSAPublicKey publicKey = (RSAPublicKey) keyFactory.generatePublic(keySpec);
-            
-            Signature sig = Signature.getInstance("SHA1withRSA", PROVIDER);
+            Signature sig = SHA1_WITH_RSA.get();
             sig.initVerify(publicKey);
             sig.update(data);
             
@@ -128,7 +201,7 @@ public class CryptoUtils {
         }
         
         try {
-            Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding", PROVIDER);
+            Cipher cipher = AES_CBC_NO_PADDING.get();
             SecretKeySpec keySpec = new SecretKeySpec(sessionEncKey, "AES");
             IvParameterSpec ivSpec = new IvParameterSpec(iv);
             cipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
@@ -149,7 +222,7 @@ public class CryptoUtils {
         }
         
         try {
-            Mac mac = Mac.getInstance("HmacSHA256", PROVIDER);
+            Mac mac = HMAC_SHA256.get();
             SecretKeySpec keySpec = new SecretKeySpec(sessionMacKey, "HmacSHA256");
             mac.init(keySpec);
             return mac.doFinal(data);
@@ -6,11 +6,15 @@ import org.bouncycastle.crypto.params.KeyParameter;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.util.Arrays;
 
 /**
  * Key Derivation Function utilities cho server
  */
 public class KeyDerivationFunction {
+    private static final int HASH_LEN = 32;
+    private static final byte[] INFO_ENC = {'E', 'N', 'C', 0x01};
+    private static final byte[] INFO_MAC = {'M', 'A', 'C', 0x01};
     
     /**
      * HKDF (HMAC-based Key Derivation Function)
@@ -35,38 +39,38 @@ public class KeyDerivationFunction {
     }
     
     private static byte[] hkdfExpand(byte[] prk, byte[] info, int length) throws Exception {
-        if (length > 255 * 32) {
+        if (length > 255 * HASH_LEN) {
             throw new IllegalArgumentException("HKDF output length too large");
         }
         
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec keySpec = new SecretKeySpec(prk, "HmacSHA256");
-        mac.init(keySpec);
+        Mac mac = CryptoUtils.hmacSha256();
+        mac.init(new SecretKeySpec(prk, "HmacSHA256"));
         
-        int n = (length + 31) / 32;
+        int n = (length + HASH_LEN - 1) / HASH_LEN;
         byte[] okm = new byte[length];
-        byte[] t = new byte[0];
+        byte[] t = new byte[HASH_LEN]; // T(i), ghi đè mỗi vòng thay vì cấp phát mới
         
         for (int i = 0; i < n; i++) {
-            mac.update(t);
+            if (i > 0) {
+                mac.update(t);
+            }
             if (info != null) {
                 mac.update(info);
             }
             mac.update((byte) (i + 1));
-            t = mac.doFinal();
+            mac.doFinal(t, 0);
             
-            int offset = i * 32;
-            int copyLength = Math.min(32, length - offset);
-            System.arraycopy(t, 0, okm, offset, copyLength);
+            int offset = i * HASH_LEN;
+            System.arraycopy(t, 0, okm, offset, Math.min(HASH_LEN, length - offset));
         }
+        Arrays.fill(t, (byte) 0);
         
         return okm;
     }
     
     private static byte[] hmacSha256(byte[] key, byte[] data) throws Exception {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec keySpec = new SecretKeySpec(key, "HmacSHA256");
-        mac.init(keySpec);
+        Mac mac = CryptoUtils.hmacSha256();
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
         return mac.doFinal(data);
     }
     
@@ -85,19 +89,22 @@ public class KeyDerivationFunction {
         System.arraycopy(challengeServer, 0, combinedChallenges, 0, challengeServer.length);
         System.arraycopy(challengeCard, 0, combinedChallenges, challengeServer.length, challengeCard.length);
         
-        byte[] encKey = hkdf32(staticKey, combinedChallenges, new byte[]{'E','N','C',0x01});
-        byte[] macKey = hkdf32(staticKey, combinedChallenges, new byte[]{'M','A','C',0x01});
-        
-        return new byte[][] { encKey, macKey };
-    }
-    
-    private static byte[] hkdf32(byte[] ikm, byte[] salt, byte[] info4) {
+        // PRK = HMAC(salt = challenges, IKM = static key) giống nhau cho cả hai key nên chỉ tính một lần,
+        // sau đó K = HMAC(PRK, info) với info = "ENC"/"MAC" || 0x01 (một block HKDF-Expand)
         try {
-            byte[] prk = hmacSha256(salt, ikm);
-            return hmacSha256(prk, info4);
+            Mac mac = CryptoUtils.hmacSha256();
+            mac.init(new SecretKeySpec(combinedChallenges, "HmacSHA256"));
+            byte[] prk = mac.doFinal(staticKey);
+            
+            // doFinal reset Mac về trạng thái vừa init với PRK, dùng tiếp cho key thứ hai
+            mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+            byte[] encKey = mac.doFinal(INFO_ENC);
+            byte[] macKey = mac.doFinal(INFO_MAC);
+            Arrays.fill(prk, (byte) 0);
+            
+            return new byte[][] { encKey, macKey };
         } catch (Exception e) {
-            throw new RuntimeException("HKDF32 derivation failed", e);
+            throw new RuntimeException("Session key derivation failed", e);
         }
     }
 }
-
@@ -17,6 +17,16 @@ public class CardKeyDao {
         return dbManager.queryOne(sql, cardId);
     }
     
+    /**
+     * Thông tin xác thực của thẻ (kể cả thẻ đã bị vô hiệu hóa), dùng cho CardCredentialCache
+     * So khớp card_id đã bỏ khoảng trắng, giống key của cache (ChangeLog, Revoke/ActivateCard cũng so theo dạng này)
+     */
+    public HashMap<String, Object> findCredentials(String cardId) {
+        String sql = "SELECT card_id, public_key_rsa, static_key_encrypted, static_key_iv, staff_id, status "
+            + "FROM card_keys WHERE REPLACE(card_id, ' ', '') = ?";
+        return dbManager.queryOne(sql, cardId.replaceAll("\\s+", ""));
+    }
+    
     public byte[][] getEncryptedStaticKey(String cardId) {
         HashMap<String, Object> card = findByCardId(cardId);
         if (card != null && card.containsKey("static_key_encrypted") && 
@@ -30,7 +40,8 @@ public class CardKeyDao {
     
     public int updateLastAuth(String cardId) {
         String sql = "UPDATE card_keys SET last_auth_at = CURRENT_TIMESTAMP WHERE card_id = ?";
-        return dbManager.update(sql, cardId);
+        return ChangeLog.update(dbManager, sql, new Object[] {cardId},
+            ChangeLog.upsert(ChangeLog.CARD, cardId.replace(" ", "")));
     }
 }
 
@@ -0,0 +1,170 @@
+package dnd.server.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Outbox change_log cho delta sync (GET /api/sync)
+ * - Endpoint ghi vào medicines, prescriptions, staff_info, admin_accounts, card_keys ghi thêm dòng
+ *   (entity, entity_id, op) trong cùng transaction; id AUTO_INCREMENT của change_log là change token
+ * - Xóa thật (DELETE) được ghi thành tombstone (op = D), client xóa bản ghi khỏi bộ nhớ của nó
+ * - Dòng change_log được ghi sau câu lệnh chính, ngay trước commit: khoảng trống id do transaction
+ *   chưa commit chỉ tồn tại rất ngắn (SyncEndpoint chờ khoảng trống đó thay vì bỏ qua)
+ * - Dòng cũ hơn server.changeLogRetentionDays được dọn định kỳ, luôn giữ lại dòng mới nhất
+ */
+public final class ChangeLog {
+    private static final Logger logger = Logger.getLogger(ChangeLog.class.getName());
+
+    public static final String MEDICINE = "medicine";
+    public static final String PRESCRIPTION = "prescription";
+    public static final String STAFF = "staff";
+    public static final String CARD = "card";
+
+    public static final String OP_UPSERT = "U";
+    public static final String OP_DELETE = "D";
+
+    private static final String INSERT_CHANGE = "INSERT INTO change_log (entity, entity_id, op) VALUES (?, ?, ?)";
+    private static final long PRUNE_INTERVAL_MINUTES = 60;
+    private static final int PRUNE_BATCH_SIZE = 5000;
+
+    private ChangeLog() {
+    }
+
+    /**
+     * Một thay đổi cần ghi vào change_log
+     */
+    public static final class Change {
+        private final String entity;
+        private final String entityId;
+        private final String op;
+
+        private Change(String entity, Object entityId, String op) {
+            this.entity = entity;
+            this.entityId = String.valueOf(entityId);
+            this.op = op;
+        }
+    }
+
+    /**
+     * Bản ghi được tạo hoặc sửa
+     */
+    public static Change upsert(String entity, Object entityId) {
+        return new Change(entity, entityId, OP_UPSERT);
+    }
+
+    /**
+     * Bản ghi bị xóa (tombstone)
+     */
+    public static Change delete(String entity, Object entityId) {
+        return new Change(entity, entityId, OP_DELETE);
+    }
+
+    /**
+     * Thẻ thay đổi: bản ghi thẻ (khóa là card_id đã bỏ khoảng trắng) và nhân viên sở hữu (hasCard)
+     * @param staffId null nếu thẻ chưa gắn nhân viên
+     */
+    public static Change[] card(String normalizedCardId, Object staffId) {
+        Change card = upsert(CARD, normalizedCardId);
+        return staffId != null ? new Change[] {card, upsert(STAFF, staffId)} : new Change[] {card};
+    }
+
+    /**
+     * Ghi các thay đổi trong transaction, gọi sau các câu lệnh chính của transaction
+     */
+    public static void record(DbTransaction tx, Change... changes) throws SQLException {
+        record(tx, List.of(changes));
+    }
+
+    public static void record(DbTransaction tx, List<Change> changes) throws SQLException {
+        if (changes.size() == 1) {
+            Change change = changes.get(0);
+            tx.update(INSERT_CHANGE, change.entity, change.entityId, change.op);
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            rows.add(new Object[] {change.entity, change.entityId, change.op});
+        }
+        tx.batchUpdate(INSERT_CHANGE, rows);
+    }
+
+    /**
+     * Thay cho DbManager.update: chạy câu lệnh và ghi change_log trong cùng transaction
+     * nếu có dòng bị ảnh hưởng
+     * @return Số dòng bị ảnh hưởng, -1 nếu có lỗi
+     */
+    public static int update(DbManager dbManager, String sql, Object[] params, Change... changes) {
+        try {
+            return dbManager.inTransaction(tx -> {
+                int affected = tx.update(sql, params);
+                if (affected > 0) {
+                    record(tx, changes);
+                }
+                return affected;
+            });
+        } catch (SQLException e) {
+            logger.severe("Error executing update query: " + e.getMessage());
+            logger.severe("SQL: " + sql);
+            return -1;
+        }
+    }
+
+    /**
+     * Thay cho DbManager.insertAndGetId: INSERT và ghi change_log trong cùng transaction
+     * @return Generated key, null nếu không insert được hoặc có lỗi
+     */
+    public static Long insertAndGetId(DbManager dbManager, String sql, Object[] params, Change... changes) {
+        try {
+            return dbManager.inTransaction(tx -> {
+                Long id = tx.insertAndGetId(sql, params);
+                if (id != null) {
+                    record(tx, changes);
+                }
+                return id;
+            });
+        } catch (SQLException e) {
+            logger.severe("Error executing insert query: " + e.getMessage());
+            logger.severe("SQL: " + sql);
+            return null;
+        }
+    }
+
+    /**
+     * Dọn change_log định kỳ trên scheduler
+     * @param retentionDays Số ngày giữ lại, <= 0 để không dọn
+     */
+    public static void startPruning(DbManager dbManager, ScheduledExecutorService scheduler, int retentionDays) {
+        if (retentionDays <= 0) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                prune(dbManager, retentionDays);
+            } catch (Exception e) {
+                logger.warning("Error pruning change_log: " + e.getMessage());
+            }
+        }, PRUNE_INTERVAL_MINUTES, PRUNE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Xóa theo từng batch các dòng cũ hơn retentionDays, trừ dòng mới nhất
+     * (MIN(id) còn lại cho SyncEndpoint biết token nào đã quá cũ)
+     */
+    static void prune(DbManager dbManager, int retentionDays) {
+        HashMap<String, Object> latest = dbManager.queryOne("SELECT MAX(id) AS id FROM change_log");
+        if (latest == null || !(latest.get("id") instanceof Number latestId)) {
+            return;
+        }
+        int deleted;
+        do {
+            deleted = dbManager.update(
+                "DELETE FROM change_log WHERE id < ? AND changed_at < NOW() - INTERVAL ? DAY LIMIT " + PRUNE_BATCH_SIZE,
+                latestId.longValue(), retentionDays);
+        } while (deleted == PRUNE_BATCH_SIZE);
+    }
+}
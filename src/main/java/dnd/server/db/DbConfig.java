@@ -23,6 +23,7 @@ public class DbConfig {
     private long connectionTimeout = 30000; // 30 seconds
     private long idleTimeout = 600000; // 10 minutes
     private long leakDetectionThreshold = 60000; // 60 seconds
+    private boolean autoMigrate = true;
 
     private DbConfig() {
         loadConfig();
@@ -57,6 +58,7 @@ public class DbConfig {
                 connectionTimeout = Long.parseLong(properties.getProperty("db.connectionTimeout", String.valueOf(connectionTimeout)));
                 idleTimeout = Long.parseLong(properties.getProperty("db.idleTimeout", String.valueOf(idleTimeout)));
                 leakDetectionThreshold = Long.parseLong(properties.getProperty("db.leakDetectionThreshold", String.valueOf(leakDetectionThreshold)));
+                autoMigrate = Boolean.parseBoolean(properties.getProperty("db.autoMigrate", String.valueOf(autoMigrate)));
                 return; // Load thành công, thoát
             } catch (IOException e) {
                 // Tiếp tục thử path tiếp theo
@@ -103,5 +105,11 @@ public class DbConfig {
     public long getLeakDetectionThreshold() {
         return leakDetectionThreshold;
     }
-}
 
+    /**
+     * Tự động áp dụng migration schema lúc khởi động (false: chỉ kiểm tra và dừng nếu schema cũ)
+     */
+    public boolean isAutoMigrate() {
+        return autoMigrate;
+    }
+}
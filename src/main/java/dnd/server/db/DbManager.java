@@ -2,11 +2,14 @@ package dnd.server.db;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -18,6 +21,10 @@ public class DbManager {
     private HikariDataSource hikariDataSource;
     private static final Logger logger = Logger.getLogger(DbManager.class.getName());
 
+    // Plan đọc row theo từng câu SQL (column labels + getter theo kiểu)
+    private static final int MAX_CACHED_ROW_MAPPERS = 512;
+    private final ConcurrentHashMap<String, RowMapper> rowMappers = new ConcurrentHashMap<>();
+
     /**
      * Singleton pattern
      */
@@ -68,6 +75,8 @@ public class DbManager {
             hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
             hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
             hikariConfig.addDataSourceProperty("rewriteBatchedStatements", "true");
+            // Cho phép đọc kết quả theo cursor khi statement có fetchSize > 0 (xem stream())
+            hikariConfig.addDataSourceProperty("useCursorFetch", "true");
 
             // Connection validation
             hikariConfig.setConnectionTestQuery("SELECT 1");
@@ -103,88 +112,49 @@ public class DbManager {
      * @return List chứa các HashMap, mỗi HashMap là một row
      */
     public List<HashMap<String, Object>> convertResultSetToList(ResultSet rs) {
-        List<HashMap<String, Object>> list = new ArrayList<>();
-
         if (rs == null) {
-            return list;
+            return new ArrayList<>();
         }
 
         try {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-
-            while (rs.next()) {
-                HashMap<String, Object> map = new HashMap<>();
-
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = metaData.getColumnName(i);
-                    int columnType = metaData.getColumnType(i);
-                    Object value = getValueByType(rs, i, columnType);
-                    map.put(columnName, value);
-                }
-
-                list.add(map);
-            }
-
+            return readMaps(rs, RowMapper.fromMetaData(rs.getMetaData()));
         } catch (SQLException e) {
             logger.severe("Error converting ResultSet to List: " + e.getMessage());
             e.printStackTrace();
+            return new ArrayList<>();
         } finally {
             try {
-                if (rs != null && !rs.isClosed()) {
+                if (!rs.isClosed()) {
                     rs.close();
                 }
             } catch (SQLException e) {
                 logger.warning("Error closing ResultSet: " + e.getMessage());
             }
         }
-
-        return list;
     }
 
     /**
-     * Lấy giá trị từ ResultSet theo type
+     * Lấy plan đọc row đã cache cho câu SQL, tạo mới nếu chưa có hoặc không còn khớp metadata
      */
-    private Object getValueByType(ResultSet rs, int index, int sqlType) throws SQLException {
-        switch (sqlType) {
-            case Types.BIGINT:
-                return rs.getLong(index);
-            case Types.INTEGER:
-                return rs.getInt(index);
-            case Types.SMALLINT:
-            case Types.TINYINT:
-                return rs.getByte(index);
-            case Types.FLOAT:
-            case Types.REAL:
-                return rs.getFloat(index);
-            case Types.DOUBLE:
-                return rs.getDouble(index);
-            case Types.DECIMAL:
-            case Types.NUMERIC:
-                return rs.getBigDecimal(index);
-            case Types.BOOLEAN:
-            case Types.BIT:
-                return rs.getBoolean(index);
-            case Types.CHAR:
-            case Types.VARCHAR:
-            case Types.LONGVARCHAR:
-            case Types.NCHAR:
-            case Types.NVARCHAR:
-            case Types.LONGNVARCHAR:
-                return rs.getString(index);
-            case Types.DATE:
-                return rs.getDate(index);
-            case Types.TIME:
-                return rs.getTime(index);
-            case Types.TIMESTAMP:
-                return rs.getTimestamp(index);
-            case Types.BLOB:
-                return rs.getBytes(index);
-            case Types.CLOB:
-                return rs.getClob(index);
-            default:
-                return rs.getObject(index);
+    RowMapper rowMapperFor(String sql, ResultSetMetaData metaData) throws SQLException {
+        RowMapper mapper = rowMappers.get(sql);
+        if (mapper != null && mapper.matches(metaData)) {
+            return mapper;
+        }
+
+        mapper = RowMapper.fromMetaData(metaData);
+        if (rowMappers.size() < MAX_CACHED_ROW_MAPPERS || rowMappers.containsKey(sql)) {
+            rowMappers.put(sql, mapper);
         }
+        return mapper;
+    }
+
+    List<HashMap<String, Object>> readMaps(ResultSet rs, RowMapper mapper) throws SQLException {
+        List<HashMap<String, Object>> list = new ArrayList<>();
+        while (rs.next()) {
+            list.add(mapper.readMap(rs));
+        }
+        return list;
     }
 
     /**
@@ -231,7 +201,41 @@ public class DbManager {
             }
 
             try (ResultSet rs = stmt.executeQuery()) {
-                return convertResultSetToList(rs);
+                return readMaps(rs, rowMapperFor(sql, rs.getMetaData()));
+            }
+
+        } catch (SQLException e) {
+            logger.severe("Error executing query: " + e.getMessage());
+            logger.severe("SQL: " + sql);
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Thực hiện SELECT query và trả về các Row dạng gọn (schema dùng chung, truy cập theo index)
+     * Dùng cho các danh sách lớn chỉ đọc; Row vẫn là Map nên có thể trả thẳng trong response
+     * 
+     * @param sql SQL query với placeholders (?)
+     * @param params Các tham số để bind vào query
+     * @return List chứa kết quả, empty list nếu không có kết quả hoặc có lỗi
+     */
+    public List<Row> queryRows(String sql, Object... params) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            // Bind parameters
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper mapper = rowMapperFor(sql, rs.getMetaData());
+                List<Row> rows = new ArrayList<>();
+                while (rs.next()) {
+                    rows.add(mapper.readRow(rs));
+                }
+                return rows;
             }
 
         } catch (SQLException e) {
@@ -291,6 +295,91 @@ public class DbManager {
         }
     }
 
+    /**
+     * Xử lý từng row khi đọc bằng stream()
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(Row row) throws IOException;
+    }
+
+    /**
+     * Thực hiện SELECT query và đọc kết quả theo cursor (MySQL cursor fetch),
+     * mỗi lần chỉ giữ tối đa fetchSize row trong bộ nhớ
+     * Connection được giữ cho đến khi đọc hết, nên consumer cần xử lý nhanh
+     * 
+     * @param sql SQL query với placeholders (?)
+     * @param fetchSize Số row lấy về mỗi lần
+     * @param consumer Xử lý từng row, Row chỉ hợp lệ trong lần gọi đó
+     * @param params Các tham số để bind vào query
+     * @return Số row đã đọc
+     * @throws SQLException nếu query lỗi
+     * @throws IOException nếu consumer lỗi (ví dụ client đã ngắt kết nối)
+     */
+    public long stream(String sql, int fetchSize, RowConsumer consumer, Object... params) throws SQLException, IOException {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(fetchSize);
+            // Bind parameters
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+
+            long count = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper mapper = rowMapperFor(sql, rs.getMetaData());
+                while (rs.next()) {
+                    consumer.accept(mapper.readRow(rs));
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Công việc chạy trong một transaction, trả về kết quả khi commit thành công
+     */
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T execute(DbTransaction tx) throws SQLException;
+    }
+
+    /**
+     * Chạy nhiều câu lệnh trên cùng một connection và commit một lần
+     * Nếu work ném exception thì rollback và ném lại cho caller
+     * Các action đăng ký bằng tx.afterCommit chạy sau khi commit và trả connection về pool
+     * 
+     * @param work Các câu lệnh cần chạy, dùng DbTransaction thay cho các method của DbManager
+     * @return Kết quả do work trả về
+     * @throws SQLException nếu không lấy được connection, câu lệnh lỗi hoặc commit thất bại
+     */
+    public <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        DbTransaction tx;
+        T result;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            tx = new DbTransaction(this, conn);
+            try {
+                result = work.execute(tx);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            } finally {
+                tx.closeStatements();
+                conn.setAutoCommit(true);
+            }
+        }
+        tx.runAfterCommit();
+        return result;
+    }
+
     /**
      * Thực hiện batch update (nhiều queries cùng lúc)
      * 
@@ -330,18 +419,39 @@ public class DbManager {
      * Lấy thông tin về connection pool
      */
     public String getPoolInfo() {
-        if (hikariDataSource == null) {
+        HikariPoolMXBean pool = getPoolStats();
+        if (pool == null) {
             return "Connection pool not initialized";
         }
         return String.format(
             "Active: %d, Idle: %d, Total: %d, Waiting: %d",
-            hikariDataSource.getHikariPoolMXBean().getActiveConnections(),
-            hikariDataSource.getHikariPoolMXBean().getIdleConnections(),
-            hikariDataSource.getHikariPoolMXBean().getTotalConnections(),
-            hikariDataSource.getHikariPoolMXBean().getThreadsAwaitingConnection()
+            pool.getActiveConnections(),
+            pool.getIdleConnections(),
+            pool.getTotalConnections(),
+            pool.getThreadsAwaitingConnection()
         );
     }
 
+    /**
+     * Số liệu hiện tại của connection pool (active, idle, waiting...)
+     * @return null nếu pool chưa khởi tạo
+     */
+    public HikariPoolMXBean getPoolStats() {
+        HikariDataSource dataSource = hikariDataSource;
+        if (dataSource == null || dataSource.isClosed()) {
+            return null;
+        }
+        return dataSource.getHikariPoolMXBean();
+    }
+
+    /**
+     * Số connection tối đa của pool, 0 nếu pool chưa khởi tạo
+     */
+    public int getPoolMaxSize() {
+        HikariDataSource dataSource = hikariDataSource;
+        return dataSource != null ? dataSource.getMaximumPoolSize() : 0;
+    }
+
     /**
      * Đóng connection pool
      */
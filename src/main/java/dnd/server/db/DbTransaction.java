@@ -0,0 +1,161 @@
+package dnd.server.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Một unit-of-work trên một connection duy nhất (autocommit tắt), tạo bởi DbManager.inTransaction
+ * - PreparedStatement được cache theo SQL trong phạm vi transaction và dùng lại
+ * - Khác với các method của DbManager, lỗi SQL được ném ra để transaction rollback
+ * - Việc phụ (ghi log, cập nhật cache...) đăng ký qua afterCommit chỉ chạy khi commit thành công
+ */
+public final class DbTransaction {
+    private static final Logger logger = Logger.getLogger(DbTransaction.class.getName());
+    private final DbManager dbManager;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Map<String, PreparedStatement> keyStatements = new HashMap<>();
+    private List<Runnable> afterCommit;
+
+    DbTransaction(DbManager dbManager, Connection connection) {
+        this.dbManager = dbManager;
+        this.connection = connection;
+    }
+
+    /**
+     * Thực hiện SELECT query trong transaction
+     */
+    public List<HashMap<String, Object>> query(String sql, Object... params) throws SQLException {
+        PreparedStatement stmt = prepare(sql, params);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return dbManager.readMaps(rs, dbManager.rowMapperFor(sql, rs.getMetaData()));
+        }
+    }
+
+    /**
+     * Thực hiện SELECT query và trả về một row duy nhất, null nếu không có kết quả
+     */
+    public HashMap<String, Object> queryOne(String sql, Object... params) throws SQLException {
+        List<HashMap<String, Object>> results = query(sql, params);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    /**
+     * Thực hiện UPDATE/INSERT/DELETE trong transaction
+     * @return Số dòng bị ảnh hưởng
+     */
+    public int update(String sql, Object... params) throws SQLException {
+        return prepare(sql, params).executeUpdate();
+    }
+
+    /**
+     * Thực hiện INSERT và trả về generated key, null nếu không có dòng nào được insert
+     */
+    public Long insertAndGetId(String sql, Object... params) throws SQLException {
+        PreparedStatement stmt = keyStatements.get(sql);
+        if (stmt == null) {
+            stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            keyStatements.put(sql, stmt);
+        }
+        bind(stmt, params);
+
+        if (stmt.executeUpdate() == 0) {
+            return null;
+        }
+        try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+            return generatedKeys.next() ? generatedKeys.getLong(1) : null;
+        }
+    }
+
+    /**
+     * Thực hiện batch update trong transaction (một round trip nhờ rewriteBatchedStatements)
+     */
+    public int[] batchUpdate(String sql, List<Object[]> paramsList) throws SQLException {
+        if (paramsList.isEmpty()) {
+            return new int[0];
+        }
+        PreparedStatement stmt = statement(sql);
+        for (Object[] params : paramsList) {
+            bind(stmt, params);
+            stmt.addBatch();
+        }
+        return stmt.executeBatch();
+    }
+
+    /**
+     * Đăng ký việc cần làm sau khi transaction commit thành công (bỏ qua nếu rollback)
+     * Lỗi của action chỉ được log, không ảnh hưởng kết quả transaction
+     */
+    public void afterCommit(Runnable action) {
+        if (afterCommit == null) {
+            afterCommit = new ArrayList<>();
+        }
+        afterCommit.add(action);
+    }
+
+    /**
+     * Chạy các action afterCommit, gọi bởi DbManager sau khi commit
+     */
+    void runAfterCommit() {
+        if (afterCommit == null) {
+            return;
+        }
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                logger.warning("After-commit action failed: " + e.getMessage());
+            }
+        }
+        afterCommit = null;
+    }
+
+    private PreparedStatement prepare(String sql, Object[] params) throws SQLException {
+        PreparedStatement stmt = statement(sql);
+        bind(stmt, params);
+        return stmt;
+    }
+
+    private PreparedStatement statement(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null) {
+            stmt = connection.prepareStatement(sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    private static void bind(PreparedStatement stmt, Object[] params) throws SQLException {
+        stmt.clearParameters();
+        for (int i = 0; i < params.length; i++) {
+            stmt.setObject(i + 1, params[i]);
+        }
+    }
+
+    /**
+     * Đóng các statement đã cache, gọi khi transaction kết thúc
+     */
+    void closeStatements() {
+        closeAll(statements);
+        closeAll(keyStatements);
+    }
+
+    private static void closeAll(Map<String, PreparedStatement> cache) {
+        for (PreparedStatement stmt : cache.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException ignore) {
+                // Connection trả về pool sẽ dọn statement còn lại
+            }
+        }
+        cache.clear();
+    }
+}
@@ -0,0 +1,126 @@
+package dnd.server.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Tạo câu SELECT có filter và keyset pagination theo (sortColumn DESC, idColumn DESC)
+ * Trang sau bắt đầu ngay sau row cuối của trang trước (WHERE sort < ? OR (sort = ? AND id < ?))
+ * thay vì OFFSET, nên chi phí mỗi trang như nhau dù client cuộn sâu đến đâu
+ */
+public class KeysetQuery {
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final Pattern DATE_TIME = Pattern.compile("\\d{4}-\\d{2}-\\d{2}( \\d{2}:\\d{2}(:\\d{2})?)?");
+
+    private final String select;
+    private final String sortColumn;
+    private final String idColumn;
+    private final StringBuilder where = new StringBuilder(" WHERE 1=1");
+    private final List<Object> params = new ArrayList<>();
+
+    /**
+     * @param select Phần SELECT ... FROM ... (chưa có WHERE)
+     * @param sortColumn Cột sắp xếp chính (ví dụ timestamp, created_at)
+     * @param idColumn Cột id dùng để phân biệt các row trùng giá trị sắp xếp
+     */
+    public KeysetQuery(String select, String sortColumn, String idColumn) {
+        this.select = select;
+        this.sortColumn = sortColumn;
+        this.idColumn = idColumn;
+    }
+
+    /**
+     * Thêm điều kiện, bỏ qua nếu giá trị null hoặc rỗng
+     */
+    public KeysetQuery where(String condition, Object value) {
+        if (value == null || (value instanceof String && ((String) value).isEmpty())) {
+            return this;
+        }
+        int placeholders = countPlaceholders(condition);
+        where.append(" AND (").append(condition).append(")");
+        for (int i = 0; i < placeholders; i++) {
+            params.add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Lọc cột sắp xếp theo khoảng thời gian: from (bao gồm) đến to (không bao gồm)
+     * Định dạng yyyy-MM-dd hoặc yyyy-MM-dd HH:mm[:ss]
+     * @throws IllegalArgumentException nếu định dạng không hợp lệ
+     */
+    public KeysetQuery between(String from, String to) {
+        if (from != null && !from.isEmpty()) {
+            where(sortColumn + " >= ?", validateDateTime("from", from));
+        }
+        if (to != null && !to.isEmpty()) {
+            where(sortColumn + " < ?", validateDateTime("to", to));
+        }
+        return this;
+    }
+
+    /**
+     * Chỉ lấy các row sau vị trí (sortValue, id) của trang trước
+     */
+    public KeysetQuery after(Object sortValue, long id) {
+        where.append(" AND (").append(sortColumn).append(" < ? OR (")
+                .append(sortColumn).append(" = ? AND ").append(idColumn).append(" < ?))");
+        params.add(sortValue);
+        params.add(sortValue);
+        params.add(id);
+        return this;
+    }
+
+    /**
+     * @param limit Số row tối đa, <= 0 nghĩa là không giới hạn
+     */
+    public String sql(int limit) {
+        StringBuilder sql = new StringBuilder(select).append(where)
+                .append(" ORDER BY ").append(sortColumn).append(" DESC, ").append(idColumn).append(" DESC");
+        if (limit > 0) {
+            sql.append(" LIMIT ?");
+        }
+        return sql.toString();
+    }
+
+    public Object[] params(int limit) {
+        List<Object> all = new ArrayList<>(params);
+        if (limit > 0) {
+            all.add(limit);
+        }
+        return all.toArray();
+    }
+
+    /**
+     * Parse query param limit, giới hạn trong khoảng 1..MAX_PAGE_SIZE
+     * @throws IllegalArgumentException nếu không phải số
+     */
+    public static int pageSize(String param, int defaultSize) {
+        if (param == null || param.isEmpty()) {
+            return defaultSize;
+        }
+        try {
+            return Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.parseInt(param.trim())));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit must be a number");
+        }
+    }
+
+    private static String validateDateTime(String name, String value) {
+        if (!DATE_TIME.matcher(value).matches()) {
+            throw new IllegalArgumentException(name + " must be yyyy-MM-dd or yyyy-MM-dd HH:mm:ss");
+        }
+        return value;
+    }
+
+    private static int countPlaceholders(String condition) {
+        int count = 0;
+        for (int i = 0; i < condition.length(); i++) {
+            if (condition.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,122 @@
+package dnd.server.db;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Một row kết quả query ở dạng gọn: schema (tên cột) dùng chung cho mọi row
+ * của cùng một câu SQL, giá trị lưu trong mảng theo thứ tự cột
+ * - Truy cập theo index: get(int)
+ * - Vẫn là Map<String, Object> (read-only) để tương thích với code dùng HashMap rows
+ */
+public final class Row extends AbstractMap<String, Object> {
+    private final Schema schema;
+    private final Object[] values;
+
+    Row(Schema schema, Object[] values) {
+        this.schema = schema;
+        this.values = values;
+    }
+
+    /**
+     * Lấy giá trị theo index cột (bắt đầu từ 0)
+     */
+    public Object get(int columnIndex) {
+        return values[columnIndex];
+    }
+
+    /**
+     * Index của cột theo label, -1 nếu không có
+     */
+    public int indexOf(String label) {
+        return schema.indexOf(label);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = key instanceof String ? schema.indexOf((String) key) : -1;
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && schema.indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return schema.entryColumns.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < schema.entryColumns.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int column = schema.entryColumns[next++];
+                        return new SimpleImmutableEntry<>(schema.labels[column], values[column]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return schema.entryColumns.length;
+            }
+        };
+    }
+
+    /**
+     * Danh sách cột của một câu SQL, dùng chung giữa các Row
+     * Nếu trùng label thì cột sau thắng (giống HashMap.put trước đây)
+     */
+    static final class Schema {
+        private final String[] labels;
+        private final Map<String, Integer> indexes;
+        private final int[] entryColumns;
+
+        Schema(String[] labels) {
+            this.labels = labels;
+            this.indexes = new HashMap<>((int) (labels.length / 0.75f) + 1);
+            for (int i = 0; i < labels.length; i++) {
+                indexes.put(labels[i], i);
+            }
+
+            int[] columns = new int[indexes.size()];
+            int n = 0;
+            for (int i = 0; i < labels.length; i++) {
+                if (indexes.get(labels[i]) == i) {
+                    columns[n++] = i;
+                }
+            }
+            this.entryColumns = columns;
+        }
+
+        String label(int index) {
+            return labels[index];
+        }
+
+        int indexOf(String label) {
+            Integer index = indexes.get(label);
+            return index != null ? index : -1;
+        }
+    }
+}
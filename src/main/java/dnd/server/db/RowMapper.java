@@ -0,0 +1,138 @@
+package dnd.server.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+
+/**
+ * Plan đọc row từ ResultSet: column labels và getter theo kiểu được resolve một lần
+ * từ ResultSetMetaData, sau đó dùng lại cho mọi row (và mọi lần chạy cùng câu SQL)
+ */
+final class RowMapper {
+    private final Row.Schema schema;
+    private final int[] sqlTypes;
+    private final ColumnReader[] readers;
+
+    private RowMapper(String[] labels, int[] sqlTypes) {
+        this.schema = new Row.Schema(labels);
+        this.sqlTypes = sqlTypes;
+        this.readers = new ColumnReader[sqlTypes.length];
+        for (int i = 0; i < sqlTypes.length; i++) {
+            readers[i] = readerFor(sqlTypes[i]);
+        }
+    }
+
+    /**
+     * Tạo plan từ metadata của ResultSet
+     */
+    static RowMapper fromMetaData(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        int[] types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+            types[i] = metaData.getColumnType(i + 1);
+        }
+        return new RowMapper(labels, types);
+    }
+
+    /**
+     * Kiểm tra plan còn khớp với ResultSet không (ví dụ SELECT * sau khi ALTER TABLE)
+     * Chỉ chạy một lần mỗi query, không phải mỗi row
+     */
+    boolean matches(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        if (columnCount != sqlTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if (sqlTypes[i] != metaData.getColumnType(i + 1)
+                    || !schema.label(i).equals(metaData.getColumnLabel(i + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int columnCount() {
+        return sqlTypes.length;
+    }
+
+    /**
+     * Đọc row hiện tại thành Row (schema dùng chung + mảng giá trị)
+     */
+    Row readRow(ResultSet rs) throws SQLException {
+        Object[] values = new Object[readers.length];
+        for (int i = 0; i < readers.length; i++) {
+            values[i] = readers[i].read(rs, i + 1);
+        }
+        return new Row(schema, values);
+    }
+
+    /**
+     * Đọc row hiện tại thành HashMap, cấp phát đủ capacity ngay từ đầu
+     */
+    HashMap<String, Object> readMap(ResultSet rs) throws SQLException {
+        HashMap<String, Object> map = new HashMap<>(capacityFor(readers.length));
+        for (int i = 0; i < readers.length; i++) {
+            map.put(schema.label(i), readers[i].read(rs, i + 1));
+        }
+        return map;
+    }
+
+    private static int capacityFor(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int index) throws SQLException;
+    }
+
+    /**
+     * Getter theo kiểu SQL, giữ nguyên mapping trước đây của DbManager
+     */
+    private static ColumnReader readerFor(int sqlType) {
+        switch (sqlType) {
+            case Types.BIGINT:
+                return ResultSet::getLong;
+            case Types.INTEGER:
+                return ResultSet::getInt;
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return ResultSet::getByte;
+            case Types.FLOAT:
+            case Types.REAL:
+                return ResultSet::getFloat;
+            case Types.DOUBLE:
+                return ResultSet::getDouble;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return ResultSet::getBigDecimal;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return ResultSet::getBoolean;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return ResultSet::getString;
+            case Types.DATE:
+                return ResultSet::getDate;
+            case Types.TIME:
+                return ResultSet::getTime;
+            case Types.TIMESTAMP:
+                return ResultSet::getTimestamp;
+            case Types.BLOB:
+                return ResultSet::getBytes;
+            case Types.CLOB:
+                return ResultSet::getClob;
+            default:
+                return ResultSet::getObject;
+        }
+    }
+}
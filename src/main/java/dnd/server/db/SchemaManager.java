@@ -0,0 +1,239 @@
+package dnd.server.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Áp dụng các migration schema một lần lúc server khởi động
+ * - Migration là file SQL trong resources/db/migration, tên dạng V{version}__{mô tả}.sql
+ * - Version đã chạy được ghi vào bảng schema_version, mỗi migration chỉ chạy một lần
+ * - Hỗ trợ lệnh DELIMITER như mysql client (cho stored procedure)
+ * - Nhiều server khởi động cùng lúc được tuần tự hóa bằng GET_LOCK
+ * Endpoint không còn chạy DDL, schema phải đúng version trước khi nhận request
+ */
+public class SchemaManager {
+    private static final Logger logger = Logger.getLogger(SchemaManager.class.getName());
+    private static final String LOCATION = "db/migration/";
+    private static final String LOCK_NAME = "medcard_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    /** Các migration theo thứ tự, thêm file mới vào cuối danh sách */
+    private static final String[] MIGRATIONS = {
+        "V1__baseline.sql",
+        "V2__transactions_and_system_logs.sql",
+        "V3__staff_avatar_url.sql",
+        "V4__transactions_prescription_id.sql",
+        "V5__auth_sessions.sql",
+        "V6__change_log.sql",
+    };
+
+    private final DbManager dbManager;
+
+    public SchemaManager(DbManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    /**
+     * Version schema mà server này cần
+     */
+    public static int getLatestVersion() {
+        return versionOf(MIGRATIONS[MIGRATIONS.length - 1]);
+    }
+
+    /**
+     * Kiểm tra và (nếu autoMigrate) áp dụng các migration còn thiếu
+     * @param autoMigrate false thì chỉ kiểm tra, schema cũ hơn sẽ báo lỗi
+     * @throws SQLException nếu schema cũ hơn version cần và không được tự động migrate,
+     *                      hoặc một migration bị lỗi
+     */
+    public void migrate(boolean autoMigrate) throws SQLException {
+        try (Connection conn = dbManager.getConnection()) {
+            acquireLock(conn);
+            try {
+                migrate(conn, autoMigrate);
+            } finally {
+                releaseLock(conn);
+            }
+        }
+    }
+
+    private void migrate(Connection conn, boolean autoMigrate) throws SQLException {
+        ensureVersionTable(conn);
+        Map<Integer, Long> applied = loadApplied(conn);
+
+        List<String> pending = new ArrayList<>();
+        for (String migration : MIGRATIONS) {
+            int version = versionOf(migration);
+            Long checksum = applied.get(version);
+            if (checksum == null) {
+                pending.add(migration);
+            } else if (checksum != checksum(readScript(migration))) {
+                logger.warning("Migration " + migration + " đã thay đổi sau khi được áp dụng (checksum khác)");
+            }
+        }
+
+        int latest = getLatestVersion();
+        int current = applied.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+        if (current > latest) {
+            logger.warning("Schema database (V" + current + ") mới hơn server (V" + latest + ")");
+        }
+
+        if (pending.isEmpty()) {
+            logger.info("✓ Schema database đã ở version V" + Math.max(current, latest));
+            return;
+        }
+        if (!autoMigrate) {
+            throw new SQLException("Schema database chưa cập nhật: cần V" + latest + ", còn thiếu " + pending
+                    + ". Bật db.autoMigrate=true hoặc chạy các file trong " + LOCATION);
+        }
+
+        for (String migration : pending) {
+            apply(conn, migration);
+        }
+        logger.info("✓ Schema database đã được cập nhật lên V" + latest);
+    }
+
+    private void apply(Connection conn, String migration) throws SQLException {
+        String script = readScript(migration);
+        logger.info("Đang áp dụng migration " + migration + "...");
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : splitStatements(script)) {
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Migration " + migration + " lỗi: " + e.getMessage() + "\nSQL: " + sql, e);
+                }
+            }
+        }
+
+        String insertSql = "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+            stmt.setInt(1, versionOf(migration));
+            stmt.setString(2, descriptionOf(migration));
+            stmt.setLong(3, checksum(script));
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void ensureVersionTable(Connection conn) throws SQLException {
+        String sql = """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                version INT NOT NULL PRIMARY KEY,
+                description VARCHAR(200) NOT NULL,
+                checksum BIGINT NOT NULL,
+                applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+            """;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static Map<Integer, Long> loadApplied(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Không lấy được lock migration sau " + LOCK_TIMEOUT_SECONDS + " giây");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.execute();
+        } catch (SQLException e) {
+            // Lock tự giải phóng khi connection đóng
+            logger.fine("Release migration lock: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tách script thành các câu lệnh theo delimiter (mặc định ";", đổi bằng dòng "DELIMITER xx")
+     * Câu lệnh kết thúc khi một dòng kết thúc bằng delimiter hiện tại
+     */
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        String delimiter = ";";
+        StringBuilder current = new StringBuilder();
+
+        for (String line : script.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (current.length() == 0 && (trimmed.isEmpty() || trimmed.startsWith("--"))) {
+                continue;
+            }
+            if (trimmed.regionMatches(true, 0, "DELIMITER ", 0, 10)) {
+                delimiter = trimmed.substring(10).trim();
+                continue;
+            }
+
+            if (trimmed.endsWith(delimiter)) {
+                current.append(line, 0, line.lastIndexOf(delimiter));
+                String sql = current.toString().trim();
+                if (!sql.isEmpty()) {
+                    statements.add(sql);
+                }
+                current.setLength(0);
+            } else {
+                current.append(line).append('\n');
+            }
+        }
+
+        String rest = current.toString().trim();
+        if (!rest.isEmpty()) {
+            statements.add(rest);
+        }
+        return statements;
+    }
+
+    private static String readScript(String migration) throws SQLException {
+        try (InputStream input = SchemaManager.class.getClassLoader().getResourceAsStream(LOCATION + migration)) {
+            if (input == null) {
+                throw new SQLException("Không tìm thấy migration: " + LOCATION + migration);
+            }
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Không đọc được migration " + migration + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static long checksum(String script) {
+        CRC32 crc = new CRC32();
+        crc.update(script.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static int versionOf(String migration) {
+        return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+    }
+
+    private static String descriptionOf(String migration) {
+        return migration.substring(migration.indexOf("__") + 2, migration.lastIndexOf('.')).replace('_', ' ');
+    }
+}
@@ -1,8 +1,10 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.CardCredentialCache;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -20,17 +22,21 @@ public class ActivateCardEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String cardId = request.getPathParam("id");
+        if (cardId == null) {
             return Response.badRequest("cardId is required");
         }
-
-        String cardId = parts[parts.length - 2]; // Second to last (before "activate")
         // Normalize cardId từ request: bỏ khoảng trắng để so sánh
         String normalizedCardId = cardId.replaceAll("\\s+", "");
+        // staff_id của thẻ không đổi sau khi phát hành, hasCard của nhân viên đó đổi theo status
+        HashMap<String, Object> card = dbManager.queryOne(
+            "SELECT staff_id FROM card_keys WHERE REPLACE(card_id, ' ', '') = ?", normalizedCardId);
         String sql = "UPDATE card_keys SET status = 1 WHERE REPLACE(card_id, ' ', '') = ?";
-        int affected = dbManager.update(sql, normalizedCardId);
+        int affected = ChangeLog.update(dbManager, sql, new Object[] {normalizedCardId},
+            ChangeLog.card(normalizedCardId, card != null ? card.get("staff_id") : null));
+        if (affected > 0) {
+            CardCredentialCache.getInstance().invalidate(normalizedCardId);
+        }
         
         Map<String, Object> data = new HashMap<>();
         data.put("affected", affected);
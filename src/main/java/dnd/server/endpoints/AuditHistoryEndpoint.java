@@ -1,8 +1,10 @@
 package dnd.server.endpoints;
 
 import dnd.server.db.DbManager;
+import dnd.server.db.KeysetQuery;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.util.PageCursor;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -11,8 +13,11 @@ import java.util.Map;
 
 /**
  * GET /api/system/logs/audit - Lấy audit history
- * Query params: limit (optional, default 200)
+ * Query params:
+ * - limit (optional, default 200), cursor (optional, token "next" của trang trước)
+ * - staffId, result, from, to (optional filters; from bao gồm, to không bao gồm)
  * Response: [{"id": 1, "sessionId": "...", "timestamp": "...", "result": "...", "staffId": "..."}, ...]
+ * kèm "next" là cursor của trang tiếp theo (không có nếu hết)
  */
 public class AuditHistoryEndpoint implements EndpointHandler {
     private final DbManager dbManager;
@@ -23,23 +28,32 @@ public class AuditHistoryEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        Map<String, String> query = request.getQueryParams();
-        String limitParam = query != null ? query.get("limit") : null;
-        int limit = limitParam != null ? Integer.parseInt(limitParam) : 200;
-
-        String sql = """
-                SELECT 
-                    id,
-                    NULL as session_id,
-                    timestamp,
-                    result,
-                    staff_id
-                FROM audit_history
-                ORDER BY timestamp DESC
-                LIMIT ?
-                """;
-
-        List<HashMap<String, Object>> results = dbManager.query(sql, limit);
+        int limit;
+        KeysetQuery query = new KeysetQuery(
+                "SELECT id, NULL as session_id, timestamp, result, staff_id FROM audit_history",
+                "timestamp", "id");
+        try {
+            limit = KeysetQuery.pageSize(request.getQueryParam("limit"), 200);
+            String result = request.getQueryParam("result");
+            query.where("staff_id = ?", request.getQueryParam("staffId"))
+                    .where("result = ?", result != null && !result.isEmpty() ? Integer.parseInt(result) : null)
+                    .between(request.getQueryParam("from"), request.getQueryParam("to"));
+            PageCursor cursor = PageCursor.decode(request.getQueryParam("cursor"));
+            if (cursor != null) {
+                query.after(cursor.getSortTimestamp(), cursor.getId());
+            }
+        } catch (IllegalArgumentException e) {
+            return Response.badRequest(e.getMessage());
+        }
+
+        // Lấy thêm 1 row để biết còn trang tiếp theo không
+        List<HashMap<String, Object>> results = dbManager.query(query.sql(limit + 1), query.params(limit + 1));
+        String next = null;
+        if (results.size() > limit) {
+            results = results.subList(0, limit);
+            HashMap<String, Object> last = results.get(limit - 1);
+            next = PageCursor.of(last.get("timestamp"), last.get("id")).encode();
+        }
 
         // Convert to response format
         List<Map<String, Object>> history = new ArrayList<>();
@@ -53,7 +67,7 @@ public class AuditHistoryEndpoint implements EndpointHandler {
             history.add(item);
         }
 
-        return Response.success(history);
+        return Response.page(history, next);
     }
 
     private String asString(Object value) {
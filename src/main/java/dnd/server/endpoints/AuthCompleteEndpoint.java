@@ -47,22 +47,24 @@ public class AuthCompleteEndpoint implements EndpointHandler {
         String tempSessionId = body.get("sessionId").getAsString();
         byte[] challengeCard = HexUtils.hexToBytes(body.get("challengeCard").getAsString());
         
-        // Lấy session
-        SessionManager.AuthSession session = sessionManager.getSession(tempSessionId);
+        // Lấy và xóa session (mỗi session chỉ complete được một lần)
+        SessionManager.AuthSession session = sessionManager.takeSession(tempSessionId);
         if (session == null) {
             return Response.badRequest("Invalid or expired session");
         }
         
-        // Hoàn tất authentication
-        AuthenticationService.AuthCompleteResult result = authService.completeAuthentication(
-            session.cardId,
-            session.staticKey,
-            session.challengeServer,
-            challengeCard
-        );
-        
-        // Xóa temp session
-        sessionManager.removeSession(tempSessionId);
+        // Hoàn tất authentication, sau đó xóa static key của temp session
+        AuthenticationService.AuthCompleteResult result;
+        try {
+            result = authService.completeAuthentication(
+                session.cardId,
+                session.staticKey,
+                session.challengeServer,
+                challengeCard
+            );
+        } finally {
+            session.destroy();
+        }
         
         // Trả về response
         Map<String, Object> data = new HashMap<>();
@@ -3,6 +3,7 @@ package dnd.server.endpoints;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.crypto.CryptoUtils;
 import dnd.server.db.CardKeyDao;
 import dnd.server.db.CardSessionDao;
 import dnd.server.service.AuthenticationService;
@@ -10,7 +11,6 @@ import dnd.server.service.SessionManager;
 import dnd.server.util.HexUtils;
 import com.google.gson.JsonObject;
 
-import java.security.SecureRandom;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -54,9 +54,13 @@ public class AuthStartEndpoint implements EndpointHandler {
             cardId,
             result.staticKey,
             result.publicKeyBytes,
+            result.publicKey,
             result.challengeServer
         );
-        sessionManager.putSession(tempSessionId, session);
+        if (!sessionManager.putSession(tempSessionId, session)) {
+            session.destroy();
+            return Response.error(503, "Too many pending authentications, please try again later");
+        }
         
         // Trả về response
         Map<String, Object> data = new HashMap<>();
@@ -67,13 +71,7 @@ public class AuthStartEndpoint implements EndpointHandler {
     }
     
     private String generateTempSessionId() {
-        byte[] b = new byte[16];
-        new SecureRandom().nextBytes(b);
-        StringBuilder sb = new StringBuilder(32);
-        for (byte value : b) {
-            sb.append(String.format("%02x", value));
-        }
-        return sb.toString();
+        return CryptoUtils.randomHex(16);
     }
 }
 
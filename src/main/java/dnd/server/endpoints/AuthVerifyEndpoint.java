@@ -50,13 +50,10 @@ public class AuthVerifyEndpoint implements EndpointHandler {
             return Response.badRequest("Invalid or expired session");
         }
         
-        // Verify signature
-        AuthenticationService.AuthVerifyResult result = authService.verifySignature(
-            session.publicKeyBytes,
-            session.challengeServer,
-            signature,
-            challengeCard
-        );
+        // Verify signature (public key đã được parse ở bước start)
+        AuthenticationService.AuthVerifyResult result = session.publicKey != null
+            ? authService.verifySignature(session.publicKey, session.challengeServer, signature, challengeCard)
+            : authService.verifySignature(session.publicKeyBytes, session.challengeServer, signature, challengeCard);
         
         // Cập nhật session với challengeCard
         // (Có thể tạo một class mới hoặc extend, nhưng tạm thời giữ nguyên)
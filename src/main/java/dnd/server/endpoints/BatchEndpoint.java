@@ -0,0 +1,204 @@
+package dnd.server.endpoints;
+
+import dnd.server.api.ApiRouter;
+import dnd.server.api.JsonResponseWriter;
+import dnd.server.api.Request;
+import dnd.server.api.Response;
+import dnd.server.config.ServerConfig;
+import dnd.server.handler.EndpointExecutor;
+import com.google.gson.JsonArray;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+/**
+ * POST /api/batch - Chạy nhiều API request trong một round trip
+ * Body: [{"method": "GET", "path": "/api/prescriptions/12", "query": {...}, "body": {...}}, ...]
+ * Response: {"statusCode": 200, "data": [{"status": 200, "body": {...}}, ...]} theo thứ tự sub-request,
+ * body là JSON mà endpoint đó trả về khi gọi riêng (kèm "etag" nếu có, "contentType" nếu body là text)
+ * - Sub-request đi qua ApiRouter như request thường, dùng header của request batch
+ * - Các GET liền nhau chạy song song trên worker pool (mỗi lần tối đa MAX_QUEUED_PER_BATCH request vào hàng đợi,
+ *   chỉ khi hàng đợi còn nhiều chỗ); request ghi chạy một mình sau khi các request trước nó xong,
+ *   nên các GET phía sau thấy kết quả của nó
+ * - Sub-request lỗi chỉ ảnh hưởng status của phần tử đó, batch vẫn trả 200
+ * - Tối đa server.batchMaxRequests sub-request, không hỗ trợ batch lồng nhau và Server-Sent Events
+ */
+public class BatchEndpoint implements EndpointHandler {
+    private static final Logger logger = Logger.getLogger(BatchEndpoint.class.getName());
+    private static final String BATCH_PATH = "/api/batch";
+    // Số sub-request tối đa một batch đưa vào hàng đợi worker cùng lúc
+    private static final int MAX_QUEUED_PER_BATCH = 4;
+
+    private final ApiRouter router;
+    private final EndpointExecutor executor;
+    private final int maxRequests;
+
+    public BatchEndpoint(ApiRouter router) {
+        this.router = router;
+        this.executor = EndpointExecutor.getInstance();
+        this.maxRequests = Math.max(1, ServerConfig.getInstance().getBatchMaxRequests());
+    }
+
+    @Override
+    public Response handle(Request request) throws Exception {
+        JsonArray items = request.getBodyArray();
+        if (items == null) {
+            return Response.badRequest("Request body must be a JSON array of requests");
+        }
+        if (items.isEmpty()) {
+            return Response.badRequest("Batch is empty");
+        }
+        if (items.size() > maxRequests) {
+            return Response.badRequest("Batch exceeds " + maxRequests + " requests");
+        }
+
+        int count = items.size();
+        Request[] requests = new Request[count];
+        ItemResult[] results = new ItemResult[count];
+        for (int i = 0; i < count; i++) {
+            try {
+                requests[i] = Request.subRequest(request, items.get(i));
+                if (BATCH_PATH.equals(requests[i].getPath())) {
+                    requests[i] = null;
+                    results[i] = toResult(Response.badRequest("Nested batch requests are not supported"));
+                }
+            } catch (IllegalArgumentException e) {
+                results[i] = toResult(Response.badRequest(e.getMessage()));
+            }
+        }
+
+        // Nhóm các GET liền nhau để chạy song song, request còn lại chạy từng cái theo thứ tự
+        int start = 0;
+        while (start < count) {
+            int end = start + 1;
+            if (isRead(requests[start])) {
+                while (end < count && end - start <= MAX_QUEUED_PER_BATCH && isRead(requests[end])) {
+                    end++;
+                }
+            }
+            runGroup(requests, results, start, end);
+            start = end;
+        }
+
+        return Response.serialized(200, write(results));
+    }
+
+    /**
+     * Chạy requests[start, end) song song: request đầu chạy trên thread hiện tại, các request còn lại
+     * được đưa vào worker pool; request nào worker chưa nhận (pool bận hoặc hàng đợi đầy) thì
+     * thread hiện tại tự chạy, nên batch không bao giờ phải chờ một worker đang chờ chính nó
+     */
+    private void runGroup(Request[] requests, ItemResult[] results, int start, int end) {
+        List<FutureTask<ItemResult>> tasks = new ArrayList<>(end - start - 1);
+        for (int i = start + 1; i < end; i++) {
+            Request sub = requests[i];
+            FutureTask<ItemResult> task = new FutureTask<>(() -> execute(sub));
+            executor.trySubmitInternal(task);
+            tasks.add(task);
+        }
+
+        if (requests[start] != null) {
+            results[start] = execute(requests[start]);
+        }
+        for (int i = start + 1; i < end; i++) {
+            FutureTask<ItemResult> task = tasks.get(i - start - 1);
+            task.run(); // Không làm gì nếu worker đã chạy task này
+            try {
+                results[i] = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results[i] = toResult(Response.internalError("Batch interrupted"));
+            } catch (ExecutionException e) {
+                results[i] = toResult(Response.internalError("Lỗi server: " + e.getCause().getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Chạy một sub-request qua router và serialize response ngay trên thread đang chạy
+     * (response dạng stream đọc database lúc serialize)
+     */
+    private ItemResult execute(Request sub) {
+        Response response = router.handle(sub);
+        if (response.isEventStream()) {
+            // Stream không bao giờ được gắn kết nối: đóng hẳn để chạy các onClose handler (hủy subscription)
+            response.getEventStream().disconnected();
+            response = Response.badRequest("Event streams are not supported in batch requests");
+        }
+        try {
+            return toResult(response);
+        } catch (RuntimeException e) {
+            logger.warning("Batch item " + sub.getMethod() + " " + sub.getPath() + " failed: " + e.getMessage());
+            return toResult(Response.internalError("Lỗi server: " + e.getMessage()));
+        }
+    }
+
+    private static ItemResult toResult(Response response) {
+        ItemResult result = new ItemResult();
+        result.status = response.getStatusCode();
+        result.etag = response.getEtag();
+        if (response.getContentType() != null) {
+            result.contentType = response.getContentType();
+            result.text = (String) response.getData();
+            return result;
+        }
+        try {
+            result.json = new String(JsonResponseWriter.toBytes(response), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Không thể serialize response", e);
+        }
+        return result;
+    }
+
+    private static boolean isRead(Request request) {
+        return request != null && "GET".equals(request.getMethod());
+    }
+
+    private static byte[] write(ItemResult[] results) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            JsonWriter writer = JsonResponseWriter.gson().newJsonWriter(out);
+            writer.beginObject();
+            writer.name("statusCode").value(200);
+            writer.name("data").beginArray();
+            for (ItemResult result : results) {
+                writer.beginObject();
+                writer.name("status").value(result.status);
+                if (result.etag != null) {
+                    writer.name("etag").value(result.etag);
+                }
+                if (result.contentType != null) {
+                    writer.name("contentType").value(result.contentType);
+                    writer.name("body").value(result.text);
+                } else {
+                    writer.name("body").jsonValue(result.json);
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.flush();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Kết quả của một sub-request, body đã serialize
+     */
+    private static final class ItemResult {
+        private int status;
+        private String etag;
+        private String contentType;
+        private String text;
+        private String json;
+    }
+}
@@ -1,8 +1,12 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.LogWriter;
+import dnd.server.service.PaymentEventBus;
+import dnd.server.service.StatsSnapshot;
 
 import java.util.HashMap;
 import java.util.logging.Logger;
@@ -31,15 +35,11 @@ public class CancelPrescriptionPaymentEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        
-        // Extract prescription ID from path: /api/prescriptions/123/cancel-payment -> 123
-        if (parts.length < 5 || !parts[parts.length - 1].equals("cancel-payment")) {
+        String prescriptionIdStr = request.getPathParam("id");
+        if (prescriptionIdStr == null) {
             return Response.badRequest("Invalid path format. Expected: /api/prescriptions/:id/cancel-payment");
         }
         
-        String prescriptionIdStr = parts[parts.length - 2];
         Long prescriptionId;
         try {
             prescriptionId = Long.parseLong(prescriptionIdStr);
@@ -57,9 +57,8 @@ public class CancelPrescriptionPaymentEndpoint implements EndpointHandler {
         Integer currentStatus = ((Number) prescription.get("status")).intValue();
         
         // Kiểm tra xem đã có transaction thanh toán chưa
-        String checkTransactionSql = "SELECT id FROM transactions WHERE ref = ? LIMIT 1";
-        String ref = "medcard " + prescriptionId;
-        HashMap<String, Object> transaction = dbManager.queryOne(checkTransactionSql, ref);
+        String checkTransactionSql = "SELECT id FROM transactions WHERE prescription_id = ? LIMIT 1";
+        HashMap<String, Object> transaction = dbManager.queryOne(checkTransactionSql, prescriptionId);
         
         if (transaction != null) {
             // Đã có transaction thanh toán, không thể hủy
@@ -78,9 +77,11 @@ public class CancelPrescriptionPaymentEndpoint implements EndpointHandler {
             return Response.error(400, "Cannot cancel payment: prescription is already completed");
         }
         
-        // Cập nhật status = 3 (Hủy)
-        String updateSql = "UPDATE prescriptions SET status = 3, updated_at = NOW() WHERE id = ?";
-        int affected = dbManager.update(updateSql, prescriptionId);
+        // Cập nhật status = 3 (Hủy), chỉ khi đơn vẫn đang chờ: status đọc ở trên có thể đã đổi
+        // (thanh toán hoặc hủy đồng thời), StatsSnapshot chỉ nhận delta khi chính UPDATE này đổi status
+        String updateSql = "UPDATE prescriptions SET status = 3, updated_at = NOW() WHERE id = ? AND status IN (0, 1)";
+        int affected = ChangeLog.update(dbManager, updateSql, new Object[] {prescriptionId},
+            ChangeLog.upsert(ChangeLog.PRESCRIPTION, prescriptionId));
         
         if (affected > 0) {
             // Lấy thông tin prescription sau khi cập nhật
@@ -94,20 +95,16 @@ public class CancelPrescriptionPaymentEndpoint implements EndpointHandler {
             
             logger.info("Payment cancelled for prescription: " + prescriptionId);
             
-            // Ghi log vào system_logs
-            try {
-                String logSql = """
-                    INSERT INTO system_logs (action, admin_staff_id, description, created_at)
-                    VALUES (?, ?, ?, NOW())
-                    """;
-                String logDescription = String.format("Payment cancelled for prescription: ID=%d, Code=%s", 
-                    prescriptionId, updated.get("prescription_code"));
-                dbManager.update(logSql, "CANCEL_PAYMENT", null, logDescription);
-            } catch (Exception e) {
-                logger.warning("Failed to log cancel payment: " + e.getMessage());
-            }
+            // Ghi log vào system_logs (bất đồng bộ)
+            String logDescription = String.format("Payment cancelled for prescription: ID=%d, Code=%s", 
+                prescriptionId, updated.get("prescription_code"));
+            LogWriter.getInstance().systemLog("CANCEL_PAYMENT", null, logDescription);
+            PaymentEventBus.getInstance().publishCancelled(prescriptionId);
+            StatsSnapshot.getInstance().prescriptionStatusChanged(currentStatus, 3);
             
             return Response.success("Payment cancelled successfully", data);
+        } else if (affected == 0) {
+            return Response.error(400, "Cannot cancel payment: prescription status has changed");
         } else {
             return Response.internalError("Failed to cancel payment");
         }
@@ -1,8 +1,10 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.StatsSnapshot;
 
 import java.util.HashMap;
 
@@ -36,11 +38,13 @@ public class CreateMedicineEndpoint implements EndpointHandler {
         }
 
         String sql = "INSERT INTO medicines (code, name, unit, quantity, min_quantity) VALUES (?, ?, ?, ?, ?)";
-        int result = dbManager.update(sql, code, name, unit, quantity, minQuantity);
+        int result = ChangeLog.update(dbManager, sql, new Object[] {code, name, unit, quantity, minQuantity},
+            ChangeLog.upsert(ChangeLog.MEDICINE, code));
         
         if (result > 0) {
             // Lấy lại medicine vừa tạo
             HashMap<String, Object> medicine = dbManager.queryOne("SELECT * FROM medicines WHERE code = ?", code);
+            StatsSnapshot.getInstance().medicineAdded(medicine);
             return Response.success("Medicine created successfully", medicine);
         } else {
             return Response.internalError("Failed to create medicine");
@@ -1,17 +1,25 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.PrescriptionTimeoutEngine;
+import dnd.server.service.StatsSnapshot;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
 
 /**
  * POST /api/prescriptions - Tạo đơn thuốc mới
  */
 public class CreatePrescriptionEndpoint implements EndpointHandler {
+    private static final Logger logger = Logger.getLogger(CreatePrescriptionEndpoint.class.getName());
     private final DbManager dbManager;
 
     public CreatePrescriptionEndpoint(DbManager dbManager) {
@@ -35,34 +43,54 @@ public class CreatePrescriptionEndpoint implements EndpointHandler {
             return Response.badRequest("prescription_code, patient_id, and doctor_staff_id are required");
         }
 
-        // Tạo prescription header
-        String sql = "INSERT INTO prescriptions (prescription_code, patient_id, doctor_staff_id, status, note) VALUES (?, ?, ?, ?, ?)";
-        Long prescriptionId = dbManager.insertAndGetId(sql, prescriptionCode, patientId, doctorStaffId, status, note);
-        
-        if (prescriptionId == null) {
-            return Response.internalError("Failed to create prescription");
-        }
-
-        // Tạo prescription items nếu có
+        // Đọc prescription items nếu có (prescription_id được gán sau khi insert header)
+        List<Object[]> itemParams = new ArrayList<>();
         if (body.has("items") && body.get("items").isJsonArray()) {
             JsonArray items = body.getAsJsonArray("items");
-            String itemSql = "INSERT INTO prescription_items (prescription_id, medicine_code, quantity, dosage, note) VALUES (?, ?, ?, ?, ?)";
-            
             for (int i = 0; i < items.size(); i++) {
                 JsonObject item = items.get(i).getAsJsonObject();
                 String medicineCode = item.has("medicine_code") ? item.get("medicine_code").getAsString() : null;
                 int quantity = item.has("quantity") ? item.get("quantity").getAsInt() : 0;
                 String dosage = item.has("dosage") ? item.get("dosage").getAsString() : null;
                 String itemNote = item.has("note") ? item.get("note").getAsString() : null;
-                
+
                 if (medicineCode != null && quantity > 0) {
-                    dbManager.update(itemSql, prescriptionId, medicineCode, quantity, dosage, itemNote);
+                    itemParams.add(new Object[]{null, medicineCode, quantity, dosage, itemNote});
                 }
             }
         }
 
-        // Lấy lại prescription vừa tạo
-        HashMap<String, Object> prescription = dbManager.queryOne("SELECT * FROM prescriptions WHERE id = ?", prescriptionId);
+        // Header, items và đọc lại prescription trong cùng một transaction
+        HashMap<String, Object> prescription;
+        try {
+            prescription = dbManager.inTransaction(tx -> {
+                String sql = "INSERT INTO prescriptions (prescription_code, patient_id, doctor_staff_id, status, note) VALUES (?, ?, ?, ?, ?)";
+                Long prescriptionId = tx.insertAndGetId(sql, prescriptionCode, patientId, doctorStaffId, status, note);
+                if (prescriptionId == null) {
+                    throw new SQLException("No prescription row inserted");
+                }
+
+                for (Object[] params : itemParams) {
+                    params[0] = prescriptionId;
+                }
+                String itemSql = "INSERT INTO prescription_items (prescription_id, medicine_code, quantity, dosage, note) VALUES (?, ?, ?, ?, ?)";
+                tx.batchUpdate(itemSql, itemParams);
+                ChangeLog.record(tx, ChangeLog.upsert(ChangeLog.PRESCRIPTION, prescriptionId));
+
+                // Đơn chờ thanh toán sẽ tự hủy khi quá hạn
+                if (status == 0 || status == 1) {
+                    tx.afterCommit(() -> PrescriptionTimeoutEngine.getInstance().track(prescriptionId));
+                }
+                tx.afterCommit(() -> StatsSnapshot.getInstance().prescriptionCreated(status));
+
+                // Lấy lại prescription vừa tạo
+                return tx.queryOne("SELECT * FROM prescriptions WHERE id = ?", prescriptionId);
+            });
+        } catch (SQLException e) {
+            logger.severe("Create prescription failed: " + e.getMessage());
+            return Response.internalError("Failed to create prescription");
+        }
+
         return Response.success("Prescription created successfully", prescription);
     }
 }
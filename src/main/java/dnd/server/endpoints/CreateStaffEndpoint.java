@@ -1,8 +1,10 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.StatsSnapshot;
 import com.google.gson.JsonObject;
 
 import java.util.HashMap;
@@ -45,9 +47,12 @@ public class CreateStaffEndpoint implements EndpointHandler {
                 VALUES (?, ?, ?, ?, ?, ?)
                 """;
         
-        int affected = dbManager.update(sql, staffId, shortName, fullName, role, department, active ? 1 : 0);
+        int affected = ChangeLog.update(dbManager, sql,
+            new Object[] {staffId, shortName, fullName, role, department, active ? 1 : 0},
+            ChangeLog.upsert(ChangeLog.STAFF, staffId));
         
         if (affected > 0) {
+            StatsSnapshot.getInstance().staffAdded(role, active);
             return Response.success("Staff created successfully");
         } else {
             return Response.internalError("Failed to create staff");
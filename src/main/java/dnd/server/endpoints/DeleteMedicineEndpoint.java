@@ -1,15 +1,20 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.StatsSnapshot;
 
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.logging.Logger;
 
 /**
  * DELETE /api/medicines/:id - Xóa thuốc
  */
 public class DeleteMedicineEndpoint implements EndpointHandler {
+    private static final Logger logger = Logger.getLogger(DeleteMedicineEndpoint.class.getName());
     private final DbManager dbManager;
 
     public DeleteMedicineEndpoint(DbManager dbManager) {
@@ -18,27 +23,33 @@ public class DeleteMedicineEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String medicineCode = request.getPathParam("id");
+        if (medicineCode == null) {
             return Response.badRequest("Invalid medicine ID");
         }
-        String medicineCode = parts[3];
 
-        // Kiểm tra medicine có tồn tại không
-        HashMap<String, Object> existing = dbManager.queryOne("SELECT * FROM medicines WHERE code = ?", medicineCode);
-        if (existing == null) {
-            return Response.notFound("Medicine not found: " + medicineCode);
+        // Dòng bị xóa (cho StatsSnapshot) đọc và khóa trong cùng transaction với DELETE
+        boolean found;
+        try {
+            found = dbManager.inTransaction(tx -> {
+                HashMap<String, Object> existing = tx.queryOne("SELECT * FROM medicines WHERE code = ? FOR UPDATE", medicineCode);
+                if (existing == null) {
+                    return false;
+                }
+                tx.update("DELETE FROM medicines WHERE code = ?", medicineCode);
+                ChangeLog.record(tx, ChangeLog.delete(ChangeLog.MEDICINE, existing.get("code")));
+                tx.afterCommit(() -> StatsSnapshot.getInstance().medicineRemoved(existing));
+                return true;
+            });
+        } catch (SQLException e) {
+            logger.severe("Delete medicine failed: " + e.getMessage());
+            return Response.internalError("Failed to delete medicine");
         }
 
-        String sql = "DELETE FROM medicines WHERE code = ?";
-        int result = dbManager.update(sql, medicineCode);
-        
-        if (result > 0) {
-            return Response.success("Medicine deleted successfully", null);
-        } else {
-            return Response.internalError("Failed to delete medicine");
+        if (!found) {
+            return Response.notFound("Medicine not found: " + medicineCode);
         }
+        return Response.success("Medicine deleted successfully", null);
     }
 }
 
@@ -1,10 +1,15 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.BatchExpiryIndex;
+import dnd.server.service.StatsSnapshot;
 
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.logging.Logger;
 
 import com.google.gson.JsonObject;
 
@@ -12,6 +17,7 @@ import com.google.gson.JsonObject;
  * POST /api/inventory/export - Xuất kho
  */
 public class ExportInventoryEndpoint implements EndpointHandler {
+    private static final Logger logger = Logger.getLogger(ExportInventoryEndpoint.class.getName());
     private final DbManager dbManager;
 
     public ExportInventoryEndpoint(DbManager dbManager) {
@@ -36,33 +42,50 @@ public class ExportInventoryEndpoint implements EndpointHandler {
             return Response.badRequest("medicine_code, quantity, and staff_id are required");
         }
 
-        // Kiểm tra tồn kho
-        String checkSql = "SELECT quantity FROM medicines WHERE code = ?";
-        HashMap<String, Object> medicine = dbManager.queryOne(checkSql, medicineCode);
-        if (medicine == null) {
-            return Response.badRequest("Medicine not found: " + medicineCode);
-        }
-        
-        int currentQuantity = ((Number) medicine.get("quantity")).intValue();
-        if (currentQuantity < quantity) {
-            return Response.badRequest("Insufficient inventory. Available: " + currentQuantity + ", Requested: " + quantity);
-        }
+        // Kiểm tra tồn kho và trừ kho trong cùng một transaction,
+        // row medicines bị khóa (FOR UPDATE) để hai lần xuất đồng thời không vượt tồn kho
+        Response response;
+        try {
+            response = dbManager.inTransaction(tx -> {
+                String checkSql = "SELECT quantity, min_quantity FROM medicines WHERE code = ? FOR UPDATE";
+                HashMap<String, Object> medicine = tx.queryOne(checkSql, medicineCode);
+                if (medicine == null) {
+                    return Response.badRequest("Medicine not found: " + medicineCode);
+                }
 
-        // Cập nhật quantity trong medicines
-        String updateMedicineSql = "UPDATE medicines SET quantity = quantity - ? WHERE code = ?";
-        dbManager.update(updateMedicineSql, quantity, medicineCode);
+                int currentQuantity = ((Number) medicine.get("quantity")).intValue();
+                if (currentQuantity < quantity) {
+                    return Response.badRequest("Insufficient inventory. Available: " + currentQuantity + ", Requested: " + quantity);
+                }
 
-        // Cập nhật batch nếu có
-        if (batchId != null) {
-            String updateBatchSql = "UPDATE medicine_batches SET quantity = quantity - ? WHERE id = ?";
-            dbManager.update(updateBatchSql, quantity, batchId);
-        }
+                // Cập nhật quantity trong medicines
+                String updateMedicineSql = "UPDATE medicines SET quantity = quantity - ? WHERE code = ?";
+                tx.update(updateMedicineSql, quantity, medicineCode);
+
+                // Cập nhật batch nếu có
+                if (batchId != null) {
+                    String updateBatchSql = "UPDATE medicine_batches SET quantity = quantity - ? WHERE id = ?";
+                    tx.update(updateBatchSql, quantity, batchId);
+                }
 
-        // Ghi log (type = 1 là xuất kho)
-        String logSql = "INSERT INTO inventory_logs (timestamp, type, medicine_code, batch_id, quantity_change, staff_id, prescription_id, note) VALUES (NOW(), 1, ?, ?, ?, ?, ?, ?)";
-        dbManager.update(logSql, medicineCode, batchId, -quantity, staffId, prescriptionId, note);
+                // Ghi log (type = 1 là xuất kho)
+                String logSql = "INSERT INTO inventory_logs (timestamp, type, medicine_code, batch_id, quantity_change, staff_id, prescription_id, note) VALUES (NOW(), 1, ?, ?, ?, ?, ?, ?)";
+                tx.update(logSql, medicineCode, batchId, -quantity, staffId, prescriptionId, note);
+                ChangeLog.record(tx, ChangeLog.upsert(ChangeLog.MEDICINE, medicineCode));
+                tx.afterCommit(() -> StatsSnapshot.getInstance().medicineQuantityChanged(medicine, -quantity));
 
-        return Response.success("Inventory exported successfully", null);
+                return Response.success("Inventory exported successfully", null);
+            });
+        } catch (SQLException e) {
+            logger.severe("Export inventory failed: " + e.getMessage());
+            return Response.internalError("Failed to export inventory");
+        }
+
+        // Chỉ cập nhật index sau khi commit
+        if (batchId != null && response.getStatusCode() == 200) {
+            BatchExpiryIndex.getInstance().refresh(batchId);
+        }
+        return response;
     }
 }
 
@@ -21,13 +21,10 @@ public class GetCardEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String cardId = request.getPathParam("id");
+        if (cardId == null) {
             return Response.badRequest("cardId is required");
         }
-
-        String cardId = parts[parts.length - 1];
         // Normalize cardId từ request: bỏ khoảng trắng để so sánh
         // DB lưu dưới dạng "XX XX XX", request có thể là "XXXXXX" hoặc "XX XX XX"
         String normalizedCardId = cardId.replaceAll("\\s+", "");
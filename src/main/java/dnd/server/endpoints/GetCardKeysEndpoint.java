@@ -21,13 +21,10 @@ public class GetCardKeysEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String cardId = request.getPathParam("id");
+        if (cardId == null) {
             return Response.badRequest("cardId is required");
         }
-
-        String cardId = parts[parts.length - 2]; // Second to last (before "keys")
         // Normalize cardId từ request: bỏ khoảng trắng để so sánh
         String normalizedCardId = cardId.replaceAll("\\s+", "");
         String sql = "SELECT public_key_rsa, static_key_encrypted, static_key_iv FROM card_keys WHERE REPLACE(card_id, ' ', '') = ? AND status = 1";
@@ -22,13 +22,10 @@ public class GetCardsByStaffEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String staffId = request.getPathParam("id");
+        if (staffId == null) {
             return Response.badRequest("staffId is required");
         }
-
-        String staffId = parts[parts.length - 1];
         String sql = "SELECT * FROM card_keys WHERE staff_id = ? AND status = 1 ORDER BY issued_at DESC";
         List<HashMap<String, Object>> results = dbManager.query(sql, staffId);
 
@@ -21,16 +21,14 @@ public class GetIssueCounterEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        // Extract cardType from path: /api/cards/issue-counter/1 -> 1
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String cardTypeParam = request.getPathParam("type");
+        if (cardTypeParam == null) {
             return Response.badRequest("cardType is required");
         }
 
         byte cardType;
         try {
-            cardType = Byte.parseByte(parts[parts.length - 1]);
+            cardType = Byte.parseByte(cardTypeParam);
         } catch (NumberFormatException e) {
             return Response.badRequest("Invalid cardType");
         }
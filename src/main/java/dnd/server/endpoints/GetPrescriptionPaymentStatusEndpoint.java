@@ -18,6 +18,7 @@ import java.util.Map;
  *   "amount": number (nếu đã thanh toán),
  *   "paidAt": "datetime" (nếu đã thanh toán)
  * }
+ * Client đang hiển thị QR nên dùng GET /api/prescriptions/:id/payment-events (SSE) thay vì poll
  */
 public class GetPrescriptionPaymentStatusEndpoint implements EndpointHandler {
     private final DbManager dbManager;
@@ -28,14 +29,11 @@ public class GetPrescriptionPaymentStatusEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        // Extract prescription ID from path: /api/prescriptions/123/payment-status -> 123
-        String[] parts = path.split("/");
-        if (parts.length < 4 || !parts[parts.length - 1].equals("payment-status")) {
+        String prescriptionIdStr = request.getPathParam("id");
+        if (prescriptionIdStr == null) {
             return Response.badRequest("Invalid path format");
         }
         
-        String prescriptionIdStr = parts[parts.length - 2];
         Long prescriptionId;
         try {
             prescriptionId = Long.parseLong(prescriptionIdStr);
@@ -43,11 +41,24 @@ public class GetPrescriptionPaymentStatusEndpoint implements EndpointHandler {
             return Response.badRequest("Invalid prescription ID");
         }
         
+        Map<String, Object> data = loadStatus(dbManager, prescriptionId);
+        if (data == null) {
+            return Response.notFound("Prescription not found");
+        }
+        
+        return Response.success(data);
+    }
+
+    /**
+     * Trạng thái thanh toán hiện tại của đơn thuốc (cũng là event đầu tiên của payment-events)
+     * @return null nếu không tìm thấy đơn thuốc
+     */
+    static Map<String, Object> loadStatus(DbManager dbManager, Long prescriptionId) {
         // Verify prescription exists và lấy status
         HashMap<String, Object> prescription = dbManager.queryOne(
             "SELECT id, status FROM prescriptions WHERE id = ?", prescriptionId);
         if (prescription == null) {
-            return Response.notFound("Prescription not found");
+            return null;
         }
         
         Integer prescriptionStatus = prescription.get("status") != null 
@@ -60,11 +71,10 @@ public class GetPrescriptionPaymentStatusEndpoint implements EndpointHandler {
         // Kiểm tra status trong DB: 0=Mới, 1=Đang xử lý, 2=Hoàn tất, 3=Hủy
         if (prescriptionStatus != null && prescriptionStatus == 2) {
             // Status = 2 (Hoàn tất) -> đã thanh toán
-            // Tìm transaction (có thể trong ref hoặc content)
-            String refPattern = "medcard " + prescriptionId;
+            // Tìm transaction theo prescription_id (có index)
             HashMap<String, Object> transaction = dbManager.queryOne(
-                "SELECT id, amount, created_at FROM transactions WHERE ref = ? OR content LIKE ? ORDER BY created_at DESC LIMIT 1",
-                refPattern, "%medcard " + prescriptionId + "%"
+                "SELECT id, amount, created_at FROM transactions WHERE prescription_id = ? ORDER BY created_at DESC LIMIT 1",
+                prescriptionId
             );
             
             if (transaction != null) {
@@ -84,7 +94,7 @@ public class GetPrescriptionPaymentStatusEndpoint implements EndpointHandler {
             data.put("status", "pending");
         }
         
-        return Response.success(data);
+        return data;
     }
 }
 
@@ -4,6 +4,7 @@ import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
 import dnd.server.config.BankConfig;
+import dnd.server.util.PaymentRef;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -35,14 +36,11 @@ public class GetPrescriptionQrEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        // Extract prescription ID from path: /api/prescriptions/123/qr-code -> 123
-        String[] parts = path.split("/");
-        if (parts.length < 4 || !parts[parts.length - 1].equals("qr-code")) {
+        String prescriptionIdStr = request.getPathParam("id");
+        if (prescriptionIdStr == null) {
             return Response.badRequest("Invalid path format");
         }
         
-        String prescriptionIdStr = parts[parts.length - 2];
         Long prescriptionId;
         try {
             prescriptionId = Long.parseLong(prescriptionIdStr);
@@ -58,7 +56,7 @@ public class GetPrescriptionQrEndpoint implements EndpointHandler {
         }
         
         // Generate QR content: "medcard {prescriptionId}"
-        String qrContent = "medcard " + prescriptionId;
+        String qrContent = PaymentRef.forPrescription(prescriptionId);
         
         // Build QR URLs for all accounts (server-side only)
         List<Map<String, Object>> qrAccounts = new ArrayList<>();
@@ -18,13 +18,10 @@ public class GetStaffIdEndpoint implements EndpointHandler {
     
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        // Extract cardId from path: /api/card/123/staff -> 123
-        String[] parts = path.split("/");
-        if (parts.length < 5 || !parts[4].equals("staff")) {
+        String cardId = request.getPathParam("id");
+        if (cardId == null) {
             return Response.badRequest("Invalid path format");
         }
-        String cardId = parts[3];
         
         // Normalize cardId từ request: bỏ khoảng trắng để so sánh
         // DB lưu dưới dạng "XX XX XX", request có thể là "XXXXXX" hoặc "XX XX XX"
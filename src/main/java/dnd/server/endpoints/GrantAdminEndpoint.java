@@ -1,5 +1,6 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
@@ -21,13 +22,10 @@ public class GrantAdminEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String staffId = request.getPathParam("id");
+        if (staffId == null) {
             return Response.badRequest("staffId is required");
         }
-
-        String staffId = parts[parts.length - 2]; // Second to last (before "admin")
         JsonObject body = request.getBody();
         if (body == null || !body.has("username") || !body.has("password")) {
             return Response.badRequest("username and password are required");
@@ -59,7 +57,9 @@ public class GrantAdminEndpoint implements EndpointHandler {
                 INSERT INTO admin_accounts (staff_id, username, password_hash, active)
                 VALUES (?, ?, SHA2(?, 256), 1)
                 """;
-        int affected = dbManager.update(sql, staffId, username, password);
+        // isAdmin nằm trong bản ghi nhân viên của delta sync
+        int affected = ChangeLog.update(dbManager, sql, new Object[] {staffId, username, password},
+            ChangeLog.upsert(ChangeLog.STAFF, staffId));
         
         if (affected > 0) {
             return Response.success("Admin account created successfully");
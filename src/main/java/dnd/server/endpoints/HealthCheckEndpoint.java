@@ -3,6 +3,7 @@ package dnd.server.endpoints;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.handler.EndpointExecutor;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -25,6 +26,7 @@ public class HealthCheckEndpoint implements EndpointHandler {
         if (dbManager.isInitialized()) {
             data.put("poolInfo", dbManager.getPoolInfo());
         }
+        data.put("workerInfo", EndpointExecutor.getInstance().getWorkerInfo());
         return Response.success(data);
     }
 }
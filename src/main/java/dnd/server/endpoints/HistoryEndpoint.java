@@ -1,10 +1,10 @@
 package dnd.server.endpoints;
 
 import dnd.server.db.DbManager;
+import dnd.server.db.Row;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
 
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -23,12 +23,12 @@ public class HistoryEndpoint implements EndpointHandler {
         
         if ("audit".equals(type)) {
             String sql = "SELECT * FROM audit_history ORDER BY timestamp DESC LIMIT 100";
-            List<HashMap<String, Object>> history = dbManager.query(sql);
+            List<Row> history = dbManager.queryRows(sql);
             return Response.success(history);
         } else {
             // Mặc định là inventory logs
             String sql = "SELECT * FROM inventory_logs ORDER BY timestamp DESC LIMIT 100";
-            List<HashMap<String, Object>> history = dbManager.query(sql);
+            List<Row> history = dbManager.queryRows(sql);
             return Response.success(history);
         }
     }
@@ -1,16 +1,22 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.BatchExpiryIndex;
+import dnd.server.service.StatsSnapshot;
 import com.google.gson.JsonObject;
 
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.logging.Logger;
 
 /**
  * POST /api/inventory/import - Nhập kho
  */
 public class ImportInventoryEndpoint implements EndpointHandler {
+    private static final Logger logger = Logger.getLogger(ImportInventoryEndpoint.class.getName());
     private final DbManager dbManager;
 
     public ImportInventoryEndpoint(DbManager dbManager) {
@@ -34,29 +40,48 @@ public class ImportInventoryEndpoint implements EndpointHandler {
             return Response.badRequest("medicine_code, quantity, and staff_id are required");
         }
 
-        // Tìm hoặc tạo batch
-        String batchSql = "SELECT * FROM medicine_batches WHERE medicine_code = ? AND batch_number = ?";
-        HashMap<String, Object> batch = dbManager.queryOne(batchSql, medicineCode, batchNumber);
-        
+        // Batch, tổng quantity và log được ghi trong cùng một transaction
         Long batchId;
-        if (batch == null) {
-            // Tạo batch mới
-            String createBatchSql = "INSERT INTO medicine_batches (medicine_code, batch_number, quantity) VALUES (?, ?, ?)";
-            batchId = dbManager.insertAndGetId(createBatchSql, medicineCode, batchNumber, quantity);
-        } else {
-            batchId = ((Number) batch.get("id")).longValue();
-            // Cập nhật quantity
-            String updateBatchSql = "UPDATE medicine_batches SET quantity = quantity + ? WHERE id = ?";
-            dbManager.update(updateBatchSql, quantity, batchId);
-        }
+        try {
+            batchId = dbManager.inTransaction(tx -> {
+                // Tìm hoặc tạo batch
+                String batchSql = "SELECT id FROM medicine_batches WHERE medicine_code = ? AND batch_number = ? FOR UPDATE";
+                HashMap<String, Object> batch = tx.queryOne(batchSql, medicineCode, batchNumber);
+
+                Long id;
+                if (batch == null) {
+                    // Tạo batch mới
+                    String createBatchSql = "INSERT INTO medicine_batches (medicine_code, batch_number, quantity) VALUES (?, ?, ?)";
+                    id = tx.insertAndGetId(createBatchSql, medicineCode, batchNumber, quantity);
+                } else {
+                    id = ((Number) batch.get("id")).longValue();
+                    // Cập nhật quantity
+                    String updateBatchSql = "UPDATE medicine_batches SET quantity = quantity + ? WHERE id = ?";
+                    tx.update(updateBatchSql, quantity, id);
+                }
 
-        // Cập nhật tổng quantity trong medicines
-        String updateMedicineSql = "UPDATE medicines SET quantity = quantity + ? WHERE code = ?";
-        dbManager.update(updateMedicineSql, quantity, medicineCode);
+                // Cập nhật tổng quantity trong medicines (đọc giá trị trước đó cho StatsSnapshot)
+                HashMap<String, Object> medicine = tx.queryOne(
+                    "SELECT quantity, min_quantity FROM medicines WHERE code = ? FOR UPDATE", medicineCode);
+                String updateMedicineSql = "UPDATE medicines SET quantity = quantity + ? WHERE code = ?";
+                tx.update(updateMedicineSql, quantity, medicineCode);
 
-        // Ghi log
-        String logSql = "INSERT INTO inventory_logs (timestamp, type, medicine_code, batch_id, quantity_change, staff_id, note) VALUES (NOW(), 0, ?, ?, ?, ?, ?)";
-        dbManager.update(logSql, medicineCode, batchId, quantity, staffId, note);
+                // Ghi log
+                String logSql = "INSERT INTO inventory_logs (timestamp, type, medicine_code, batch_id, quantity_change, staff_id, note) VALUES (NOW(), 0, ?, ?, ?, ?, ?)";
+                tx.update(logSql, medicineCode, id, quantity, staffId, note);
+                ChangeLog.record(tx, ChangeLog.upsert(ChangeLog.MEDICINE, medicineCode));
+                tx.afterCommit(() -> StatsSnapshot.getInstance().medicineQuantityChanged(medicine, quantity));
+                return id;
+            });
+        } catch (SQLException e) {
+            logger.severe("Import inventory failed: " + e.getMessage());
+            return Response.internalError("Failed to import inventory");
+        }
+
+        // Chỉ cập nhật index sau khi commit
+        if (batchId != null) {
+            BatchExpiryIndex.getInstance().refresh(batchId);
+        }
 
         return Response.success("Inventory imported successfully", null);
     }
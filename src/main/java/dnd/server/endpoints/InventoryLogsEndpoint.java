@@ -1,18 +1,26 @@
 package dnd.server.endpoints;
 
 import dnd.server.db.DbManager;
+import dnd.server.db.KeysetQuery;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.util.PageCursor;
 
 import java.sql.Timestamp;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * GET /api/inventory/logs - Lấy lịch sử xuất nhập kho
+ * Query params:
+ * - limit (optional, default 100), cursor (optional, token "next" của trang trước)
+ * - type, medicine_code, staff_id, from, to (optional filters; from bao gồm, to không bao gồm)
+ * - offset (legacy, chỉ dùng khi không có cursor)
+ * Response: data là một trang logs, "next" là cursor của trang tiếp theo (không có nếu hết)
  */
 public class InventoryLogsEndpoint implements EndpointHandler {
     private final DbManager dbManager;
@@ -24,12 +32,44 @@ public class InventoryLogsEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String limit = request.getQueryParam("limit", "100");
-        String offset = request.getQueryParam("offset", "0");
-        
-        String sql = "SELECT * FROM inventory_logs ORDER BY timestamp DESC LIMIT ? OFFSET ?";
-        List<HashMap<String, Object>> logs = dbManager.query(sql, Integer.parseInt(limit), Integer.parseInt(offset));
-        
+        int limit;
+        int offset;
+        PageCursor cursor;
+        KeysetQuery query = new KeysetQuery("SELECT * FROM inventory_logs", "timestamp", "id");
+        try {
+            limit = KeysetQuery.pageSize(request.getQueryParam("limit"), 100);
+            offset = Integer.parseInt(request.getQueryParam("offset", "0"));
+            cursor = PageCursor.decode(request.getQueryParam("cursor"));
+
+            String type = request.getQueryParam("type");
+            query.where("type = ?", type != null && !type.isEmpty() ? Integer.parseInt(type) : null)
+                    .where("medicine_code = ?", request.getQueryParam("medicine_code"))
+                    .where("staff_id = ?", request.getQueryParam("staff_id"))
+                    .between(request.getQueryParam("from"), request.getQueryParam("to"));
+            if (cursor != null) {
+                query.after(cursor.getSortTimestamp(), cursor.getId());
+            }
+        } catch (IllegalArgumentException e) {
+            return Response.badRequest(e.getMessage());
+        }
+
+        // Lấy thêm 1 row để biết còn trang tiếp theo không
+        String sql = query.sql(limit + 1);
+        Object[] params = query.params(limit + 1);
+        if (cursor == null && offset > 0) {
+            sql += " OFFSET ?";
+            params = Arrays.copyOf(params, params.length + 1);
+            params[params.length - 1] = offset;
+        }
+        List<HashMap<String, Object>> logs = dbManager.query(sql, params);
+
+        String next = null;
+        if (logs.size() > limit) {
+            logs = logs.subList(0, limit);
+            HashMap<String, Object> last = logs.get(limit - 1);
+            next = PageCursor.of(last.get("timestamp"), last.get("id")).encode();
+        }
+
         // Convert timestamp to String format
         List<Map<String, Object>> result = new ArrayList<>();
         for (HashMap<String, Object> log : logs) {
@@ -48,7 +88,6 @@ public class InventoryLogsEndpoint implements EndpointHandler {
             result.add(item);
         }
         
-        return Response.success(result);
+        return Response.page(result, next);
     }
 }
-
@@ -1,8 +1,10 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.CardCredentialCache;
 import com.google.gson.JsonObject;
 
 import java.util.Base64;
@@ -55,12 +57,14 @@ public class IssueCardEndpoint implements EndpointHandler {
                 VALUES (?, ?, ?, ?, ?, 1)
                 """;
         
-        Long id = dbManager.insertAndGetId(sql, cardId, staticKeyEncrypted, staticKeyIv, 
-                                           publicKeyRsa, validatedStaffId);
+        Long id = ChangeLog.insertAndGetId(dbManager, sql,
+            new Object[] {cardId, staticKeyEncrypted, staticKeyIv, publicKeyRsa, validatedStaffId},
+            ChangeLog.card(cardId.replace(" ", ""), validatedStaffId));
         
         if (id == null) {
             return Response.internalError("Failed to save card");
         }
+        CardCredentialCache.getInstance().invalidate(cardId);
 
         Map<String, Object> data = new HashMap<>();
         data.put("id", id);
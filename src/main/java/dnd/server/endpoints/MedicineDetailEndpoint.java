@@ -18,13 +18,10 @@ public class MedicineDetailEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        // Extract ID from path: /api/medicines/123 -> 123
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String medicineCode = request.getPathParam("id");
+        if (medicineCode == null) {
             return Response.badRequest("Invalid medicine ID");
         }
-        String medicineCode = parts[3];
         
         String sql = "SELECT * FROM medicines WHERE code = ?";
         HashMap<String, Object> medicine = dbManager.queryOne(sql, medicineCode);
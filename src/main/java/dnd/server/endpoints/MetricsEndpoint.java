@@ -0,0 +1,136 @@
+package dnd.server.endpoints;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import dnd.server.db.DbManager;
+import dnd.server.api.Request;
+import dnd.server.api.RequestCoalescer;
+import dnd.server.api.Response;
+import dnd.server.handler.EndpointExecutor;
+import dnd.server.metrics.MetricsRegistry;
+import dnd.server.metrics.PrometheusWriter;
+import dnd.server.service.CardCredentialCache;
+import dnd.server.service.LogWriter;
+import dnd.server.service.PaymentEventBus;
+import dnd.server.service.PrescriptionTimeoutEngine;
+import dnd.server.service.SessionManager;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+
+/**
+ * GET /api/metrics - Metrics theo Prometheus text format
+ * Gồm HTTP (độ trễ, status code, in-flight), worker pool, connection pool, session và JVM
+ */
+public class MetricsEndpoint implements EndpointHandler {
+    private final DbManager dbManager;
+
+    public MetricsEndpoint(DbManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    @Override
+    public Response handle(Request request) throws Exception {
+        PrometheusWriter out = new PrometheusWriter();
+        MetricsRegistry.getInstance().writeHttpMetrics(out);
+        writeWorkerMetrics(out, EndpointExecutor.getInstance());
+        writePoolMetrics(out);
+        writeAuthSessionMetrics(out, SessionManager.getInstance());
+        writeCoalescerMetrics(out, RequestCoalescer.getInstance());
+        writeLogWriterMetrics(out, LogWriter.getInstance());
+        writeCardCacheMetrics(out, CardCredentialCache.getInstance());
+        out.gauge("medcard_prescriptions_awaiting_payment", "Prescriptions tracked for automatic cancellation",
+                PrescriptionTimeoutEngine.getInstance().getPendingCount());
+        out.gauge("medcard_payment_event_topics", "Prescriptions with clients subscribed to payment events",
+                PaymentEventBus.getInstance().getTopicCount());
+        writeJvmMetrics(out);
+        return Response.text(PrometheusWriter.CONTENT_TYPE, out.toString());
+    }
+
+    private static void writeWorkerMetrics(PrometheusWriter out, EndpointExecutor executor) {
+        out.gauge("medcard_worker_active_threads", "Worker threads currently running a request", executor.getActiveCount());
+        out.gauge("medcard_worker_queue_depth", "Requests waiting for a worker thread", executor.getQueueDepth());
+        out.gauge("medcard_worker_queue_capacity", "Maximum number of queued requests", executor.getQueueCapacity());
+        out.counter("medcard_worker_submitted_total", "Requests accepted by the worker pool", executor.getSubmittedCount());
+        out.counter("medcard_worker_rejected_total", "Requests rejected with 503 because the queue was full", executor.getRejectedCount());
+        out.counter("medcard_worker_queue_wait_seconds_total", "Total time requests spent waiting in the queue",
+                executor.getTotalWaitNanos() / 1e9);
+        out.gauge("medcard_worker_queue_wait_max_seconds", "Longest time a request waited in the queue",
+                executor.getMaxWaitNanos() / 1e9);
+    }
+
+    private static void writeLogWriterMetrics(PrometheusWriter out, LogWriter logWriter) {
+        out.gauge("medcard_log_queue_depth", "Log rows waiting to be written", logWriter.getQueueDepth());
+        out.counter("medcard_log_written_total", "Log rows written to system_logs/audit_history", logWriter.getWrittenCount());
+        out.counter("medcard_log_failed_total", "Log rows that could not be written", logWriter.getFailedCount());
+        out.counter("medcard_log_overflow_total", "Log rows written synchronously because the queue was full",
+                logWriter.getOverflowCount());
+    }
+
+    private static void writeAuthSessionMetrics(PrometheusWriter out, SessionManager sessions) {
+        out.gauge("medcard_auth_sessions", "Authentication sessions currently stored", sessions.size());
+        out.gauge("medcard_auth_sessions_capacity", "Maximum number of pending authentication sessions", sessions.getCapacity());
+        out.header("medcard_auth_sessions_evicted_total", "counter", "Authentication sessions removed before completion");
+        out.sample("medcard_auth_sessions_evicted_total", sessions.getExpiredCount(), "reason", "expired");
+        out.sample("medcard_auth_sessions_evicted_total", sessions.getReplacedCount(), "reason", "per_card_limit");
+        out.counter("medcard_auth_sessions_rejected_total", "Authentication starts rejected because the session store was full",
+                sessions.getRejectedCount());
+    }
+
+    private static void writeCoalescerMetrics(PrometheusWriter out, RequestCoalescer coalescer) {
+        out.header("medcard_coalesced_requests_total", "counter", "Requests on coalesced GET routes by outcome");
+        out.sample("medcard_coalesced_requests_total", coalescer.getLeaderCount(), "result", "executed");
+        out.sample("medcard_coalesced_requests_total", coalescer.getFollowerCount(), "result", "shared");
+        out.counter("medcard_coalesced_wait_timeouts_total", "Followers that stopped waiting for the leader and ran the endpoint",
+                coalescer.getTimeoutCount());
+        out.gauge("medcard_coalesced_hit_ratio", "Share of coalesced-route requests served from an in-flight identical request",
+                coalescer.getHitRatio());
+        out.gauge("medcard_coalesced_in_flight", "Distinct coalesced requests currently executing", coalescer.getInFlightCount());
+    }
+
+    private static void writeCardCacheMetrics(PrometheusWriter out, CardCredentialCache cache) {
+        out.gauge("medcard_card_cache_entries", "Card credentials currently cached", cache.size());
+        out.header("medcard_card_cache_requests_total", "counter", "Card credential lookups by result");
+        out.sample("medcard_card_cache_requests_total", cache.getHitCount(), "result", "hit");
+        out.sample("medcard_card_cache_requests_total", cache.getMissCount(), "result", "miss");
+    }
+
+    private void writePoolMetrics(PrometheusWriter out) {
+        HikariPoolMXBean pool = dbManager.getPoolStats();
+        out.gauge("medcard_db_pool_up", "1 if the database connection pool is running", pool != null ? 1 : 0);
+        if (pool == null) {
+            return;
+        }
+        out.header("medcard_db_pool_connections", "gauge", "Database connections by state");
+        out.sample("medcard_db_pool_connections", pool.getActiveConnections(), "state", "active");
+        out.sample("medcard_db_pool_connections", pool.getIdleConnections(), "state", "idle");
+        out.sample("medcard_db_pool_connections", pool.getTotalConnections(), "state", "total");
+        out.gauge("medcard_db_pool_max_connections", "Maximum size of the connection pool", dbManager.getPoolMaxSize());
+        out.gauge("medcard_db_pool_pending_threads", "Threads waiting for a connection", pool.getThreadsAwaitingConnection());
+    }
+
+    private static void writeJvmMetrics(PrometheusWriter out) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+
+        out.header("jvm_memory_bytes_used", "gauge", "Used bytes of a given JVM memory area");
+        out.sample("jvm_memory_bytes_used", heap.getUsed(), "area", "heap");
+        out.sample("jvm_memory_bytes_used", nonHeap.getUsed(), "area", "nonheap");
+        out.header("jvm_memory_bytes_committed", "gauge", "Committed bytes of a given JVM memory area");
+        out.sample("jvm_memory_bytes_committed", heap.getCommitted(), "area", "heap");
+        out.sample("jvm_memory_bytes_committed", nonHeap.getCommitted(), "area", "nonheap");
+        out.header("jvm_memory_bytes_max", "gauge", "Max bytes of a given JVM memory area (-1 if undefined)");
+        out.sample("jvm_memory_bytes_max", heap.getMax(), "area", "heap");
+        out.sample("jvm_memory_bytes_max", nonHeap.getMax(), "area", "nonheap");
+
+        out.header("jvm_gc_collection_seconds", "summary", "Time spent in a given JVM garbage collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.sample("jvm_gc_collection_seconds_count", Math.max(0, gc.getCollectionCount()), "gc", gc.getName());
+            out.sample("jvm_gc_collection_seconds_sum", Math.max(0, gc.getCollectionTime()) / 1000.0, "gc", gc.getName());
+        }
+
+        out.gauge("jvm_threads_current", "Current thread count of the JVM", ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+}
@@ -19,12 +19,10 @@ public class PrescriptionDetailEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String prescriptionId = request.getPathParam("id");
+        if (prescriptionId == null) {
             return Response.badRequest("Invalid prescription ID");
         }
-        String prescriptionId = parts[3];
         
         // Lấy prescription header
         String sql = "SELECT * FROM prescriptions WHERE id = ?";
@@ -0,0 +1,72 @@
+package dnd.server.endpoints;
+
+import dnd.server.db.DbManager;
+import dnd.server.api.EventStream;
+import dnd.server.api.Request;
+import dnd.server.api.Response;
+import dnd.server.service.PaymentEventBus;
+
+import java.util.Map;
+
+/**
+ * GET /api/prescriptions/:id/payment-events - Theo dõi trạng thái thanh toán qua Server-Sent Events
+ *
+ * Thay cho việc poll payment-status trong lúc hiển thị QR:
+ * - Event đầu tiên là trạng thái hiện tại (giống data của payment-status)
+ * - Khi đơn được thanh toán hoặc bị hủy (thủ công hoặc quá hạn) server gửi thêm một event rồi đóng kết nối
+ * - Comment ": ping" được gửi định kỳ để giữ kết nối
+ *
+ * event: payment
+ * data: {"prescriptionId":123,"status":"pending"}
+ *
+ * event: payment
+ * data: {"prescriptionId":123,"status":"paid","transactionId":456,"amount":150000,"paidAt":"..."}
+ */
+public class PrescriptionPaymentEventsEndpoint implements EndpointHandler {
+    private static final String EVENT_NAME = "payment";
+
+    private final DbManager dbManager;
+
+    public PrescriptionPaymentEventsEndpoint(DbManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    @Override
+    public Response handle(Request request) throws Exception {
+        String prescriptionIdStr = request.getPathParam("id");
+        if (prescriptionIdStr == null) {
+            return Response.badRequest("Invalid path format");
+        }
+
+        long prescriptionId;
+        try {
+            prescriptionId = Long.parseLong(prescriptionIdStr);
+        } catch (NumberFormatException e) {
+            return Response.badRequest("Invalid prescription ID");
+        }
+
+        // Đăng ký trước khi đọc trạng thái để không bỏ lỡ event xảy ra ở giữa
+        EventStream stream = new EventStream();
+        Runnable unsubscribe = PaymentEventBus.getInstance().subscribe(prescriptionId, event -> sendStatus(stream, event));
+        stream.onClose(unsubscribe);
+
+        Map<String, Object> status = GetPrescriptionPaymentStatusEndpoint.loadStatus(dbManager, prescriptionId);
+        if (status == null) {
+            unsubscribe.run();
+            return Response.notFound("Prescription not found");
+        }
+        sendStatus(stream, status);
+        return Response.eventStream(stream);
+    }
+
+    /**
+     * Gửi trạng thái, đóng stream nếu đã là trạng thái cuối (paid/cancelled)
+     */
+    private static void sendStatus(EventStream stream, Map<String, Object> status) {
+        stream.send(EVENT_NAME, status);
+        Object value = status.get("status");
+        if (PaymentEventBus.STATUS_PAID.equals(value) || PaymentEventBus.STATUS_CANCELLED.equals(value)) {
+            stream.close();
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package dnd.server.endpoints;
 
 import dnd.server.db.DbManager;
+import dnd.server.db.KeysetQuery;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.util.PageCursor;
 
 import java.util.HashMap;
 import java.util.List;
 
 /**
  * GET /api/prescriptions - Lấy danh sách đơn thuốc
+ * Query params:
+ * - status, staffId (bác sĩ hoặc dược sĩ), from, to (optional filters theo created_at;
+ *   from bao gồm, to không bao gồm)
+ * - limit, cursor (optional): có một trong hai thì trả về theo trang, kèm "next" là cursor
+ *   của trang tiếp theo; không có thì stream toàn bộ danh sách (chunked) như trước
  */
 public class PrescriptionsEndpoint implements EndpointHandler {
+    private static final int FETCH_SIZE = 500;
+    private static final int DEFAULT_PAGE_SIZE = 50;
     private final DbManager dbManager;
 
     public PrescriptionsEndpoint(DbManager dbManager) {
@@ -19,9 +28,41 @@ public class PrescriptionsEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String sql = "SELECT * FROM prescriptions ORDER BY created_at DESC";
-        List<HashMap<String, Object>> prescriptions = dbManager.query(sql);
-        return Response.success(prescriptions);
+        String limitParam = request.getQueryParam("limit");
+        String cursorParam = request.getQueryParam("cursor");
+        boolean paged = limitParam != null || cursorParam != null;
+
+        int limit;
+        KeysetQuery query = new KeysetQuery("SELECT * FROM prescriptions", "created_at", "id");
+        try {
+            limit = KeysetQuery.pageSize(limitParam, DEFAULT_PAGE_SIZE);
+            String status = request.getQueryParam("status");
+            String staffId = request.getQueryParam("staffId");
+            query.where("status = ?", status != null && !status.isEmpty() ? Integer.parseInt(status) : null)
+                    .where("doctor_staff_id = ? OR pharmacist_staff_id = ?", staffId)
+                    .between(request.getQueryParam("from"), request.getQueryParam("to"));
+            PageCursor cursor = PageCursor.decode(cursorParam);
+            if (cursor != null) {
+                query.after(cursor.getSortTimestamp(), cursor.getId());
+            }
+        } catch (IllegalArgumentException e) {
+            return Response.badRequest(e.getMessage());
+        }
+
+        if (!paged) {
+            String sql = query.sql(0);
+            Object[] params = query.params(0);
+            return Response.streamed(out -> dbManager.stream(sql, FETCH_SIZE, out::write, params));
+        }
+
+        // Lấy thêm 1 row để biết còn trang tiếp theo không
+        List<HashMap<String, Object>> prescriptions = dbManager.query(query.sql(limit + 1), query.params(limit + 1));
+        String next = null;
+        if (prescriptions.size() > limit) {
+            prescriptions = prescriptions.subList(0, limit);
+            HashMap<String, Object> last = prescriptions.get(limit - 1);
+            next = PageCursor.of(last.get("created_at"), last.get("id")).encode();
+        }
+        return Response.page(prescriptions, next);
     }
 }
-
@@ -21,13 +21,10 @@ public class ResetStaffPasswordEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String staffId = request.getPathParam("id");
+        if (staffId == null) {
             return Response.badRequest("staffId is required");
         }
-
-        String staffId = parts[parts.length - 2]; // Second to last (before "password")
         JsonObject body = request.getBody();
         if (body == null || !body.has("newPassword")) {
             return Response.badRequest("newPassword is required");
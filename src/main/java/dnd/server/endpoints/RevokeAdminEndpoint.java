@@ -1,5 +1,6 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
@@ -19,14 +20,11 @@ public class RevokeAdminEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String staffId = request.getPathParam("id");
+        if (staffId == null) {
             return Response.badRequest("staffId is required");
         }
 
-        String staffId = parts[parts.length - 2]; // Second to last (before "admin")
-
         // Check if admin account exists
         HashMap<String, Object> existing = dbManager.queryOne(
             "SELECT id FROM admin_accounts WHERE staff_id = ?", staffId);
@@ -36,7 +34,8 @@ public class RevokeAdminEndpoint implements EndpointHandler {
 
         // Delete admin account
         String sql = "DELETE FROM admin_accounts WHERE staff_id = ?";
-        int affected = dbManager.update(sql, staffId);
+        int affected = ChangeLog.update(dbManager, sql, new Object[] {staffId},
+            ChangeLog.upsert(ChangeLog.STAFF, staffId));
         
         if (affected > 0) {
             return Response.success("Admin account deleted successfully");
@@ -1,10 +1,15 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
+import dnd.server.db.Row;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.CardCredentialCache;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,20 +25,23 @@ public class RevokeCardByStaffEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        // Extract staffId from path: /api/cards/staff/STAFF001/revoke -> STAFF001
-        String[] parts = path.split("/");
-        if (parts.length < 5) {
-            return Response.badRequest("staffId is required");
-        }
-
-        String staffId = parts[parts.length - 2]; // Second to last part
+        String staffId = request.getPathParam("id");
         if (staffId == null || staffId.trim().isEmpty()) {
             return Response.badRequest("staffId cannot be empty");
         }
 
+        List<ChangeLog.Change> changes = new ArrayList<>();
+        changes.add(ChangeLog.upsert(ChangeLog.STAFF, staffId));
+        for (Row card : dbManager.queryRows(
+                "SELECT REPLACE(card_id, ' ', '') FROM card_keys WHERE staff_id = ? AND status = 1", staffId)) {
+            changes.add(ChangeLog.upsert(ChangeLog.CARD, card.get(0)));
+        }
+
         String sql = "UPDATE card_keys SET status = 0 WHERE staff_id = ? AND status = 1";
-        int affected = dbManager.update(sql, staffId);
+        int affected = ChangeLog.update(dbManager, sql, new Object[] {staffId}, changes.toArray(new ChangeLog.Change[0]));
+        if (affected > 0) {
+            CardCredentialCache.getInstance().invalidateStaff(staffId);
+        }
 
         Map<String, Object> data = new HashMap<>();
         data.put("affected", affected);
@@ -15,6 +15,29 @@ import java.util.Map;
  * Response: [{"staffId": "...", "shortName": "...", "fullName": "...", "role": 1, ...}, ...]
  */
 public class StaffListEndpoint implements EndpointHandler {
+    /**
+     * Nhân viên kèm isAdmin, hasCard; dùng chung với SyncEndpoint
+     */
+    static final String SELECT_STAFF = """
+            SELECT
+                s.staff_id,
+                s.short_name,
+                s.full_name,
+                s.role,
+                s.department,
+                s.active,
+                CASE WHEN a.id IS NOT NULL AND a.active = 1 THEN 1 ELSE 0 END AS is_admin,
+                CASE
+                    WHEN EXISTS (
+                        SELECT 1 FROM card_keys ck
+                        WHERE ck.staff_id = s.staff_id AND ck.status = 1
+                    ) THEN 1
+                    ELSE 0
+                END AS has_card
+            FROM staff_info s
+            LEFT JOIN admin_accounts a ON a.staff_id = s.staff_id
+            """;
+
     private final DbManager dbManager;
 
     public StaffListEndpoint(DbManager dbManager) {
@@ -26,26 +49,7 @@ public class StaffListEndpoint implements EndpointHandler {
         Map<String, String> query = request.getQueryParams();
         
         // Build SQL query
-        StringBuilder sql = new StringBuilder("""
-                SELECT 
-                    s.staff_id,
-                    s.short_name,
-                    s.full_name,
-                    s.role,
-                    s.department,
-                    s.active,
-                    CASE WHEN a.id IS NOT NULL AND a.active = 1 THEN 1 ELSE 0 END AS is_admin,
-                    CASE 
-                        WHEN EXISTS (
-                            SELECT 1 FROM card_keys ck 
-                            WHERE ck.staff_id = s.staff_id AND ck.status = 1
-                        ) THEN 1 
-                        ELSE 0 
-                    END AS has_card
-                FROM staff_info s
-                LEFT JOIN admin_accounts a ON a.staff_id = s.staff_id
-                WHERE 1=1
-                """);
+        StringBuilder sql = new StringBuilder(SELECT_STAFF + "WHERE 1=1\n");
         
         List<Object> params = new ArrayList<>();
         
@@ -86,26 +90,33 @@ public class StaffListEndpoint implements EndpointHandler {
         // Convert to response format
         List<Map<String, Object>> staffList = new ArrayList<>();
         for (HashMap<String, Object> row : results) {
-            Map<String, Object> staff = new HashMap<>();
-            staff.put("staffId", asString(row.get("staff_id")));
-            staff.put("shortName", asString(row.get("short_name")));
-            staff.put("fullName", asString(row.get("full_name")));
-            staff.put("role", toInt(row.get("role"), 0));
-            staff.put("department", asString(row.get("department")));
-            staff.put("active", toBoolean(row.get("active")));
-            staff.put("isAdmin", toBoolean(row.get("is_admin")));
-            staff.put("hasCard", toBoolean(row.get("has_card")));
-            staffList.add(staff);
+            staffList.add(toStaff(row));
         }
         
         return Response.success(staffList);
     }
 
-    private String asString(Object value) {
+    /**
+     * Dòng SELECT_STAFF sang dạng response
+     */
+    static Map<String, Object> toStaff(Map<String, Object> row) {
+        Map<String, Object> staff = new HashMap<>();
+        staff.put("staffId", asString(row.get("staff_id")));
+        staff.put("shortName", asString(row.get("short_name")));
+        staff.put("fullName", asString(row.get("full_name")));
+        staff.put("role", toInt(row.get("role"), 0));
+        staff.put("department", asString(row.get("department")));
+        staff.put("active", toBoolean(row.get("active")));
+        staff.put("isAdmin", toBoolean(row.get("is_admin")));
+        staff.put("hasCard", toBoolean(row.get("has_card")));
+        return staff;
+    }
+
+    private static String asString(Object value) {
         return value != null ? value.toString() : null;
     }
     
-    private int toInt(Object value, int defaultValue) {
+    private static int toInt(Object value, int defaultValue) {
         if (value == null) {
             return defaultValue;
         }
@@ -122,7 +133,7 @@ public class StaffListEndpoint implements EndpointHandler {
         }
     }
     
-    private boolean toBoolean(Object value) {
+    private static boolean toBoolean(Object value) {
         if (value == null) {
             return false;
         }
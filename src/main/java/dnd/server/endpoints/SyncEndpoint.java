@@ -0,0 +1,175 @@
+package dnd.server.endpoints;
+
+import dnd.server.db.ChangeLog;
+import dnd.server.db.DbManager;
+import dnd.server.db.KeysetQuery;
+import dnd.server.api.Request;
+import dnd.server.api.Response;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * GET /api/sync - Thay đổi của thuốc, đơn thuốc, nhân viên, thẻ sau một change token (delta sync)
+ * Query params: since (token của lần sync trước), limit (optional, số thay đổi tối đa, mặc định 500)
+ * Response: {"token": 123, "hasMore": false, "reset": false,
+ *            "medicines": {"upserts": [...], "deletes": ["code", ...]}, "prescriptions": {...}, "staff": {...}, "cards": {...}}
+ * - upserts: bản hiện tại, cùng dạng với GET /api/medicines, /api/prescriptions, /api/staff, /api/cards
+ *   (gồm cả nhân viên inactive và thẻ đã thu hồi, client lọc theo active/status như các endpoint danh sách)
+ * - deletes: khóa của bản ghi đã bị xóa (code, id, staffId, cardId)
+ * - reset = true khi không có since hoặc token đã bị dọn khỏi change_log: client tải lại toàn bộ qua các
+ *   endpoint danh sách rồi sync tiếp từ token trả về (token được lấy trước khi tải lại)
+ * - hasMore = true thì gọi tiếp ngay với token mới
+ * Chi phí theo số thay đổi từ lần sync trước, không theo kích thước các bảng
+ */
+public class SyncEndpoint implements EndpointHandler {
+    private static final int DEFAULT_LIMIT = 500;
+    private static final int MAX_IDS_PER_QUERY = 500;
+    // Khoảng trống id trẻ hơn thời gian này có thể là transaction chưa commit: dừng lại chờ lần sync sau
+    private static final int SETTLE_SECONDS = 10;
+
+    private final DbManager dbManager;
+
+    public SyncEndpoint(DbManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    @Override
+    public Response handle(Request request) throws Exception {
+        String sinceParam = request.getQueryParam("since");
+        long since;
+        int limit;
+        try {
+            since = sinceParam != null && !sinceParam.isEmpty() ? Long.parseLong(sinceParam.trim()) : -1;
+            limit = KeysetQuery.pageSize(request.getQueryParam("limit"), DEFAULT_LIMIT);
+        } catch (NumberFormatException e) {
+            return Response.badRequest("since must be a number");
+        } catch (IllegalArgumentException e) {
+            return Response.badRequest(e.getMessage());
+        }
+
+        HashMap<String, Object> bounds = dbManager.queryOne(
+            "SELECT MIN(id) AS minId, MAX(id) AS maxId, "
+                + "MAX(CASE WHEN changed_at < NOW(3) - INTERVAL ? SECOND THEN id END) AS settledId FROM change_log",
+            SETTLE_SECONDS);
+        if (bounds == null) {
+            return Response.internalError("Failed to read change log");
+        }
+        long minId = longValue(bounds.get("minId"), 1);
+        long maxId = longValue(bounds.get("maxId"), 0);
+        if (since < 0 || since < minId - 1 || since > maxId) {
+            // Token bắt đầu: trước mọi thay đổi có thể chưa commit, lần sync sau có thể gửi lại vài thay đổi (vô hại)
+            long token = Math.max(longValue(bounds.get("settledId"), 0), minId - 1);
+            return Response.success(result(token, false, true));
+        }
+
+        List<HashMap<String, Object>> rows = dbManager.query(
+            "SELECT id, entity, entity_id, op, changed_at < NOW(3) - INTERVAL ? SECOND AS settled "
+                + "FROM change_log WHERE id > ? ORDER BY id LIMIT ?",
+            SETTLE_SECONDS, since, limit + 1);
+
+        // Chỉ giữ thay đổi cuối cùng của mỗi bản ghi
+        Map<String, Map<String, String>> latest = new HashMap<>();
+        long token = since;
+        int taken = 0;
+        boolean hasMore = false;
+        for (HashMap<String, Object> row : rows) {
+            long id = ((Number) row.get("id")).longValue();
+            if (id != token + 1 && !isTrue(row.get("settled"))) {
+                break; // Id còn thiếu phía trước có thể thuộc transaction chưa commit
+            }
+            if (taken == limit) {
+                hasMore = true;
+                break;
+            }
+            taken++;
+            token = id;
+            latest.computeIfAbsent((String) row.get("entity"), e -> new LinkedHashMap<>())
+                .put((String) row.get("entity_id"), (String) row.get("op"));
+        }
+
+        Map<String, Object> data = result(token, hasMore, false);
+        data.put("medicines", changes(latest.get(ChangeLog.MEDICINE),
+            "SELECT * FROM medicines WHERE code IN (%s)", row -> (String) row.get("code"), rowsFound -> {
+                MedicinesEndpoint.addNearestBatch(rowsFound);
+                return rowsFound;
+            }));
+        data.put("prescriptions", changes(latest.get(ChangeLog.PRESCRIPTION),
+            "SELECT * FROM prescriptions WHERE id IN (%s)", row -> String.valueOf(row.get("id")), ArrayList::new));
+        data.put("staff", changes(latest.get(ChangeLog.STAFF),
+            StaffListEndpoint.SELECT_STAFF + "WHERE s.staff_id IN (%s)", row -> (String) row.get("staff_id"),
+            rowsFound -> rowsFound.stream().map(StaffListEndpoint::toStaff).toList()));
+        data.put("cards", changes(latest.get(ChangeLog.CARD),
+            "SELECT * FROM card_keys WHERE REPLACE(card_id, ' ', '') IN (%s)",
+            row -> ((String) row.get("card_id")).replace(" ", ""),
+            rowsFound -> rowsFound.stream().map(GetAllCardsEndpoint::toCard).toList()));
+        return Response.success(data);
+    }
+
+    /**
+     * Tách upserts/deletes của một entity và đọc bản hiện tại của các bản ghi upsert
+     * Bản ghi upsert không còn trong bảng (bị xóa sau đó) được trả về như delete
+     * @param sql SELECT với "%s" là danh sách placeholder của IN
+     */
+    private Map<String, Object> changes(Map<String, String> ops, String sql, Function<HashMap<String, Object>, String> keyOf,
+                                        RowsMapper toResponse) throws SQLException {
+        // Khóa so sánh không phân biệt hoa thường như collation của các bảng
+        Set<String> deletes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        List<String> upserts = new ArrayList<>();
+        if (ops != null) {
+            ops.forEach((key, op) -> (ChangeLog.OP_DELETE.equals(op) ? deletes : upserts).add(key));
+        }
+
+        List<HashMap<String, Object>> rows = new ArrayList<>();
+        for (int from = 0; from < upserts.size(); from += MAX_IDS_PER_QUERY) {
+            List<String> keys = upserts.subList(from, Math.min(upserts.size(), from + MAX_IDS_PER_QUERY));
+            String placeholders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+            rows.addAll(dbManager.query(sql.formatted(placeholders), keys.toArray()));
+        }
+        Set<String> found = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (HashMap<String, Object> row : rows) {
+            found.add(keyOf.apply(row));
+        }
+        for (String key : upserts) {
+            if (!found.contains(key)) {
+                deletes.add(key);
+            }
+        }
+
+        Map<String, Object> entity = new HashMap<>();
+        entity.put("upserts", toResponse.apply(rows));
+        entity.put("deletes", new ArrayList<>(deletes));
+        return entity;
+    }
+
+    /**
+     * Chuyển các dòng đọc được sang dạng response của endpoint danh sách tương ứng
+     */
+    private interface RowsMapper {
+        List<?> apply(List<HashMap<String, Object>> rows) throws SQLException;
+    }
+
+    private static Map<String, Object> result(long token, boolean hasMore, boolean reset) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("token", token);
+        data.put("hasMore", hasMore);
+        data.put("reset", reset);
+        return data;
+    }
+
+    private static boolean isTrue(Object value) {
+        return value instanceof Boolean bool ? bool : value instanceof Number number && number.intValue() != 0;
+    }
+
+    private static long longValue(Object value, long defaultValue) {
+        return value instanceof Number number ? number.longValue() : defaultValue;
+    }
+}
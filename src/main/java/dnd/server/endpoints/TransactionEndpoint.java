@@ -1,13 +1,23 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
+import dnd.server.db.DbTransaction;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
 import dnd.server.crypto.HmacUtils;
 import dnd.server.config.BankConfig;
+import dnd.server.service.LogWriter;
+import dnd.server.service.PaymentEventBus;
+import dnd.server.service.PrescriptionTimeoutEngine;
+import dnd.server.service.StatsSnapshot;
+import dnd.server.util.PaymentRef;
 import com.google.gson.JsonObject;
 import com.google.gson.Gson;
 
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -64,8 +74,8 @@ public class TransactionEndpoint implements EndpointHandler {
         // Với thanh toán tiền mặt (do client nội bộ gọi), bỏ qua HMAC
         if (!isCash) {
             // Verify HMAC signature cho giao dịch QR từ bank server
-            // Headers được lưu dưới dạng lowercase trong HttpRequest
-            String signature = request.headers != null ? request.headers.get("x-signature") : null;
+            // Headers được lưu dưới dạng lowercase trong Request
+            String signature = request.getHeader("X-Signature");
             if (signature == null || signature.trim().isEmpty()) {
                 return Response.error(401, "X-Signature header is required");
             }
@@ -133,124 +143,106 @@ public class TransactionEndpoint implements EndpointHandler {
         String content = body.has("content") && !body.get("content").isJsonNull() 
             ? body.get("content").getAsString() : null;
 
-        // Ensure transactions table exists
-        ensureTransactionsTableExists();
+        // Prescription ID nằm trong ref (format: "medcard {prescriptionId}") hoặc trong content
+        // Parse một lần ở đây và lưu vào cột prescription_id (có index) của transactions
+        Long prescriptionId = PaymentRef.parsePrescriptionId(ref, content);
+        if (prescriptionId != null) {
+            logger.info("Transaction linked to prescription: " + prescriptionId);
+        }
+
+        // Idempotency check, insert transaction, cập nhật prescription và ghi log trong cùng một transaction
+        final String finalBankId = bankId;
+        final String finalIdempotencyKey = idempotencyKey;
+        try {
+            return dbManager.inTransaction(tx -> processTransaction(tx, finalBankId, amount, ref, content,
+                    timestamp, finalIdempotencyKey, paymentMethod, prescriptionId));
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Request trùng idempotencyKey được xử lý đồng thời, bản ghi kia đã commit trước
+            HashMap<String, Object> existing = dbManager.queryOne("SELECT id FROM transactions WHERE idempotency_key = ?", idempotencyKey);
+            if (existing != null) {
+                return duplicateResponse(((Number) existing.get("id")).longValue());
+            }
+            logger.severe("Failed to insert transaction: " + e.getMessage());
+            return Response.internalError("Failed to insert transaction");
+        } catch (SQLException e) {
+            logger.severe("Failed to process transaction: " + e.getMessage());
+            return Response.internalError("Failed to insert transaction");
+        }
+    }
 
+    private Response processTransaction(DbTransaction tx, String bankId, long amount, String ref, String content,
+                                        long timestamp, String idempotencyKey, String paymentMethod,
+                                        Long prescriptionId) throws SQLException {
         // Check idempotency
         String checkSql = "SELECT id FROM transactions WHERE idempotency_key = ?";
-        HashMap<String, Object> existing = dbManager.queryOne(checkSql, idempotencyKey);
+        HashMap<String, Object> existing = tx.queryOne(checkSql, idempotencyKey);
         if (existing != null) {
-            Long existingId = ((Number) existing.get("id")).longValue();
-            Map<String, Object> data = new HashMap<>();
-            data.put("success", true);
-            data.put("message", "Duplicate");
-            data.put("transaction_id", existingId.toString());
-            return Response.success(data);
+            return duplicateResponse(((Number) existing.get("id")).longValue());
         }
 
-        // Check if this is a prescription payment
-        // Prescription ID có thể nằm trong ref (format: "medcard {prescriptionId}") hoặc trong content
-        Long prescriptionId = null;
         String staffId = null;
-        
-        // Tìm prescription ID từ ref hoặc content
-        String prescriptionIdStr = null;
-        if (ref != null && ref.startsWith("medcard ")) {
-            prescriptionIdStr = ref.substring("medcard ".length()).trim();
-        } else if (content != null && content.contains("medcard ")) {
-            // Tìm "medcard {id}" trong content
-            int medcardIndex = content.indexOf("medcard ");
-            if (medcardIndex >= 0) {
-                String afterMedcard = content.substring(medcardIndex + "medcard ".length());
-                // Lấy số ID (có thể có khoảng trắng hoặc ký tự khác sau)
-                String[] parts = afterMedcard.split("\\s+");
-                if (parts.length > 0) {
-                    prescriptionIdStr = parts[0].trim();
-                }
-            }
-        }
-        
-        if (prescriptionIdStr != null && !prescriptionIdStr.isEmpty()) {
-            try {
-                prescriptionId = Long.parseLong(prescriptionIdStr);
-                logger.info("Transaction linked to prescription: " + prescriptionId);
-                
-                // Lookup prescription để lấy staff_id (ưu tiên pharmacist_staff_id, nếu không có thì dùng doctor_staff_id)
-                String prescriptionSql = "SELECT doctor_staff_id, pharmacist_staff_id, status FROM prescriptions WHERE id = ?";
-                HashMap<String, Object> prescription = dbManager.queryOne(prescriptionSql, prescriptionId);
-                if (prescription != null) {
-                    // Ưu tiên pharmacist_staff_id, nếu không có thì dùng doctor_staff_id
-                    staffId = prescription.get("pharmacist_staff_id") != null 
-                        ? prescription.get("pharmacist_staff_id").toString()
-                        : (prescription.get("doctor_staff_id") != null 
-                            ? prescription.get("doctor_staff_id").toString() 
-                            : null);
-                    logger.info("Found staff_id from prescription: " + staffId);
-                } else {
-                    logger.warning("Prescription not found: " + prescriptionId);
-                }
-            } catch (NumberFormatException e) {
-                logger.warning("Invalid prescription ID format: " + prescriptionIdStr);
+        Object previousStatus = null;
+        if (prescriptionId != null) {
+            // Lookup prescription để lấy staff_id (ưu tiên pharmacist_staff_id, nếu không có thì dùng doctor_staff_id)
+            String prescriptionSql = "SELECT doctor_staff_id, pharmacist_staff_id, status FROM prescriptions WHERE id = ?";
+            HashMap<String, Object> prescription = tx.queryOne(prescriptionSql, prescriptionId);
+            if (prescription != null) {
+                previousStatus = prescription.get("status");
+                staffId = prescription.get("pharmacist_staff_id") != null
+                    ? prescription.get("pharmacist_staff_id").toString()
+                    : (prescription.get("doctor_staff_id") != null
+                        ? prescription.get("doctor_staff_id").toString()
+                        : null);
+                logger.info("Found staff_id from prescription: " + staffId);
+            } else {
+                logger.warning("Prescription not found: " + prescriptionId);
             }
         }
 
-        // Insert transaction (staff_id sẽ được update sau nếu có prescription)
+        // Insert transaction (staff_id lấy từ prescription nếu có)
         String insertSql = """
-            INSERT INTO transactions (bank_id, amount, ref, content, staff_id, ts_ms, idempotency_key, payment_method, created_at)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, NOW())
+            INSERT INTO transactions (bank_id, amount, ref, prescription_id, content, staff_id, ts_ms, idempotency_key, payment_method, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, NOW())
             """;
-        Long transactionId = dbManager.insertAndGetId(insertSql, bankId, amount, ref, content, staffId, timestamp, idempotencyKey, paymentMethod.toLowerCase());
-
+        Long transactionId = tx.insertAndGetId(insertSql, bankId, amount, ref, prescriptionId, content, staffId, timestamp,
+                idempotencyKey, paymentMethod.toLowerCase());
         if (transactionId == null) {
-            return Response.internalError("Failed to insert transaction");
+            throw new SQLException("No transaction row inserted");
         }
 
-        // Nếu có prescription, update status và staff_id
-        if (prescriptionId != null && staffId != null) {
-            try {
-                // Update prescription status = 2 (Hoàn tất)
-                String updatePrescriptionSql = "UPDATE prescriptions SET status = 2, updated_at = NOW() WHERE id = ?";
-                dbManager.update(updatePrescriptionSql, prescriptionId);
-                logger.info("Updated prescription " + prescriptionId + " status to completed");
-                
-                // Update staff_id vào transaction (nếu chưa có)
-                if (staffId != null) {
-                    String updateTransactionSql = "UPDATE transactions SET staff_id = ? WHERE id = ?";
-                    dbManager.update(updateTransactionSql, staffId, transactionId);
-                }
-            } catch (Exception e) {
-                logger.warning("Failed to update prescription: " + e.getMessage());
-            }
+        // Nếu có prescription, update status = 2 (Hoàn tất)
+        boolean prescriptionCompleted = prescriptionId != null && staffId != null;
+        if (prescriptionCompleted) {
+            String updatePrescriptionSql = "UPDATE prescriptions SET status = 2, updated_at = NOW() WHERE id = ?";
+            tx.update(updatePrescriptionSql, prescriptionId);
+            ChangeLog.record(tx, ChangeLog.upsert(ChangeLog.PRESCRIPTION, prescriptionId));
+            logger.info("Updated prescription " + prescriptionId + " status to completed");
         }
 
-        // Update audit_history (chỉ nếu có staffId từ prescription)
-        if (staffId != null && !staffId.trim().isEmpty()) {
-            try {
-                String auditSql = """
-                    INSERT INTO audit_history (timestamp, result, staff_id)
-                    VALUES (NOW(), ?, ?)
-                    """;
+        // audit_history (chỉ nếu có staffId từ prescription) và system_logs được ghi bất đồng bộ
+        // sau khi commit, không nằm trong transaction thanh toán
+        String auditStaffId = staffId;
+        Object statusBeforePayment = previousStatus;
+        String logDescription = String.format("Transaction processed: ID=%d, Bank=%s, Amount=%d, Ref=%s, Method=%s",
+            transactionId, bankId, amount, ref, paymentMethod);
+        tx.afterCommit(() -> {
+            LogWriter logWriter = LogWriter.getInstance();
+            if (auditStaffId != null && !auditStaffId.trim().isEmpty()) {
                 // result=1 (thành công), chi tiết đã ghi ở system_logs
-                dbManager.update(auditSql, 1, staffId);
-            } catch (Exception e) {
-                // Log error but don't fail transaction
-                logger.warning("Failed to update audit_history: " + e.getMessage());
+                logWriter.auditHistory(auditStaffId, 1);
             }
-        }
-
-        // Update system_logs
-        try {
-            String systemLogSql = """
-                INSERT INTO system_logs (action, admin_staff_id, description, created_at)
-                VALUES (?, ?, ?, NOW())
-                """;
-            String logDescription = String.format("Transaction processed: ID=%d, Bank=%s, Amount=%d, Ref=%s, Method=%s", 
-                transactionId, bankId, amount, ref, paymentMethod);
-            dbManager.update(systemLogSql, "BANK_TRANSACTION", staffId, logDescription);
-        } catch (Exception e) {
-            // Log error but don't fail transaction
-            logger.warning("Failed to update system_logs: " + e.getMessage());
-        }
+            logWriter.systemLog("BANK_TRANSACTION", auditStaffId, logDescription);
+            if (prescriptionId != null) {
+                // Đơn đã có giao dịch thanh toán, không cần theo dõi timeout nữa
+                PrescriptionTimeoutEngine.getInstance().untrack(prescriptionId);
+            }
+            if (prescriptionCompleted) {
+                // Báo cho các client đang hiển thị QR của đơn này
+                PaymentEventBus.getInstance().publishPaid(prescriptionId, transactionId, amount,
+                        new Timestamp(System.currentTimeMillis()));
+                StatsSnapshot.getInstance().prescriptionStatusChanged(statusBeforePayment, 2);
+            }
+        });
 
         // Trả về format mà client expect
         Map<String, Object> data = new HashMap<>();
@@ -261,40 +253,11 @@ public class TransactionEndpoint implements EndpointHandler {
         return Response.success(data);
     }
 
-    /**
-     * Tạo bảng transactions nếu chưa tồn tại
-     */
-    private void ensureTransactionsTableExists() {
-        try {
-            String createTableSql = """
-                CREATE TABLE IF NOT EXISTS transactions (
-                    id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT,
-                    bank_id VARCHAR(64) NOT NULL,
-                    amount BIGINT NOT NULL,
-                    ref VARCHAR(191) NOT NULL,
-                    content TEXT NULL,
-                    staff_id VARCHAR(64) NULL,
-                    ts_ms BIGINT NOT NULL,
-                    idempotency_key VARCHAR(191) NOT NULL,
-                    payment_method VARCHAR(16) NOT NULL DEFAULT 'qr',
-                    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
-                    PRIMARY KEY (id),
-                    UNIQUE KEY uniq_idem (idempotency_key),
-                    INDEX idx_bank (bank_id),
-                    INDEX idx_staff (staff_id),
-                    INDEX idx_method (payment_method),
-                    INDEX idx_created (created_at)
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """;
-            dbManager.update(createTableSql);
-
-            // Thêm cột nếu bảng cũ thiếu
-            try { dbManager.update("CREATE INDEX IF NOT EXISTS idx_staff ON transactions(staff_id)"); } catch (Exception ignore) {}
-            try { dbManager.update("CREATE INDEX IF NOT EXISTS idx_method ON transactions(payment_method)"); } catch (Exception ignore) {}
-        } catch (Exception e) {
-            // Table might already exist, ignore
-            logger.fine("Transactions table check: " + e.getMessage());
-        }
+    private static Response duplicateResponse(long existingId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("success", true);
+        data.put("message", "Duplicate");
+        data.put("transaction_id", Long.toString(existingId));
+        return Response.success(data);
     }
 }
-
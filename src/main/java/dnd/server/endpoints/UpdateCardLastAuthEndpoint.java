@@ -1,5 +1,6 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
@@ -17,17 +18,15 @@ public class UpdateCardLastAuthEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String cardId = request.getPathParam("id");
+        if (cardId == null) {
             return Response.badRequest("cardId is required");
         }
-
-        String cardId = parts[parts.length - 2]; // Second to last (before "last-auth")
         // Normalize cardId từ request: bỏ khoảng trắng để so sánh
         String normalizedCardId = cardId.replaceAll("\\s+", "");
         String sql = "UPDATE card_keys SET last_auth_at = CURRENT_TIMESTAMP WHERE REPLACE(card_id, ' ', '') = ?";
-        int affected = dbManager.update(sql, normalizedCardId);
+        int affected = ChangeLog.update(dbManager, sql, new Object[] {normalizedCardId},
+            ChangeLog.upsert(ChangeLog.CARD, normalizedCardId));
         
         if (affected > 0) {
             return Response.success("Last auth time updated");
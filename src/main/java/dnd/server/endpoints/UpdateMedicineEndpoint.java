@@ -1,16 +1,21 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.StatsSnapshot;
 import com.google.gson.JsonObject;
 
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.logging.Logger;
 
 /**
  * PUT /api/medicines/:id - Cập nhật thuốc
  */
 public class UpdateMedicineEndpoint implements EndpointHandler {
+    private static final Logger logger = Logger.getLogger(UpdateMedicineEndpoint.class.getName());
     private final DbManager dbManager;
 
     public UpdateMedicineEndpoint(DbManager dbManager) {
@@ -19,24 +24,16 @@ public class UpdateMedicineEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String medicineCode = request.getPathParam("id");
+        if (medicineCode == null) {
             return Response.badRequest("Invalid medicine ID");
         }
-        String medicineCode = parts[3];
 
         JsonObject body = request.getBody();
         if (body == null) {
             return Response.badRequest("Request body is required");
         }
 
-        // Kiểm tra medicine có tồn tại không
-        HashMap<String, Object> existing = dbManager.queryOne("SELECT * FROM medicines WHERE code = ?", medicineCode);
-        if (existing == null) {
-            return Response.notFound("Medicine not found: " + medicineCode);
-        }
-
         // Build update query
         StringBuilder sql = new StringBuilder("UPDATE medicines SET ");
         java.util.List<Object> params = new java.util.ArrayList<>();
@@ -74,14 +71,29 @@ public class UpdateMedicineEndpoint implements EndpointHandler {
         sql.append(" WHERE code = ?");
         params.add(medicineCode);
 
-        int result = dbManager.update(sql.toString(), params.toArray());
-        
-        if (result > 0) {
-            HashMap<String, Object> updated = dbManager.queryOne("SELECT * FROM medicines WHERE code = ?", medicineCode);
-            return Response.success("Medicine updated successfully", updated);
-        } else {
+        // Giá trị trước/sau (cho StatsSnapshot) đọc trong cùng transaction với UPDATE, dòng bị khóa đến khi commit
+        HashMap<String, Object> updated;
+        try {
+            updated = dbManager.inTransaction(tx -> {
+                HashMap<String, Object> existing = tx.queryOne("SELECT * FROM medicines WHERE code = ? FOR UPDATE", medicineCode);
+                if (existing == null) {
+                    return null;
+                }
+                tx.update(sql.toString(), params.toArray());
+                ChangeLog.record(tx, ChangeLog.upsert(ChangeLog.MEDICINE, existing.get("code")));
+                HashMap<String, Object> after = tx.queryOne("SELECT * FROM medicines WHERE code = ?", medicineCode);
+                tx.afterCommit(() -> StatsSnapshot.getInstance().medicineChanged(existing, after));
+                return after;
+            });
+        } catch (SQLException e) {
+            logger.severe("Update medicine failed: " + e.getMessage());
             return Response.internalError("Failed to update medicine");
         }
+
+        if (updated == null) {
+            return Response.notFound("Medicine not found: " + medicineCode);
+        }
+        return Response.success("Medicine updated successfully", updated);
     }
 }
 
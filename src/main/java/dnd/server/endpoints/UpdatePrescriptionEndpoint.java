@@ -1,16 +1,22 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.PaymentEventBus;
+import dnd.server.service.StatsSnapshot;
 import com.google.gson.JsonObject;
 
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.logging.Logger;
 
 /**
  * PUT /api/prescriptions/:id - Cập nhật đơn thuốc
  */
 public class UpdatePrescriptionEndpoint implements EndpointHandler {
+    private static final Logger logger = Logger.getLogger(UpdatePrescriptionEndpoint.class.getName());
     private final DbManager dbManager;
 
     public UpdatePrescriptionEndpoint(DbManager dbManager) {
@@ -19,24 +25,16 @@ public class UpdatePrescriptionEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String prescriptionId = request.getPathParam("id");
+        if (prescriptionId == null) {
             return Response.badRequest("Invalid prescription ID");
         }
-        String prescriptionId = parts[3];
 
         JsonObject body = request.getBody();
         if (body == null) {
             return Response.badRequest("Request body is required");
         }
 
-        // Kiểm tra prescription có tồn tại không
-        HashMap<String, Object> existing = dbManager.queryOne("SELECT * FROM prescriptions WHERE id = ?", prescriptionId);
-        if (existing == null) {
-            return Response.notFound("Prescription not found: " + prescriptionId);
-        }
-
         // Build update query
         StringBuilder sql = new StringBuilder("UPDATE prescriptions SET ");
         java.util.List<Object> params = new java.util.ArrayList<>();
@@ -68,14 +66,50 @@ public class UpdatePrescriptionEndpoint implements EndpointHandler {
         sql.append(" WHERE id = ?");
         params.add(prescriptionId);
 
-        int result = dbManager.update(sql.toString(), params.toArray());
-        
-        if (result > 0) {
-            HashMap<String, Object> updated = dbManager.queryOne("SELECT * FROM prescriptions WHERE id = ?", prescriptionId);
-            return Response.success("Prescription updated successfully", updated);
-        } else {
+        // Status trước/sau (cho event và StatsSnapshot) đọc trong cùng transaction với UPDATE, dòng bị khóa đến khi commit
+        HashMap<String, Object> updated;
+        try {
+            updated = dbManager.inTransaction(tx -> {
+                HashMap<String, Object> existing = tx.queryOne("SELECT * FROM prescriptions WHERE id = ? FOR UPDATE", prescriptionId);
+                if (existing == null) {
+                    return null;
+                }
+                tx.update(sql.toString(), params.toArray());
+                ChangeLog.record(tx, ChangeLog.upsert(ChangeLog.PRESCRIPTION, existing.get("id")));
+                HashMap<String, Object> after = tx.queryOne("SELECT * FROM prescriptions WHERE id = ?", prescriptionId);
+                tx.afterCommit(() -> {
+                    publishStatusChange(existing, after);
+                    StatsSnapshot.getInstance().prescriptionStatusChanged(existing.get("status"), after.get("status"));
+                });
+                return after;
+            });
+        } catch (SQLException e) {
+            logger.severe("Update prescription failed: " + e.getMessage());
             return Response.internalError("Failed to update prescription");
         }
+
+        if (updated == null) {
+            return Response.notFound("Prescription not found: " + prescriptionId);
+        }
+        return Response.success("Prescription updated successfully", updated);
     }
-}
 
+    /**
+     * Status đổi sang 2 (Hoàn tất) hoặc 3 (Hủy) qua PUT thì báo cho các client đang chờ thanh toán,
+     * giống kết quả payment-status sẽ trả về
+     */
+    private static void publishStatusChange(HashMap<String, Object> existing, HashMap<String, Object> updated) {
+        if (updated == null || !(updated.get("status") instanceof Number status)) {
+            return;
+        }
+        if (existing.get("status") instanceof Number previous && previous.intValue() == status.intValue()) {
+            return;
+        }
+        long id = ((Number) updated.get("id")).longValue();
+        if (status.intValue() == 2) {
+            PaymentEventBus.getInstance().publishPaid(id, null, null, null);
+        } else if (status.intValue() == 3) {
+            PaymentEventBus.getInstance().publishCancelled(id);
+        }
+    }
+}
\ No newline at end of file
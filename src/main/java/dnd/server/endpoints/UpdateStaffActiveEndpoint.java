@@ -1,11 +1,15 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.StatsSnapshot;
 import com.google.gson.JsonObject;
 
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.logging.Logger;
 
 /**
  * PUT /api/staff/:id/active - Kích hoạt/vô hiệu hóa staff
@@ -13,6 +17,7 @@ import java.util.HashMap;
  * Response: {"success": true}
  */
 public class UpdateStaffActiveEndpoint implements EndpointHandler {
+    private static final Logger logger = Logger.getLogger(UpdateStaffActiveEndpoint.class.getName());
     private final DbManager dbManager;
 
     public UpdateStaffActiveEndpoint(DbManager dbManager) {
@@ -21,13 +26,10 @@ public class UpdateStaffActiveEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String staffId = request.getPathParam("id");
+        if (staffId == null) {
             return Response.badRequest("staffId is required");
         }
-
-        String staffId = parts[parts.length - 2]; // Second to last (before "active")
         JsonObject body = request.getBody();
         if (body == null || !body.has("active")) {
             return Response.badRequest("active field is required");
@@ -35,20 +37,29 @@ public class UpdateStaffActiveEndpoint implements EndpointHandler {
 
         boolean active = body.get("active").getAsBoolean();
 
-        // Check if staff exists
-        HashMap<String, Object> existing = dbManager.queryOne("SELECT staff_id FROM staff_info WHERE staff_id = ?", staffId);
-        if (existing == null) {
-            return Response.notFound("Staff not found");
+        // Giá trị trước đó (cho StatsSnapshot) đọc và khóa trong cùng transaction với UPDATE
+        boolean found;
+        try {
+            found = dbManager.inTransaction(tx -> {
+                HashMap<String, Object> existing = tx.queryOne(
+                    "SELECT staff_id, role, active FROM staff_info WHERE staff_id = ? FOR UPDATE", staffId);
+                if (existing == null) {
+                    return false;
+                }
+                tx.update("UPDATE staff_info SET active = ? WHERE staff_id = ?", active ? 1 : 0, staffId);
+                ChangeLog.record(tx, ChangeLog.upsert(ChangeLog.STAFF, existing.get("staff_id")));
+                tx.afterCommit(() -> StatsSnapshot.getInstance().staffChanged(existing, null, active));
+                return true;
+            });
+        } catch (SQLException e) {
+            logger.severe("Update staff status failed: " + e.getMessage());
+            return Response.internalError("Failed to update staff status");
         }
 
-        String sql = "UPDATE staff_info SET active = ? WHERE staff_id = ?";
-        int affected = dbManager.update(sql, active ? 1 : 0, staffId);
-        
-        if (affected > 0) {
-            return Response.success("Staff status updated successfully");
-        } else {
-            return Response.internalError("Failed to update staff status");
+        if (!found) {
+            return Response.notFound("Staff not found");
         }
+        return Response.success("Staff status updated successfully");
     }
 }
 
@@ -1,11 +1,15 @@
 package dnd.server.endpoints;
 
+import dnd.server.db.ChangeLog;
 import dnd.server.db.DbManager;
 import dnd.server.api.Request;
 import dnd.server.api.Response;
+import dnd.server.service.StatsSnapshot;
 import com.google.gson.JsonObject;
 
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.logging.Logger;
 
 /**
  * PUT /api/staff/:id - Cập nhật staff
@@ -13,6 +17,7 @@ import java.util.HashMap;
  * Response: {"success": true}
  */
 public class UpdateStaffEndpoint implements EndpointHandler {
+    private static final Logger logger = Logger.getLogger(UpdateStaffEndpoint.class.getName());
     private final DbManager dbManager;
 
     public UpdateStaffEndpoint(DbManager dbManager) {
@@ -21,24 +26,15 @@ public class UpdateStaffEndpoint implements EndpointHandler {
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+        String staffId = request.getPathParam("id");
+        if (staffId == null) {
             return Response.badRequest("staffId is required");
         }
-
-        String staffId = parts[parts.length - 1];
         JsonObject body = request.getBody();
         if (body == null) {
             return Response.badRequest("Request body is required");
         }
 
-        // Check if staff exists
-        HashMap<String, Object> existing = dbManager.queryOne("SELECT staff_id FROM staff_info WHERE staff_id = ?", staffId);
-        if (existing == null) {
-            return Response.notFound("Staff not found");
-        }
-
         String shortName = body.has("shortName") ? body.get("shortName").getAsString() : null;
         String fullName = body.has("fullName") ? body.get("fullName").getAsString() : null;
         Integer role = body.has("role") ? body.get("role").getAsInt() : null;
@@ -84,13 +80,29 @@ public class UpdateStaffEndpoint implements EndpointHandler {
         sql.append(" WHERE staff_id = ?");
         params.add(staffId);
 
-        int affected = dbManager.update(sql.toString(), params.toArray());
-        
-        if (affected > 0) {
-            return Response.success("Staff updated successfully");
-        } else {
+        // Giá trị trước đó (cho StatsSnapshot) đọc và khóa trong cùng transaction với UPDATE
+        boolean found;
+        try {
+            found = dbManager.inTransaction(tx -> {
+                HashMap<String, Object> existing = tx.queryOne(
+                    "SELECT staff_id, role, active FROM staff_info WHERE staff_id = ? FOR UPDATE", staffId);
+                if (existing == null) {
+                    return false;
+                }
+                tx.update(sql.toString(), params.toArray());
+                ChangeLog.record(tx, ChangeLog.upsert(ChangeLog.STAFF, existing.get("staff_id")));
+                tx.afterCommit(() -> StatsSnapshot.getInstance().staffChanged(existing, role, active));
+                return true;
+            });
+        } catch (SQLException e) {
+            logger.severe("Update staff failed: " + e.getMessage());
             return Response.internalError("Failed to update staff");
         }
+
+        if (!found) {
+            return Response.notFound("Staff not found");
+        }
+        return Response.success("Staff updated successfully");
     }
 }
 
@@ -21,41 +21,11 @@ public class UploadStaffAvatarEndpoint implements EndpointHandler {
     public UploadStaffAvatarEndpoint(DbManager dbManager) {
         this.dbManager = dbManager;
         this.minioClient = MinIOClient.getInstance();
-        ensureAvatarColumnExists();
-    }
-
-    private void ensureAvatarColumnExists() {
-        try {
-            String checkSql = "SELECT COUNT(*) as cnt FROM information_schema.COLUMNS " +
-                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'staff_info' AND COLUMN_NAME = 'avatar_url'";
-            HashMap<String, Object> result = dbManager.queryOne(checkSql);
-            if (result != null && ((Number) result.get("cnt")).intValue() == 0) {
-                // Thêm cột avatar_url (VARCHAR) thay vì BLOB
-                String alterSql = "ALTER TABLE staff_info ADD COLUMN avatar_url VARCHAR(500) NULL COMMENT 'URL ảnh đại diện trên MinIO'";
-                dbManager.update(alterSql);
-                // Xóa cột avatar cũ nếu có (BLOB)
-                try {
-                    String dropOldSql = "ALTER TABLE staff_info DROP COLUMN avatar";
-                    dbManager.update(dropOldSql);
-                } catch (Exception e) {
-                    // Ignore nếu cột không tồn tại
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Warning: Could not ensure avatar_url column exists: " + e.getMessage());
-        }
     }
 
     @Override
     public Response handle(Request request) throws Exception {
-        String path = request.getPath();
-        // Extract staffId from path: /api/staff/STAFF001/avatar -> STAFF001
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
-            return Response.badRequest("staffId is required");
-        }
-
-        String staffId = parts[parts.length - 2]; // Second to last part (before "avatar")
+        String staffId = request.getPathParam("id");
         if (staffId == null || staffId.trim().isEmpty()) {
             return Response.badRequest("staffId cannot be empty");
         }
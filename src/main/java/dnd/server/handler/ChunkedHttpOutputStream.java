@@ -0,0 +1,136 @@
+package dnd.server.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OutputStream ghi response body thành các HTTP chunk, dùng trên worker thread (không phải event loop)
+ * - Dữ liệu được gom vào buffer, đủ CHUNK_SIZE thì gửi một chunk
+ * - Nếu channel không còn writable (client đọc chậm) thì chờ chunk vừa gửi flush xong
+ *   trước khi ghi tiếp, nên bộ nhớ không tăng theo kích thước response
+ * - Nếu toàn bộ body nhỏ hơn một chunk thì gửi như FullHttpResponse có Content-Length
+ */
+final class ChunkedHttpOutputStream extends OutputStream {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final long WRITE_TIMEOUT_SECONDS = 30;
+
+    private final ChannelHandlerContext ctx;
+    private final HttpResponse head;
+    private ByteBuf buffer;
+    private boolean started;
+
+    ChunkedHttpOutputStream(ChannelHandlerContext ctx, HttpResponse head) {
+        this.ctx = ctx;
+        this.head = head;
+    }
+
+    /**
+     * Đã gửi header (và ít nhất một chunk) cho client chưa
+     * Nếu chưa thì vẫn có thể thay bằng một error response bình thường
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer().writeByte(b);
+        if (buffer.readableBytes() >= CHUNK_SIZE) {
+            flushChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        buffer().writeBytes(b, off, len);
+        if (buffer.readableBytes() >= CHUNK_SIZE) {
+            flushChunk();
+        }
+    }
+
+    /**
+     * Kết thúc response: gửi phần còn lại và LastHttpContent
+     */
+    void finish() throws IOException {
+        if (!started) {
+            ByteBuf content = buffer != null ? buffer : ctx.alloc().buffer(0);
+            buffer = null;
+            FullHttpResponse response = new DefaultFullHttpResponse(head.protocolVersion(), head.status(), content);
+            response.headers().set(head.headers());
+            response.headers().remove(HttpHeaderNames.TRANSFER_ENCODING);
+            HttpUtil.setContentLength(response, content.readableBytes());
+            ctx.writeAndFlush(response);
+            started = true;
+            return;
+        }
+
+        flushChunk();
+        ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+    }
+
+    /**
+     * Hủy response: giải phóng buffer chưa gửi
+     */
+    void abort() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+
+    private ByteBuf buffer() {
+        if (buffer == null) {
+            buffer = ctx.alloc().buffer(CHUNK_SIZE);
+        }
+        return buffer;
+    }
+
+    private void flushChunk() throws IOException {
+        if (!ctx.channel().isActive()) {
+            abort();
+            throw new IOException("Client đã ngắt kết nối");
+        }
+        if (buffer == null || !buffer.isReadable()) {
+            return;
+        }
+
+        if (!started) {
+            ctx.write(head);
+            started = true;
+        }
+        ChannelFuture future = ctx.writeAndFlush(new DefaultHttpContent(buffer));
+        buffer = null;
+
+        if (!ctx.channel().isWritable()) {
+            awaitFlushed(future);
+        }
+    }
+
+    private void awaitFlushed(ChannelFuture future) throws IOException {
+        try {
+            if (!future.await(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                ctx.close();
+                throw new IOException("Client đọc quá chậm, đóng kết nối");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bị ngắt khi chờ gửi dữ liệu");
+        }
+        if (!future.isSuccess()) {
+            throw new IOException("Không gửi được dữ liệu: " + future.cause(), future.cause());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package dnd.server.handler;
+
+import dnd.server.config.ServerConfig;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Worker pool để chạy endpoint handlers (JDBC, MinIO...) ngoài Netty event loop
+ * Hàng đợi có giới hạn, khi đầy thì submit() trả về false để handler trả 503
+ * Task nội bộ (trySubmitInternal) chỉ dùng nửa đầu hàng đợi, không tính vào số liệu submitted/rejected
+ */
+public class EndpointExecutor {
+    private static final Logger logger = Logger.getLogger(EndpointExecutor.class.getName());
+    private static EndpointExecutor instance;
+
+    private ThreadPoolExecutor pool;
+    private int queueCapacity;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private EndpointExecutor() {
+        // Private constructor for singleton
+    }
+
+    public static synchronized EndpointExecutor getInstance() {
+        if (instance == null) {
+            instance = new EndpointExecutor();
+        }
+        return instance;
+    }
+
+    /**
+     * Khởi tạo worker pool theo ServerConfig
+     */
+    public synchronized void start(ServerConfig config) {
+        if (pool != null) {
+            logger.warning("Endpoint worker pool has already been started.");
+            return;
+        }
+
+        int threads = config.getWorkerThreads();
+        this.queueCapacity = config.getWorkerQueueCapacity();
+        this.pool = new ThreadPoolExecutor(
+                threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new WorkerThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Endpoint worker pool started: threads=" + threads + ", queueCapacity=" + queueCapacity);
+    }
+
+    /**
+     * Đưa task vào hàng đợi
+     * @return false nếu pool chưa chạy hoặc hàng đợi đã đầy
+     */
+    public boolean submit(Runnable task) {
+        ThreadPoolExecutor current = pool;
+        if (current == null) {
+            rejected.increment();
+            return false;
+        }
+
+        long enqueuedAt = System.nanoTime();
+        try {
+            current.execute(() -> {
+                recordWait(System.nanoTime() - enqueuedAt);
+                task.run();
+            });
+            submitted.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Đưa task nội bộ (ví dụ sub-request của batch) vào hàng đợi nếu còn nhiều chỗ trống
+     * Nửa sau của hàng đợi để dành cho request của client; không nhận thì người gọi tự chạy task,
+     * nên không tính là rejected (không có 503 nào)
+     * @return false nếu pool chưa chạy hoặc hàng đợi đã dùng quá một nửa
+     */
+    public boolean trySubmitInternal(Runnable task) {
+        ThreadPoolExecutor current = pool;
+        if (current == null || current.getQueue().size() >= queueCapacity / 2) {
+            return false;
+        }
+        try {
+            current.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    public int getQueueDepth() {
+        ThreadPoolExecutor current = pool;
+        return current != null ? current.getQueue().size() : 0;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveCount() {
+        ThreadPoolExecutor current = pool;
+        return current != null ? current.getActiveCount() : 0;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Tổng thời gian các task phải chờ trong hàng đợi (nanoseconds)
+     */
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * Lấy thông tin về worker pool
+     */
+    public String getWorkerInfo() {
+        if (pool == null) {
+            return "Worker pool not started";
+        }
+        long count = getSubmittedCount();
+        double avgWaitMs = count > 0 ? getTotalWaitNanos() / (double) count / 1_000_000.0 : 0.0;
+        return String.format(
+            "Active: %d, Queued: %d/%d, Rejected: %d, AvgWait: %.2fms, MaxWait: %.2fms",
+            getActiveCount(),
+            getQueueDepth(),
+            queueCapacity,
+            getRejectedCount(),
+            avgWaitMs,
+            getMaxWaitNanos() / 1_000_000.0
+        );
+    }
+
+    /**
+     * Dừng worker pool, đợi các request đang xử lý hoàn tất
+     */
+    public synchronized void shutdown() {
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        pool = null;
+        logger.info("Endpoint worker pool đã dừng");
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "endpoint-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
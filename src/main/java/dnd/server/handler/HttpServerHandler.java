@@ -1,15 +1,31 @@
 package dnd.server.handler;
 
-import dnd.server.db.DbManager;
 import dnd.server.api.ApiRouter;
-import dnd.server.api.HttpRequest;
-import dnd.server.api.HttpResponse;
+import dnd.server.api.ETags;
+import dnd.server.api.EventStream;
+import dnd.server.api.JsonResponseWriter;
+import dnd.server.api.Request;
+import dnd.server.api.Response;
+import dnd.server.config.ServerConfig;
+import dnd.server.metrics.MetricsRegistry;
+import dnd.server.metrics.RouteMetrics;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
+import io.netty.util.AttributeKey;
 import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.ScheduledFuture;
 
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.*;
@@ -17,47 +33,164 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 /**
  * HTTP handler để xử lý các HTTP requests
+ * Một instance được dùng chung cho mọi channel, state theo connection nằm trong attribute của channel
+ * - Mỗi connection chỉ xử lý một request tại một thời điểm: request pipelined (keep-alive) đến trong lúc
+ *   request trước chưa gửi xong response thì được giữ lại và ngừng đọc socket, nên response luôn đúng thứ tự
  */
+@ChannelHandler.Sharable
 public class HttpServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
     private static final Logger logger = Logger.getLogger(HttpServerHandler.class.getName());
     private static final String CONTENT_TYPE_JSON = "application/json; charset=UTF-8";
+    private static final String CONTENT_TYPE_EVENT_STREAM = "text/event-stream; charset=UTF-8";
+    private static final long EVENT_STREAM_HEARTBEAT_SECONDS = 15;
+    private static final AttributeKey<ConnectionState> CONNECTION_STATE =
+            AttributeKey.valueOf(HttpServerHandler.class, "connectionState");
     
-    private final DbManager dbManager;
     private final ApiRouter apiRouter;
+    private final EndpointExecutor endpointExecutor;
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
 
-    public HttpServerHandler(DbManager dbManager) {
-        this.dbManager = dbManager;
-        this.apiRouter = new ApiRouter(dbManager);
+    public HttpServerHandler(ApiRouter apiRouter, EndpointExecutor endpointExecutor) {
+        this.apiRouter = apiRouter;
+        this.endpointExecutor = endpointExecutor;
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
+        ConnectionState state = connectionState(ctx);
+        if (state.eventStream) {
+            return; // Connection đã thành Server-Sent Events, không nhận request khác
+        }
+        if (state.busy) {
+            // Request pipelined: chờ response trước gửi xong, ngừng đọc thêm cho đến lúc đó
+            state.pending.add(request.retain());
+            ctx.channel().config().setAutoRead(false);
+            return;
+        }
+        state.busy = true;
+        dispatch(ctx, request);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        ConnectionState state = ctx.channel().attr(CONNECTION_STATE).get();
+        if (state != null) {
+            releasePending(state);
+        }
+        super.channelInactive(ctx);
+    }
+
+    private static void releasePending(ConnectionState state) {
+        FullHttpRequest pending;
+        while ((pending = state.pending.poll()) != null) {
+            pending.release();
+        }
+    }
+
+    private static ConnectionState connectionState(ChannelHandlerContext ctx) {
+        ConnectionState state = ctx.channel().attr(CONNECTION_STATE).get();
+        if (state == null) {
+            state = new ConnectionState();
+            ctx.channel().attr(CONNECTION_STATE).set(state);
+        }
+        return state;
+    }
+
+    /**
+     * Response của request hiện tại đã được đưa vào channel (theo thứ tự ghi):
+     * chuyển sang request pipelined kế tiếp, hết thì đọc socket tiếp
+     * Được gọi bằng eventLoop().execute sau các lần ghi response nên luôn chạy sau chúng
+     */
+    private void requestDone(ChannelHandlerContext ctx) {
+        ctx.channel().eventLoop().execute(() -> {
+            ConnectionState state = connectionState(ctx);
+            FullHttpRequest next = state.pending.poll();
+            if (next == null) {
+                state.busy = false;
+                ctx.channel().config().setAutoRead(true);
+                return;
+            }
+            try {
+                dispatch(ctx, next);
+            } finally {
+                next.release();
+            }
+        });
+    }
+
+    private void dispatch(ChannelHandlerContext ctx, FullHttpRequest request) {
         // Chỉ xử lý HTTP GET và POST
         if (!request.decoderResult().isSuccess()) {
             sendError(ctx, BAD_REQUEST);
+            requestDone(ctx);
             return;
         }
 
         // CORS headers (nếu cần)
         if (request.method() == HttpMethod.OPTIONS) {
             sendCorsResponse(ctx);
+            requestDone(ctx);
             return;
         }
 
+        long receivedAt = System.nanoTime();
         try {
-            // Parse HTTP request thành HttpRequest object
-            HttpRequest httpRequest = HttpRequest.fromNettyRequest(request);
-            logger.info("Nhận request: " + httpRequest.getMethod() + " " + httpRequest.getPath());
+            // Parse HTTP request thành Request object
+            Request apiRequest = Request.fromNettyRequest(request);
+            logger.info("Nhận request: " + apiRequest.getMethod() + " " + apiRequest.getPath());
 
-            // Xử lý request qua ApiRouter
-            HttpResponse httpResponse = apiRouter.handle(httpRequest);
+            // Xử lý request qua ApiRouter trên worker pool, không chặn event loop
+            metrics.requestStarted();
+            boolean accepted = endpointExecutor.submit(() -> {
+                Response apiResponse;
+                try {
+                    apiResponse = apiRouter.handle(apiRequest);
+                } catch (Exception e) {
+                    logger.severe("Lỗi khi xử lý request: " + e.getMessage());
+                    e.printStackTrace();
+                    apiResponse = Response.internalError("Internal Server Error: " + e.getMessage());
+                }
 
-            // Gửi response
-            sendResponse(ctx, httpResponse);
+                if (apiResponse.isEventStream()) {
+                    // Connection giữ cho stream đến khi đóng, request pipelined phía sau bị bỏ
+                    ctx.channel().eventLoop().execute(() -> {
+                        ConnectionState state = connectionState(ctx);
+                        state.eventStream = true;
+                        releasePending(state);
+                        ctx.channel().config().setAutoRead(true); // Vẫn đọc để phát hiện client đóng kết nối
+                    });
+                    sendEventStream(ctx, apiResponse.getEventStream());
+                    recordFinished(apiRequest, apiResponse.getStatusCode(), receivedAt);
+                    return;
+                }
+
+                if (apiResponse.isStreamed()) {
+                    int status = sendStreamedResponse(ctx, apiResponse);
+                    recordFinished(apiRequest, status, receivedAt);
+                    requestDone(ctx);
+                    return;
+                }
+
+                // Serialize ngay trên worker thread, chỉ gửi response trên event loop của channel
+                FullHttpResponse result = apiResponse.getStatusCode() == NOT_MODIFIED.code()
+                        ? notModified(apiResponse.getEtag())
+                        : withEtag(apiRequest, apiResponse, buildResponse(ctx, apiResponse));
+                recordFinished(apiRequest, result.status().code(), receivedAt);
+                ctx.channel().eventLoop().execute(() -> ctx.writeAndFlush(result));
+                requestDone(ctx);
+            });
+
+            if (!accepted) {
+                metrics.requestFinished(null, SERVICE_UNAVAILABLE.code(), 0);
+                logger.warning("Worker pool quá tải, từ chối request: " + apiRequest.getMethod() + " " + apiRequest.getPath());
+                sendServiceUnavailable(ctx);
+                requestDone(ctx);
+            }
         } catch (Exception e) {
             logger.severe("Lỗi khi xử lý request: " + e.getMessage());
             e.printStackTrace();
             sendError(ctx, INTERNAL_SERVER_ERROR, "Internal Server Error: " + e.getMessage());
+            requestDone(ctx);
         }
     }
 
@@ -70,25 +203,159 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<FullHttpReque
         }
     }
 
+    /**
+     * Ghi nhận độ trễ (tính từ lúc nhận request, gồm cả thời gian chờ worker) và status code
+     */
+    private void recordFinished(Request apiRequest, int statusCode, long receivedAt) {
+        RouteMetrics routeMetrics = apiRequest.getRoute() != null ? apiRequest.getRoute().getMetrics() : metrics.unmatched();
+        metrics.requestFinished(routeMetrics, statusCode, System.nanoTime() - receivedAt);
+    }
+
     /**
      * Gửi HTTP response
      */
-    private void sendResponse(ChannelHandlerContext ctx, HttpResponse httpResponse) {
+    private void sendResponse(ChannelHandlerContext ctx, Response apiResponse) {
+        ctx.writeAndFlush(buildResponse(ctx, apiResponse));
+    }
+
+    /**
+     * Tạo FullHttpResponse, body JSON được ghi thẳng vào buffer từ allocator của channel
+     * Response dạng text thuần (Response.text) được gửi nguyên văn với content type riêng
+     */
+    private FullHttpResponse buildResponse(ChannelHandlerContext ctx, Response apiResponse) {
+        String contentType = CONTENT_TYPE_JSON;
+        ByteBuf content;
+        try {
+            if (apiResponse.getSerializedJson() != null) {
+                // Body dùng chung giữa các request được gộp, chỉ bọc lại không copy
+                content = Unpooled.wrappedBuffer(apiResponse.getSerializedJson());
+            } else if (apiResponse.getContentType() != null) {
+                contentType = apiResponse.getContentType();
+                content = ctx.alloc().buffer();
+                content.writeCharSequence((String) apiResponse.getData(), StandardCharsets.UTF_8);
+            } else {
+                content = JsonResponseWriter.write(apiResponse, ctx.alloc());
+            }
+        } catch (Exception e) {
+            logger.severe("Lỗi khi serialize response: " + e.getMessage());
+            e.printStackTrace();
+            apiResponse = Response.internalError("Internal Server Error: " + e.getMessage());
+            contentType = CONTENT_TYPE_JSON;
+            content = Unpooled.copiedBuffer(apiResponse.toJson(), CharsetUtil.UTF_8);
+        }
+
         FullHttpResponse response = new DefaultFullHttpResponse(
                 HTTP_1_1,
-                HttpResponseStatus.valueOf(httpResponse.getStatusCode()),
-                Unpooled.copiedBuffer(httpResponse.getBody(), CharsetUtil.UTF_8)
+                HttpResponseStatus.valueOf(apiResponse.getStatusCode()),
+                content
         );
 
-        response.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE_JSON);
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
         response.headers().set(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
-        
-        // CORS headers
-        response.headers().set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
-        response.headers().set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_METHODS, "GET, POST, PUT, DELETE, OPTIONS");
-        response.headers().set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS, "Content-Type");
+        setCorsHeaders(response.headers());
 
-        ctx.writeAndFlush(response);
+        return response;
+    }
+
+    /**
+     * Gắn ETag cho response GET 200: ETag theo version bảng nếu ApiRouter đã tính, nếu không thì hash body
+     * If-None-Match khớp thì bỏ body và trả 304
+     */
+    private FullHttpResponse withEtag(Request apiRequest, Response apiResponse, FullHttpResponse response) {
+        if (!"GET".equalsIgnoreCase(apiRequest.getMethod()) || response.status().code() != OK.code()) {
+            return response;
+        }
+        String etag = apiResponse.getEtag() != null ? apiResponse.getEtag() : ETags.ofContent(response.content());
+        if (ETags.matches(apiRequest.getHeader("if-none-match"), etag)) {
+            response.release();
+            return notModified(etag);
+        }
+        response.headers().set(HttpHeaderNames.ETAG, etag);
+        return response;
+    }
+
+    private FullHttpResponse notModified(String etag) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, NOT_MODIFIED, Unpooled.EMPTY_BUFFER);
+        if (etag != null) {
+            response.headers().set(HttpHeaderNames.ETAG, etag);
+        }
+        setCorsHeaders(response.headers());
+        return response;
+    }
+
+    /**
+     * Gửi response dạng stream (chunked), chạy trên worker thread
+     * Nếu lỗi trước khi gửi được byte nào thì trả về 500 như bình thường,
+     * nếu đã gửi một phần thì chỉ còn cách đóng kết nối
+     * @return Status code thực tế đã gửi (hoặc 500 nếu stream bị lỗi)
+     */
+    private int sendStreamedResponse(ChannelHandlerContext ctx, Response apiResponse) {
+        HttpResponse head = new DefaultHttpResponse(HTTP_1_1, HttpResponseStatus.valueOf(apiResponse.getStatusCode()));
+        head.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE_JSON);
+        HttpUtil.setTransferEncodingChunked(head, true);
+        if (apiResponse.getEtag() != null) {
+            head.headers().set(HttpHeaderNames.ETAG, apiResponse.getEtag()); // Body stream không hash được
+        }
+        setCorsHeaders(head.headers());
+
+        ChunkedHttpOutputStream out = new ChunkedHttpOutputStream(ctx, head);
+        try {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            apiResponse.writeJson(writer);
+            writer.flush();
+            out.finish();
+            return apiResponse.getStatusCode();
+        } catch (Exception e) {
+            out.abort();
+            logger.severe("Lỗi khi stream response: " + e.getMessage());
+            if (!out.isStarted()) {
+                sendResponse(ctx, Response.internalError("Internal Server Error: " + e.getMessage()));
+            } else {
+                ctx.close();
+            }
+            return INTERNAL_SERVER_ERROR.code();
+        }
+    }
+
+    /**
+     * Gửi header Server-Sent Events và gắn kết nối vào EventStream
+     * Không giữ worker thread: event được ghi từ thread gọi EventStream.send,
+     * heartbeat chạy trên event loop, kết nối đóng thì EventStream chạy các onClose handler
+     */
+    private void sendEventStream(ChannelHandlerContext ctx, EventStream stream) {
+        HttpResponse head = new DefaultHttpResponse(HTTP_1_1, OK);
+        head.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE_EVENT_STREAM);
+        head.headers().set(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE);
+        HttpUtil.setTransferEncodingChunked(head, true);
+        setCorsHeaders(head.headers());
+
+        Channel channel = ctx.channel();
+        channel.writeAndFlush(head);
+        ScheduledFuture<?> heartbeat = channel.eventLoop().scheduleAtFixedRate(() -> stream.comment("ping"),
+                EVENT_STREAM_HEARTBEAT_SECONDS, EVENT_STREAM_HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        channel.closeFuture().addListener(future -> {
+            heartbeat.cancel(false);
+            stream.disconnected();
+        });
+
+        stream.attach(new EventStream.Sink() {
+            @Override
+            public void write(String frame) {
+                channel.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer(frame, CharsetUtil.UTF_8)));
+            }
+
+            @Override
+            public void end() {
+                channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(ChannelFutureListener.CLOSE);
+            }
+        });
+    }
+
+    private void setCorsHeaders(HttpHeaders headers) {
+        headers.set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+        headers.set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_METHODS, "GET, POST, PUT, DELETE, OPTIONS");
+        headers.set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS, "Content-Type, If-None-Match");
+        headers.set(HttpHeaderNames.ACCESS_CONTROL_EXPOSE_HEADERS, "ETag");
     }
 
     /**
@@ -99,8 +366,17 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<FullHttpReque
     }
 
     private void sendError(ChannelHandlerContext ctx, HttpResponseStatus status, String message) {
-        HttpResponse httpResponse = HttpResponse.error(status.code(), message);
-        sendResponse(ctx, httpResponse);
+        sendResponse(ctx, Response.error(status.code(), message));
+    }
+
+    /**
+     * Gửi 503 kèm Retry-After khi hàng đợi worker đã đầy
+     */
+    private void sendServiceUnavailable(ChannelHandlerContext ctx) {
+        Response apiResponse = Response.error(SERVICE_UNAVAILABLE.code(), "Server đang quá tải, vui lòng thử lại sau");
+        FullHttpResponse response = buildResponse(ctx, apiResponse);
+        response.headers().set(HttpHeaderNames.RETRY_AFTER, ServerConfig.getInstance().getRetryAfterSeconds());
+        ctx.writeAndFlush(response);
     }
 
     /**
@@ -108,11 +384,17 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<FullHttpReque
      */
     private void sendCorsResponse(ChannelHandlerContext ctx) {
         FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK);
-        response.headers().set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
-        response.headers().set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_METHODS, "GET, POST, PUT, DELETE, OPTIONS");
-        response.headers().set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS, "Content-Type");
+        setCorsHeaders(response.headers());
         response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
         ctx.writeAndFlush(response);
     }
-}
 
+    /**
+     * State theo connection, chỉ truy cập trên event loop của channel
+     */
+    private static final class ConnectionState {
+        private final ArrayDeque<FullHttpRequest> pending = new ArrayDeque<>();
+        private boolean busy; // Đang xử lý một request, response chưa được ghi
+        private boolean eventStream;
+    }
+}
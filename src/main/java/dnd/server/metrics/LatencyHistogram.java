@@ -0,0 +1,70 @@
+package dnd.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram độ trễ dạng log-linear (đơn vị microsecond), ghi không cần lock và không tạo object
+ * - Bucket đầu tiên: <= 64µs
+ * - Sau đó mỗi lũy thừa của 2 chia làm 2 bucket tuyến tính: (64, 96], (96, 128], (128, 192], ...
+ * - Bucket hữu hạn cuối cùng kết thúc ở 2^26µs (~67 giây), lớn hơn rơi vào bucket +Inf
+ */
+public final class LatencyHistogram {
+    private static final int MIN_EXPONENT = 6;
+    private static final int MAX_EXPONENT = 26;
+    private static final int SUB_BUCKETS = 2;
+
+    /** Số bucket có cận trên hữu hạn */
+    public static final int FINITE_BUCKETS = 1 + (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(FINITE_BUCKETS + 1);
+    private final LongAdder sumMicros = new LongAdder();
+
+    /**
+     * Ghi nhận một lần đo
+     */
+    public void record(long durationNanos) {
+        long micros = Math.max(0, durationNanos / 1000);
+        buckets.incrementAndGet(bucketIndex(micros));
+        sumMicros.add(micros);
+    }
+
+    /**
+     * Số lần đo rơi vào bucket (không cộng dồn), index == FINITE_BUCKETS là bucket +Inf
+     */
+    public long bucketCount(int index) {
+        return buckets.get(index);
+    }
+
+    /**
+     * Tổng thời gian đã ghi nhận (microseconds)
+     */
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    /**
+     * Cận trên (bao gồm) của bucket hữu hạn, đơn vị microsecond
+     */
+    public static long upperBoundMicros(int index) {
+        if (index == 0) {
+            return 1L << MIN_EXPONENT;
+        }
+        int exponent = MIN_EXPONENT + (index - 1) / SUB_BUCKETS;
+        int sub = (index - 1) % SUB_BUCKETS;
+        return (1L << exponent) + ((sub + 1L) << (exponent - 1));
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros <= (1L << MIN_EXPONENT)) {
+            return 0;
+        }
+        long value = micros - 1; // Để cận trên của bucket là bao gồm
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return FINITE_BUCKETS;
+        }
+        int sub = (int) (value >>> (exponent - 1)) & (SUB_BUCKETS - 1);
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+    }
+}
@@ -0,0 +1,129 @@
+package dnd.server.metrics;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry metrics của HTTP server (singleton)
+ * - RouteMetrics được tạo khi đăng ký route và giữ trong RouteTree.Route,
+ *   nên ghi nhận một request chỉ là vài phép cộng atomic, không lookup, không tạo object
+ * - Request không khớp route nào được gom vào route "unmatched"
+ */
+public class MetricsRegistry {
+    private static final String DURATION = "medcard_http_request_duration_seconds";
+    private static final String REQUESTS = "medcard_http_requests_total";
+    private static final String[] BUCKET_LABELS = bucketLabels();
+
+    private static MetricsRegistry instance;
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentSkipListMap<>();
+    private final RouteMetrics unmatched = new RouteMetrics("ANY", "unmatched");
+    private final LongAdder inFlight = new LongAdder();
+
+    private MetricsRegistry() {}
+
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Lấy (hoặc tạo) metrics cho route, gọi khi đăng ký route
+     */
+    public RouteMetrics route(String method, String pattern) {
+        return routes.computeIfAbsent(method + " " + pattern, key -> new RouteMetrics(method, pattern));
+    }
+
+    /**
+     * Metrics cho các request không khớp route nào
+     */
+    public RouteMetrics unmatched() {
+        return unmatched;
+    }
+
+    /**
+     * Request được nhận vào worker pool
+     */
+    public void requestStarted() {
+        inFlight.increment();
+    }
+
+    /**
+     * Request đã có response (hoặc bị hủy)
+     * @param routeMetrics Metrics của route, null nếu không ghi nhận độ trễ (ví dụ request bị từ chối)
+     */
+    public void requestFinished(RouteMetrics routeMetrics, int statusCode, long durationNanos) {
+        inFlight.decrement();
+        if (routeMetrics != null) {
+            routeMetrics.record(statusCode, durationNanos);
+        }
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * Ghi các metrics HTTP theo Prometheus text format
+     */
+    public void writeHttpMetrics(PrometheusWriter out) {
+        out.gauge("medcard_http_requests_in_flight", "Requests currently being processed", getInFlight());
+
+        out.header(REQUESTS, "counter", "HTTP requests by route and status code");
+        for (RouteMetrics metrics : routes.values()) {
+            writeStatusCounts(out, metrics);
+        }
+        writeStatusCounts(out, unmatched);
+
+        out.header(DURATION, "histogram", "HTTP request latency from receipt to response, by route");
+        for (RouteMetrics metrics : routes.values()) {
+            writeHistogram(out, metrics);
+        }
+        writeHistogram(out, unmatched);
+    }
+
+    private static void writeStatusCounts(PrometheusWriter out, RouteMetrics metrics) {
+        for (int status = RouteMetrics.MIN_STATUS; status <= RouteMetrics.MAX_STATUS; status++) {
+            long count = metrics.getStatusCount(status);
+            if (count > 0) {
+                out.sample(REQUESTS, count,
+                        "method", metrics.getMethod(), "route", metrics.getRoute(), "status", Integer.toString(status));
+            }
+        }
+    }
+
+    private static void writeHistogram(PrometheusWriter out, RouteMetrics metrics) {
+        LatencyHistogram latency = metrics.getLatency();
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.FINITE_BUCKETS; i++) {
+            cumulative += latency.bucketCount(i);
+        }
+        if (cumulative + latency.bucketCount(LatencyHistogram.FINITE_BUCKETS) == 0) {
+            return; // Route chưa có request nào
+        }
+
+        String method = metrics.getMethod();
+        String route = metrics.getRoute();
+        cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.FINITE_BUCKETS; i++) {
+            cumulative += latency.bucketCount(i);
+            out.sample(DURATION + "_bucket", cumulative, "method", method, "route", route, "le", BUCKET_LABELS[i]);
+        }
+        cumulative += latency.bucketCount(LatencyHistogram.FINITE_BUCKETS);
+        out.sample(DURATION + "_bucket", cumulative, "method", method, "route", route, "le", "+Inf");
+        out.sample(DURATION + "_sum", latency.getSumMicros() / 1_000_000.0, "method", method, "route", route);
+        out.sample(DURATION + "_count", cumulative, "method", method, "route", route);
+    }
+
+    private static String[] bucketLabels() {
+        String[] labels = new String[LatencyHistogram.FINITE_BUCKETS];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = BigDecimal.valueOf(LatencyHistogram.upperBoundMicros(i), 6).stripTrailingZeros().toPlainString();
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,45 @@
+package dnd.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics của một route: histogram độ trễ và số request theo HTTP status code
+ * Được tạo một lần khi đăng ký route, ghi nhận không tạo object
+ */
+public final class RouteMetrics {
+    static final int MIN_STATUS = 100;
+    static final int MAX_STATUS = 599;
+
+    private final String method;
+    private final String route;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS - MIN_STATUS + 1);
+
+    RouteMetrics(String method, String route) {
+        this.method = method;
+        this.route = route;
+    }
+
+    void record(int statusCode, long durationNanos) {
+        latency.record(durationNanos);
+        if (statusCode >= MIN_STATUS && statusCode <= MAX_STATUS) {
+            statusCounts.incrementAndGet(statusCode - MIN_STATUS);
+        }
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getStatusCount(int statusCode) {
+        return statusCounts.get(statusCode - MIN_STATUS);
+    }
+}
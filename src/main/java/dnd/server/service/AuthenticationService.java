@@ -4,11 +4,11 @@ import dnd.server.crypto.CryptoUtils;
 import dnd.server.db.CardKeyDao;
 import dnd.server.db.CardSessionDao;
 
-import java.security.SecureRandom;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
 
 /**
  * Authentication service trên server
@@ -17,6 +17,7 @@ import java.util.HashMap;
 public class AuthenticationService {
     private final CardKeyDao cardKeyDao;
     private final CardSessionDao cardSessionDao;
+    private final CardCredentialCache credentialCache;
     
     // Master key để giải mã static keys từ DB
     // TODO: Load từ HSM hoặc secure key management system
@@ -30,41 +31,46 @@ public class AuthenticationService {
     private static final Duration SESSION_TTL = Duration.ofMinutes(15);
     
     public AuthenticationService(CardKeyDao cardKeyDao, CardSessionDao cardSessionDao) {
+        this(cardKeyDao, cardSessionDao, CardCredentialCache.getInstance());
+    }
+
+    AuthenticationService(CardKeyDao cardKeyDao, CardSessionDao cardSessionDao, CardCredentialCache credentialCache) {
         this.cardKeyDao = cardKeyDao;
         this.cardSessionDao = cardSessionDao;
+        this.credentialCache = credentialCache;
     }
     
     /**
      * Bước 1: Bắt đầu authentication
-     * - Tìm thẻ trong DB
-     * - Lấy public key và static key
+     * - Tìm thẻ (CardCredentialCache, chỉ đọc DB khi chưa có trong cache)
+     * - Lấy public key (đã parse) và static key
      * - Tạo challenge từ server
      */
     public AuthStartResult startAuthentication(String cardId) {
-        // Tìm thẻ trong database
-        HashMap<String, Object> cardInfo = cardKeyDao.findByCardId(cardId);
-        if (cardInfo == null) {
+        // Tìm thẻ đang hoạt động
+        CardCredentialCache.CardCredentials card = credentialCache.get(cardId);
+        if (card == null || !card.isActive()) {
             throw new RuntimeException("Card not found: " + cardId);
         }
         
-        // Lấy public key và static key
-        byte[] publicKeyBytes = (byte[]) cardInfo.get("public_key_rsa");
-        byte[][] encryptedStaticKey = cardKeyDao.getEncryptedStaticKey(cardId);
-        if (encryptedStaticKey == null) {
-            throw new RuntimeException("Static key not found for card: " + cardId);
-        }
-        
-        // Giải mã static key
-        byte[] staticKey = CryptoUtils.decryptStaticKey(
-            encryptedStaticKey[0], 
-            encryptedStaticKey[1], 
-            MASTER_KEY
-        );
+        // Lấy và giải mã static key
+        byte[] staticKey = decryptStaticKey(card);
         
         // Tạo challenge từ server
         byte[] challengeServer = CryptoUtils.generateChallenge();
         
-        return new AuthStartResult(challengeServer, publicKeyBytes, staticKey);
+        return new AuthStartResult(challengeServer, card.getPublicKeyBytes(), card.getPublicKey(), staticKey);
+    }
+    
+    /**
+     * Giải mã static key của thẻ bằng master key
+     * Dùng chung với JdbcSessionStore (static key không được lưu trong auth_sessions)
+     */
+    static byte[] decryptStaticKey(CardCredentialCache.CardCredentials card) {
+        if (card.getStaticKeyEncrypted() == null || card.getStaticKeyIv() == null) {
+            throw new RuntimeException("Static key not found for card: " + card.getCardId());
+        }
+        return CryptoUtils.decryptStaticKey(card.getStaticKeyEncrypted(), card.getStaticKeyIv(), MASTER_KEY);
     }
     
     /**
@@ -72,9 +78,17 @@ public class AuthenticationService {
      */
     public AuthVerifyResult verifySignature(byte[] publicKeyBytes, byte[] challengeServer, 
                                            byte[] signature, byte[] challengeCard) {
+        return verifySignature(CryptoUtils.parseRSAPublicKey(publicKeyBytes), challengeServer, signature, challengeCard);
+    }
+    
+    /**
+     * Bước 2 với public key đã parse sẵn (từ bước 1)
+     */
+    public AuthVerifyResult verifySignature(PublicKey publicKey, byte[] challengeServer, 
+                                           byte[] signature, byte[] challengeCard) {
         // Verify chữ ký RSA
         boolean signatureValid = CryptoUtils.verifyRSASignature(
-            publicKeyBytes, 
+            publicKey, 
             challengeServer, 
             signature
         );
@@ -119,24 +133,20 @@ public class AuthenticationService {
     }
     
     private String generateSessionIdHex64() {
-        byte[] b = new byte[32];
-        new SecureRandom().nextBytes(b);
-        StringBuilder sb = new StringBuilder(64);
-        for (byte value : b) {
-            sb.append(String.format("%02x", value));
-        }
-        return sb.toString();
+        return CryptoUtils.randomHex(32);
     }
     
     // Result classes
     public static class AuthStartResult {
         public final byte[] challengeServer;
         public final byte[] publicKeyBytes;
+        public final RSAPublicKey publicKey; // null nếu public key trong DB không hợp lệ
         public final byte[] staticKey; // Tạm thời, sẽ được lưu trong session
         
-        public AuthStartResult(byte[] challengeServer, byte[] publicKeyBytes, byte[] staticKey) {
+        public AuthStartResult(byte[] challengeServer, byte[] publicKeyBytes, RSAPublicKey publicKey, byte[] staticKey) {
             this.challengeServer = challengeServer;
             this.publicKeyBytes = publicKeyBytes;
+            this.publicKey = publicKey;
             this.staticKey = staticKey;
         }
     }
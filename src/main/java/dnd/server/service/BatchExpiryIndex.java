@@ -0,0 +1,278 @@
+package dnd.server.service;
+
+import dnd.server.db.DbManager;
+import dnd.server.db.Row;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Index trong bộ nhớ: với mỗi thuốc, các lô còn hàng (quantity > 0) sắp theo hạn dùng
+ * Thay cho query "lô gần hết hạn nhất" chạy một lần cho mỗi thuốc khi lấy danh sách thuốc
+ * - Load toàn bộ một lần (lazy hoặc lúc khởi động) và reload định kỳ
+ * - Import/export gọi refresh sau khi transaction commit thành công: lô đó được đọc lại từ database
+ *   theo id (giá trị tuyệt đối, không cộng delta), các lần refresh cùng một lô chạy tuần tự
+ * - Refresh đến trong lúc đang reload thì kết quả lần reload đó bị bỏ (không biết query đã thấy thay đổi chưa)
+ * - Reload làm index thay đổi thì tăng version medicine_batches (ETag của danh sách thuốc)
+ * Thứ tự giống ORDER BY expiry_date ASC của MySQL: lô không có hạn dùng (NULL) đứng đầu
+ * Nếu có sửa đổi ngoài server (chạy SQL tay), sai lệch được sửa ở lần reload kế tiếp
+ */
+public class BatchExpiryIndex {
+    private static final Logger logger = Logger.getLogger(BatchExpiryIndex.class.getName());
+    private static final int FETCH_SIZE = 1000;
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+    private static final int REFRESH_LOCK_STRIPES = 64;
+    private static final String SELECT_BATCHES =
+            "SELECT id, medicine_code, batch_number, expiry_date, quantity FROM medicine_batches";
+
+    private static final Comparator<Batch> NEAREST_EXPIRY_FIRST = (a, b) -> {
+        if (a.expiryDate == null || b.expiryDate == null) {
+            if (a.expiryDate != b.expiryDate) {
+                return a.expiryDate == null ? -1 : 1;
+            }
+        } else {
+            int byExpiry = a.expiryDate.compareTo(b.expiryDate);
+            if (byExpiry != 0) {
+                return byExpiry;
+            }
+        }
+        return Long.compare(a.id, b.id);
+    };
+
+    private static BatchExpiryIndex instance;
+    private final DbManager dbManager;
+    private final Object swapLock = new Object();
+    private final Object[] refreshLocks = new Object[REFRESH_LOCK_STRIPES];
+    private volatile State state; // Ghi dưới swapLock
+    private long version; // Guarded by swapLock, tăng mỗi lần refresh
+
+    private BatchExpiryIndex(DbManager dbManager) {
+        this.dbManager = dbManager;
+        for (int i = 0; i < refreshLocks.length; i++) {
+            refreshLocks[i] = new Object();
+        }
+    }
+
+    public static synchronized BatchExpiryIndex getInstance() {
+        if (instance == null) {
+            instance = new BatchExpiryIndex(DbManager.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Lô còn hàng có hạn dùng gần nhất của thuốc
+     * @return null nếu thuốc không còn lô nào có hàng
+     * @throws SQLException nếu index chưa load và load thất bại
+     */
+    public Batch nearest(String medicineCode) throws SQLException {
+        MedicineBatches batches = loadedState().byMedicine.get(medicineCode);
+        return batches != null ? batches.first() : null;
+    }
+
+    /**
+     * Đọc lại lô từ database sau khi import/export commit
+     * Đọc giá trị tuyệt đối dưới lock của lô: lần refresh chạy sau cùng đọc sau mọi commit đã gọi refresh,
+     * nên hai import đồng thời không bị cộng hai lần hay ghi đè bằng giá trị cũ
+     */
+    public void refresh(long batchId) {
+        State current;
+        synchronized (swapLock) {
+            version++;
+            current = state;
+        }
+        if (current == null) {
+            return; // Chưa load, lần đọc đầu tiên sẽ load dữ liệu mới nhất
+        }
+        synchronized (refreshLocks[(int) Math.floorMod(batchId, (long) REFRESH_LOCK_STRIPES)]) {
+            refreshBatch(current, batchId);
+        }
+    }
+
+    /**
+     * Load lại toàn bộ index từ database
+     * @return false nếu bị bỏ vì có refresh trong lúc load (index cũ được giữ nguyên)
+     * @throws SQLException nếu query lỗi (index cũ được giữ nguyên)
+     */
+    public synchronized boolean reload() throws SQLException {
+        return reload(false);
+    }
+
+    /**
+     * @param force Dùng kết quả kể cả khi có refresh trong lúc load (lần load đầu không thể chờ mãi)
+     */
+    private synchronized boolean reload(boolean force) throws SQLException {
+        long startVersion;
+        synchronized (swapLock) {
+            startVersion = version;
+        }
+        State fresh = new State();
+        try {
+            dbManager.stream(SELECT_BATCHES + " WHERE quantity > 0", FETCH_SIZE, row -> fresh.add(toBatch(row)));
+        } catch (IOException e) {
+            throw new SQLException("Không đọc được medicine_batches", e);
+        }
+
+        boolean changed;
+        synchronized (swapLock) {
+            if (version != startVersion && !force) {
+                logger.fine("Batch expiry index reload discarded: batches changed while loading");
+                return false;
+            }
+            changed = !fresh.sameAs(state);
+            state = fresh;
+        }
+        if (changed) {
+            TableVersions.getInstance().bump(TableVersions.MEDICINE_BATCHES);
+        }
+        logger.fine("Batch expiry index loaded: " + fresh.byId.size() + " batches");
+        return true;
+    }
+
+    private State loadedState() throws SQLException {
+        State current = state;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            for (int attempt = 1; state == null; attempt++) {
+                reload(attempt >= MAX_LOAD_ATTEMPTS);
+            }
+            return state;
+        }
+    }
+
+    private void refreshBatch(State current, long batchId) {
+        try {
+            Batch[] found = new Batch[1];
+            dbManager.stream(SELECT_BATCHES + " WHERE id = ?", 0, row -> found[0] = toBatch(row), batchId);
+            if (found[0] != null && found[0].quantity > 0) {
+                current.add(found[0]);
+            } else {
+                current.remove(batchId); // Lô đã hết hàng hoặc đã bị xóa
+            }
+        } catch (SQLException | IOException e) {
+            // Không biết trạng thái lô, bỏ index để lần đọc sau load lại
+            logger.warning("Refresh batch " + batchId + " failed, index will reload: " + e.getMessage());
+            synchronized (swapLock) {
+                state = null;
+            }
+        }
+    }
+
+    private static Batch toBatch(Row row) {
+        return new Batch(
+                ((Number) row.get("id")).longValue(),
+                (String) row.get("medicine_code"),
+                (String) row.get("batch_number"),
+                (Date) row.get("expiry_date"),
+                ((Number) row.get("quantity")).intValue());
+    }
+
+    /**
+     * Một lần load của index, được thay nguyên khối khi reload
+     */
+    private static final class State {
+        final Map<String, MedicineBatches> byMedicine = new ConcurrentHashMap<>();
+        final Map<Long, Batch> byId = new ConcurrentHashMap<>();
+
+        void add(Batch batch) {
+            MedicineBatches batches = byMedicine.computeIfAbsent(batch.medicineCode, code -> new MedicineBatches());
+            Batch previous = byId.put(batch.id, batch);
+            batches.replace(previous, batch);
+        }
+
+        void remove(long batchId) {
+            Batch previous = byId.remove(batchId);
+            if (previous != null) {
+                MedicineBatches batches = byMedicine.get(previous.medicineCode);
+                if (batches != null) {
+                    batches.remove(previous);
+                }
+            }
+        }
+
+        /**
+         * Cùng các lô với cùng quantity
+         */
+        boolean sameAs(State other) {
+            if (other == null || other.byId.size() != byId.size()) {
+                return false;
+            }
+            for (Batch batch : byId.values()) {
+                Batch previous = other.byId.get(batch.id);
+                if (previous == null || previous.quantity != batch.quantity
+                        || !Objects.equals(previous.expiryDate, batch.expiryDate)
+                        || !Objects.equals(previous.medicineCode, batch.medicineCode)
+                        || !Objects.equals(previous.batchNumber, batch.batchNumber)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Các lô còn hàng của một thuốc, sắp theo hạn dùng
+     */
+    private static final class MedicineBatches {
+        private final TreeSet<Batch> batches = new TreeSet<>(NEAREST_EXPIRY_FIRST);
+
+        synchronized Batch first() {
+            return batches.isEmpty() ? null : batches.first();
+        }
+
+        synchronized void replace(Batch previous, Batch batch) {
+            if (previous != null) {
+                batches.remove(previous);
+            }
+            batches.add(batch);
+        }
+
+        synchronized void remove(Batch batch) {
+            batches.remove(batch);
+        }
+    }
+
+    /**
+     * Một lô thuốc trong index (bất biến, refresh thay bằng bản đọc mới)
+     */
+    public static final class Batch {
+        private final long id;
+        private final String medicineCode;
+        private final String batchNumber;
+        private final Date expiryDate;
+        private final int quantity;
+
+        Batch(long id, String medicineCode, String batchNumber, Date expiryDate, int quantity) {
+            this.id = id;
+            this.medicineCode = medicineCode;
+            this.batchNumber = batchNumber;
+            this.expiryDate = expiryDate;
+            this.quantity = quantity;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getMedicineCode() {
+            return medicineCode;
+        }
+
+        public String getBatchNumber() {
+            return batchNumber;
+        }
+
+        public Date getExpiryDate() {
+            return expiryDate;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package dnd.server.service;
+
+import dnd.server.config.ServerConfig;
+import dnd.server.crypto.CryptoUtils;
+import dnd.server.db.CardKeyDao;
+import dnd.server.db.DbManager;
+
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Cache thông tin xác thực của thẻ theo card ID (bỏ khoảng trắng)
+ * - Giữ public key RSA đã parse, static key đã mã hóa (+IV), staff_id và status
+ * - Giới hạn cardCacheSize entry (LRU) và hết hạn sau cardCacheTtlSeconds
+ * - RevokeCard/RevokeCardByStaff/ActivateCard/IssueCard gọi invalidate sau khi cập nhật card_keys
+ * - Load đang chạy mà gặp invalidate thì kết quả không được đưa vào cache (tránh giữ status cũ)
+ * Static key chỉ được giải mã khi dùng, cache không giữ key dạng rõ
+ */
+public class CardCredentialCache {
+    private static final Logger logger = Logger.getLogger(CardCredentialCache.class.getName());
+
+    private static CardCredentialCache instance;
+
+    private final CardKeyDao cardKeyDao;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, CardCredentials> entries;
+    private long generation; // Tăng mỗi lần invalidate, guarded by this
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private CardCredentialCache(CardKeyDao cardKeyDao, ServerConfig config) {
+        this(cardKeyDao, config.getCardCacheSize(), config.getCardCacheTtlSeconds());
+    }
+
+    /**
+     * Cache riêng không phải singleton (benchmark dùng với CardKeyDao giả)
+     */
+    CardCredentialCache(CardKeyDao cardKeyDao, int maxSize, int ttlSeconds) {
+        this.cardKeyDao = cardKeyDao;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CardCredentials> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static synchronized CardCredentialCache getInstance() {
+        if (instance == null) {
+            instance = new CardCredentialCache(new CardKeyDao(DbManager.getInstance()), ServerConfig.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Thông tin xác thực của thẻ, từ cache hoặc database
+     * @return null nếu thẻ không tồn tại (thẻ đã bị vô hiệu hóa vẫn được trả về, xem isActive)
+     */
+    public CardCredentials get(String cardId) {
+        String key = normalize(cardId);
+        long loadGeneration;
+        synchronized (this) {
+            CardCredentials cached = entries.get(key);
+            if (cached != null && System.nanoTime() - cached.loadedAt < ttlNanos) {
+                hits.increment();
+                return cached;
+            }
+            if (cached != null) {
+                entries.remove(key);
+            }
+            loadGeneration = generation;
+        }
+        misses.increment();
+
+        HashMap<String, Object> row = cardKeyDao.findCredentials(cardId);
+        if (row == null) {
+            return null;
+        }
+        CardCredentials credentials = new CardCredentials(row);
+
+        synchronized (this) {
+            if (maxSize > 0 && ttlNanos > 0 && loadGeneration == generation) {
+                entries.put(key, credentials);
+            }
+        }
+        return credentials;
+    }
+
+    /**
+     * Xóa thẻ khỏi cache (sau khi đổi status/nạp lại thẻ)
+     */
+    public synchronized void invalidate(String cardId) {
+        generation++;
+        entries.remove(normalize(cardId));
+    }
+
+    /**
+     * Xóa mọi thẻ của staff khỏi cache
+     */
+    public synchronized void invalidateStaff(String staffId) {
+        generation++;
+        entries.values().removeIf(credentials -> staffId.equals(credentials.staffId));
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static String normalize(String cardId) {
+        return cardId.replaceAll("\\s+", "");
+    }
+
+    /**
+     * Một dòng card_keys đã được chuẩn bị cho xác thực (bất biến)
+     */
+    public static final class CardCredentials {
+        private final String cardId;
+        private final byte[] publicKeyBytes;
+        private final RSAPublicKey publicKey;
+        private final byte[] staticKeyEncrypted;
+        private final byte[] staticKeyIv;
+        private final String staffId;
+        private final int status;
+        private final long loadedAt = System.nanoTime();
+
+        CardCredentials(HashMap<String, Object> row) {
+            this.cardId = (String) row.get("card_id");
+            this.publicKeyBytes = (byte[]) row.get("public_key_rsa");
+            this.staticKeyEncrypted = (byte[]) row.get("static_key_encrypted");
+            this.staticKeyIv = (byte[]) row.get("static_key_iv");
+            this.staffId = (String) row.get("staff_id");
+            this.status = row.get("status") != null ? ((Number) row.get("status")).intValue() : 0;
+
+            RSAPublicKey parsed = null;
+            if (publicKeyBytes != null) {
+                try {
+                    parsed = CryptoUtils.parseRSAPublicKey(publicKeyBytes);
+                } catch (RuntimeException e) {
+                    logger.warning("Invalid RSA public key for card " + cardId + ": " + e.getMessage());
+                }
+            }
+            this.publicKey = parsed;
+        }
+
+        public String getCardId() {
+            return cardId;
+        }
+
+        public boolean isActive() {
+            return status == 1;
+        }
+
+        public byte[] getPublicKeyBytes() {
+            return publicKeyBytes;
+        }
+
+        /**
+         * Public key đã parse, null nếu dữ liệu trong database không hợp lệ
+         */
+        public RSAPublicKey getPublicKey() {
+            return publicKey;
+        }
+
+        public byte[] getStaticKeyEncrypted() {
+            return staticKeyEncrypted;
+        }
+
+        public byte[] getStaticKeyIv() {
+            return staticKeyIv;
+        }
+
+        public String getStaffId() {
+            return staffId;
+        }
+    }
+}
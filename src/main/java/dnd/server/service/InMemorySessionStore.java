@@ -0,0 +1,174 @@
+package dnd.server.service;
+
+import dnd.server.util.HashedTimerWheel;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * SessionStore trong JVM (mặc định, server.sessionStore=memory)
+ * - Tối đa capacity session, vượt quá thì từ chối handshake mới
+ * - Mỗi thẻ tối đa perCardLimit handshake đang chờ, vượt quá thì bỏ session cũ nhất của thẻ đó
+ * - Session hết hạn được dọn bằng HashedTimerWheel trên scheduler, không chờ get
+ * - Session bị xóa (hết hạn, bị thay thế) đều được xóa static key khỏi bộ nhớ
+ */
+public class InMemorySessionStore implements SessionStore {
+    private static final Logger logger = Logger.getLogger(InMemorySessionStore.class.getName());
+    private static final long SWEEP_TICK_MILLIS = 1000;
+
+    private final Map<String, SessionManager.AuthSession> sessions = new HashMap<>();
+    private final Map<String, Deque<String>> sessionsByCard = new HashMap<>();
+    private final HashedTimerWheel<String> expiry =
+            new HashedTimerWheel<>(SWEEP_TICK_MILLIS, 512, System.currentTimeMillis());
+    private final int capacity;
+    private final int perCardLimit;
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public InMemorySessionStore(int capacity, int perCardLimit) {
+        this.capacity = Math.max(1, capacity);
+        this.perCardLimit = Math.max(1, perCardLimit);
+    }
+
+    /**
+     * Dọn session hết hạn mỗi giây trên scheduler
+     */
+    @Override
+    public void startExpirySweep(ScheduledExecutorService scheduler) {
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                sweepExpired();
+            } catch (Exception e) {
+                logger.warning("Error sweeping auth sessions: " + e.getMessage());
+            }
+        }, SWEEP_TICK_MILLIS, SWEEP_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized boolean put(String sessionId, SessionManager.AuthSession session) {
+        discard(sessionId); // Session ID trùng (gần như không xảy ra với 128 bit ngẫu nhiên)
+
+        // Thẻ đã đủ số handshake đang chờ: bỏ handshake cũ nhất (client đã bỏ dở rồi thử lại)
+        Deque<String> cardSessions = sessionsByCard.get(session.cardId);
+        while (cardSessions != null && cardSessions.size() >= perCardLimit) {
+            discard(cardSessions.peekFirst());
+            replaced.increment();
+            cardSessions = sessionsByCard.get(session.cardId);
+        }
+        if (sessions.size() >= capacity) {
+            rejected.increment();
+            return false;
+        }
+
+        sessions.put(sessionId, session);
+        sessionsByCard.computeIfAbsent(session.cardId, id -> new ArrayDeque<>()).addLast(sessionId);
+        expiry.schedule(sessionId, session.createdAt + SessionManager.SESSION_TIMEOUT);
+        return true;
+    }
+
+    @Override
+    public synchronized SessionManager.AuthSession get(String sessionId) {
+        SessionManager.AuthSession session = sessions.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+
+        // Kiểm tra timeout (sweep chạy theo tick nên có thể chậm tối đa một tick)
+        if (System.currentTimeMillis() - session.createdAt > SessionManager.SESSION_TIMEOUT) {
+            discard(sessionId);
+            expired.increment();
+            return null;
+        }
+
+        return session;
+    }
+
+    /**
+     * Người gọi xóa key material bằng AuthSession.destroy() sau khi dùng xong
+     */
+    @Override
+    public synchronized SessionManager.AuthSession take(String sessionId) {
+        SessionManager.AuthSession session = get(sessionId);
+        if (session != null) {
+            unlink(sessionId, session);
+        }
+        return session;
+    }
+
+    @Override
+    public synchronized void remove(String sessionId) {
+        discard(sessionId);
+    }
+
+    @Override
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    @Override
+    public long getReplacedCount() {
+        return replaced.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private void sweepExpired() {
+        List<String> due = expiry.advance(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (String sessionId : due) {
+                if (sessions.containsKey(sessionId)) {
+                    discard(sessionId);
+                    expired.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Xóa session và key material của nó
+     */
+    private void discard(String sessionId) {
+        SessionManager.AuthSession session = sessions.get(sessionId);
+        if (session != null) {
+            unlink(sessionId, session);
+            session.destroy();
+        }
+    }
+
+    private void unlink(String sessionId, SessionManager.AuthSession session) {
+        sessions.remove(sessionId);
+        expiry.cancel(sessionId);
+        Deque<String> cardSessions = sessionsByCard.get(session.cardId);
+        if (cardSessions != null) {
+            cardSessions.remove(sessionId);
+            if (cardSessions.isEmpty()) {
+                sessionsByCard.remove(session.cardId);
+            }
+        }
+    }
+}
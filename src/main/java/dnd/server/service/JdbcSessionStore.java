@@ -0,0 +1,228 @@
+package dnd.server.service;
+
+import dnd.server.db.CardKeyDao;
+import dnd.server.db.DbManager;
+import dnd.server.db.Row;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * SessionStore dùng chung giữa các node qua bảng auth_sessions (server.sessionStore=jdbc)
+ * - auth/start, auth/verify, auth/complete có thể vào các node khác nhau, không cần sticky session
+ * - Mỗi dòng chỉ giữ card_id, expires_at (epoch ms, có index) và record nhị phân gọn:
+ *   [version 1 byte][createdAt 8 byte][độ dài challenge 1 byte][challengeServer]
+ * - Static key KHÔNG được ghi xuống database: put xóa static key của session truyền vào sau khi ghi,
+ *   get trả session không có static key (verify không cần), chỉ take giải mã lại static key bằng master key
+ * - Mỗi lần đọc session, thẻ được đọc thẳng từ database qua CardKeyDao (không qua và không đụng đến
+ *   CardCredentialCache của node), nên thẻ bị vô hiệu hóa trên bất kỳ node nào giữa chừng thì session không dùng được nữa
+ * - take xóa dòng trước khi trả session, chỉ một node complete được một session
+ * - Giới hạn capacity/perCardLimit được kiểm tra trước khi insert nên chỉ gần đúng khi nhiều node cùng ghi
+ * - Bộ đếm expired/replaced/rejected là của node hiện tại
+ */
+public class JdbcSessionStore implements SessionStore {
+    private static final Logger logger = Logger.getLogger(JdbcSessionStore.class.getName());
+    private static final byte RECORD_VERSION = 1;
+    private static final long SWEEP_INTERVAL_MILLIS = 5000;
+    private static final int SWEEP_BATCH_SIZE = 1000;
+
+    private final DbManager dbManager;
+    private final CardKeyDao cardKeyDao;
+    private final int capacity;
+    private final int perCardLimit;
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public JdbcSessionStore(DbManager dbManager, CardKeyDao cardKeyDao, int capacity, int perCardLimit) {
+        this.dbManager = dbManager;
+        this.cardKeyDao = cardKeyDao;
+        this.capacity = Math.max(1, capacity);
+        this.perCardLimit = Math.max(1, perCardLimit);
+    }
+
+    /**
+     * Xóa các dòng hết hạn mỗi 5 giây (mọi node đều dọn, DELETE theo index expires_at nên không tranh chấp nhiều)
+     */
+    @Override
+    public void startExpirySweep(ScheduledExecutorService scheduler) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                sweepExpired();
+            } catch (Exception e) {
+                logger.warning("Error sweeping auth_sessions: " + e.getMessage());
+            }
+        }, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean put(String sessionId, SessionManager.AuthSession session) {
+        try {
+            return insert(sessionId, session);
+        } finally {
+            // Store không giữ static key, không để bản giải mã nằm lại trong bộ nhớ
+            session.destroy();
+        }
+    }
+
+    private boolean insert(String sessionId, SessionManager.AuthSession session) {
+        long now = System.currentTimeMillis();
+
+        // Thẻ đã đủ số handshake đang chờ: bỏ các handshake cũ nhất
+        List<Row> pending = dbManager.queryRows(
+            "SELECT session_id FROM auth_sessions WHERE card_id = ? AND expires_at > ? ORDER BY expires_at",
+            session.cardId, now);
+        for (int i = 0; i <= pending.size() - perCardLimit; i++) {
+            if (dbManager.update("DELETE FROM auth_sessions WHERE session_id = ?", pending.get(i).get(0)) > 0) {
+                replaced.increment();
+            }
+        }
+
+        HashMap<String, Object> count = dbManager.queryOne(
+            "SELECT COUNT(*) AS total FROM auth_sessions WHERE expires_at > ?", now);
+        if (count == null) {
+            return false;
+        }
+        if (((Number) count.get("total")).intValue() >= capacity) {
+            rejected.increment();
+            return false;
+        }
+
+        int inserted = dbManager.update(
+            "INSERT INTO auth_sessions (session_id, card_id, record, expires_at) VALUES (?, ?, ?, ?)",
+            sessionId, session.cardId, encode(session), session.createdAt + SessionManager.SESSION_TIMEOUT);
+        return inserted > 0;
+    }
+
+    /**
+     * Session không có static key (staticKey = null), chỉ dùng cho verify
+     */
+    @Override
+    public SessionManager.AuthSession get(String sessionId) {
+        HashMap<String, Object> row = findLive(sessionId);
+        return row != null ? restore(row, false) : null;
+    }
+
+    /**
+     * Mỗi lời gọi trả về bản dựng lại riêng có static key,
+     * người gọi xóa static key bằng AuthSession.destroy() sau khi dùng xong
+     */
+    @Override
+    public SessionManager.AuthSession take(String sessionId) {
+        HashMap<String, Object> row = findLive(sessionId);
+        if (row == null) {
+            return null;
+        }
+        // Node khác đã lấy session này trước
+        if (dbManager.update("DELETE FROM auth_sessions WHERE session_id = ?", sessionId) != 1) {
+            return null;
+        }
+        return restore(row, true);
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        dbManager.update("DELETE FROM auth_sessions WHERE session_id = ?", sessionId);
+    }
+
+    @Override
+    public int size() {
+        HashMap<String, Object> count = dbManager.queryOne(
+            "SELECT COUNT(*) AS total FROM auth_sessions WHERE expires_at > ?", System.currentTimeMillis());
+        return count != null ? ((Number) count.get("total")).intValue() : 0;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    @Override
+    public long getReplacedCount() {
+        return replaced.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private HashMap<String, Object> findLive(String sessionId) {
+        return dbManager.queryOne(
+            "SELECT card_id, record FROM auth_sessions WHERE session_id = ? AND expires_at > ?",
+            sessionId, System.currentTimeMillis());
+    }
+
+    private void sweepExpired() {
+        int deleted;
+        do {
+            deleted = dbManager.update("DELETE FROM auth_sessions WHERE expires_at <= ? LIMIT " + SWEEP_BATCH_SIZE,
+                System.currentTimeMillis());
+            if (deleted > 0) {
+                expired.add(deleted);
+            }
+        } while (deleted == SWEEP_BATCH_SIZE);
+    }
+
+    private static byte[] encode(SessionManager.AuthSession session) {
+        byte[] challenge = session.challengeServer;
+        return ByteBuffer.allocate(1 + 8 + 1 + challenge.length)
+            .put(RECORD_VERSION)
+            .putLong(session.createdAt)
+            .put((byte) challenge.length)
+            .put(challenge)
+            .array();
+    }
+
+    /**
+     * Dựng lại AuthSession từ dòng auth_sessions: đọc record, đọc lại thẻ từ database và (nếu cần) giải mã static key
+     * @return null nếu record không đọc được hoặc thẻ không còn hoạt động
+     */
+    private SessionManager.AuthSession restore(HashMap<String, Object> row, boolean withStaticKey) {
+        String cardId = (String) row.get("card_id");
+        long createdAt;
+        byte[] challengeServer;
+        try {
+            ByteBuffer record = ByteBuffer.wrap((byte[]) row.get("record"));
+            if (record.get() != RECORD_VERSION) {
+                logger.warning("Unsupported auth session record version for card " + cardId);
+                return null;
+            }
+            createdAt = record.getLong();
+            challengeServer = new byte[record.get() & 0xFF];
+            record.get(challengeServer);
+        } catch (BufferUnderflowException e) {
+            logger.warning("Truncated auth session record for card " + cardId);
+            return null;
+        }
+
+        HashMap<String, Object> cardRow = cardKeyDao.findCredentials(cardId);
+        if (cardRow == null) {
+            return null;
+        }
+        CardCredentialCache.CardCredentials card = new CardCredentialCache.CardCredentials(cardRow);
+        if (!card.isActive()) {
+            return null;
+        }
+        try {
+            byte[] staticKey = withStaticKey ? AuthenticationService.decryptStaticKey(card) : null;
+            return new SessionManager.AuthSession(cardId, staticKey, card.getPublicKeyBytes(), card.getPublicKey(),
+                challengeServer, createdAt);
+        } catch (RuntimeException e) {
+            logger.warning("Cannot restore auth session for card " + cardId + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package dnd.server.service;
+
+import dnd.server.config.ServerConfig;
+import dnd.server.db.DbManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Ghi system_logs và audit_history bất đồng bộ (write-behind)
+ * - Endpoint chỉ đưa row vào hàng đợi có giới hạn, không chờ database
+ * - Một thread duy nhất gom row và ghi bằng batchUpdate khi đủ logBatchSize row
+ *   hoặc sau logFlushIntervalMs kể từ row đầu tiên của batch
+ * - Thời gian của log được lấy lúc gọi, không phải lúc ghi: audit_history.timestamp bind dạng Timestamp
+ *   (driver đổi múi giờ như NOW() cũ), system_logs.created_at (VARCHAR) giữ dạng chuỗi như trước
+ *
+ * Khi hàng đợi đầy (database chậm hoặc mất kết nối lâu): row được ghi đồng bộ
+ * ngay trên thread gọi (caller-runs). Log không bị mất, nhưng endpoint chậm lại
+ * cho đến khi hàng đợi vơi bớt, giống hành vi trước khi có write-behind.
+ * Nếu batch lỗi (ví dụ một row vi phạm foreign key) thì ghi lại từng row,
+ * row nào vẫn lỗi thì chỉ ghi ra server log.
+ */
+public class LogWriter {
+    private static final Logger logger = Logger.getLogger(LogWriter.class.getName());
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String SYSTEM_LOG_SQL =
+            "INSERT INTO system_logs (action, admin_staff_id, description, created_at) VALUES (?, ?, ?, ?)";
+    private static final String AUDIT_SQL =
+            "INSERT INTO audit_history (timestamp, result, staff_id) VALUES (?, ?, ?)";
+
+    private static LogWriter instance;
+
+    private final DbManager dbManager;
+    private volatile BlockingQueue<LogEntry> queue;
+    private volatile boolean running;
+    private Thread consumer;
+    private int batchSize;
+    private long flushIntervalNanos;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    private LogWriter(DbManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    public static synchronized LogWriter getInstance() {
+        if (instance == null) {
+            instance = new LogWriter(DbManager.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Khởi động thread ghi log theo ServerConfig
+     * Trước khi start (hoặc sau khi stop), log được ghi đồng bộ
+     */
+    public synchronized void start(ServerConfig config) {
+        if (running) {
+            logger.warning("Log writer has already been started.");
+            return;
+        }
+        batchSize = Math.max(1, config.getLogBatchSize());
+        flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getLogFlushIntervalMs()));
+        queue = new ArrayBlockingQueue<>(Math.max(1, config.getLogQueueCapacity()));
+        running = true;
+
+        consumer = new Thread(this::runConsumer, "log-writer");
+        consumer.setDaemon(true);
+        consumer.start();
+        logger.info("Log writer started: batchSize=" + batchSize + ", flushIntervalMs=" + config.getLogFlushIntervalMs()
+                + ", queueCapacity=" + config.getLogQueueCapacity());
+    }
+
+    /**
+     * Ghi một dòng system_logs
+     */
+    public void systemLog(String action, String adminStaffId, String description) {
+        enqueue(new LogEntry(SYSTEM_LOG_SQL, new Object[]{action, adminStaffId, description, now()}));
+    }
+
+    /**
+     * Ghi một dòng audit_history
+     * @param result 0=OK, 1=Có lệch, 2=Cảnh báo
+     */
+    public void auditHistory(String staffId, int result) {
+        enqueue(new LogEntry(AUDIT_SQL, new Object[]{new Timestamp(System.currentTimeMillis()), result, staffId}));
+    }
+
+    private void enqueue(LogEntry entry) {
+        BlockingQueue<LogEntry> current = queue;
+        if (current != null && running && current.offer(entry)) {
+            // stop() có thể đã ghi xong hàng đợi ngay trước khi row được thêm vào
+            if (!running && current.remove(entry)) {
+                writeOne(entry);
+            }
+            return;
+        }
+        // Chưa start, đang dừng hoặc hàng đợi đầy: ghi ngay trên thread gọi
+        if (current != null && running) {
+            overflowed.increment();
+        }
+        writeOne(entry);
+    }
+
+    private void runConsumer() {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                LogEntry first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Gom thêm row cho đến khi đủ batchSize hoặc hết flush interval
+     */
+    private void fillBatch(List<LogEntry> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            LogEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<LogEntry> batch) {
+        List<Object[]> systemLogs = new ArrayList<>();
+        List<Object[]> audits = new ArrayList<>();
+        for (LogEntry entry : batch) {
+            (entry.sql == SYSTEM_LOG_SQL ? systemLogs : audits).add(entry.params);
+        }
+        writeBatch(SYSTEM_LOG_SQL, systemLogs);
+        writeBatch(AUDIT_SQL, audits);
+    }
+
+    private void writeBatch(String sql, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (dbManager.batchUpdate(sql, rows).length == rows.size()) {
+            written.add(rows.size());
+            return;
+        }
+        // Batch lỗi: thử lại từng row để một row hỏng không làm mất cả batch
+        for (Object[] params : rows) {
+            writeOne(new LogEntry(sql, params));
+        }
+    }
+
+    private void writeOne(LogEntry entry) {
+        if (dbManager.update(entry.sql, entry.params) > 0) {
+            written.increment();
+        } else {
+            failed.increment();
+            logger.warning("Failed to write log row: " + String.join(", ", describe(entry.params)));
+        }
+    }
+
+    /**
+     * Dừng thread ghi log sau khi ghi hết các row còn trong hàng đợi
+     * Gọi trước khi đóng connection pool
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        // Không interrupt consumer: JDBC/Hikari sẽ hủy câu lệnh đang ghi,
+        // consumer tự thoát sau tối đa một flush interval khi hàng đợi đã trống
+        running = false;
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (consumer.isAlive()) {
+            logger.warning("Log writer did not finish in time, " + queue.size() + " rows may be lost");
+        }
+
+        // Row được đưa vào sau khi consumer đã thoát
+        List<LogEntry> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+        logger.info("Log writer đã dừng");
+    }
+
+    public int getQueueDepth() {
+        BlockingQueue<LogEntry> current = queue;
+        return current != null ? current.size() : 0;
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Số row phải ghi đồng bộ vì hàng đợi đầy
+     */
+    public long getOverflowCount() {
+        return overflowed.sum();
+    }
+
+    private static String now() {
+        return LocalDateTime.now().format(FORMATTER);
+    }
+
+    private static String[] describe(Object[] params) {
+        String[] values = new String[params.length];
+        for (int i = 0; i < params.length; i++) {
+            values[i] = String.valueOf(params[i]);
+        }
+        return values;
+    }
+
+    private static final class LogEntry {
+        final String sql;
+        final Object[] params;
+
+        LogEntry(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package dnd.server.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Topic trong process cho sự kiện thanh toán của đơn thuốc (đã thanh toán / đã hủy)
+ * - Mỗi prescription ID là một topic, subscriber là các kết nối SSE đang hiển thị QR của đơn đó
+ * - TransactionEndpoint, CancelPrescriptionPaymentEndpoint, UpdatePrescriptionEndpoint
+ *   và PrescriptionTimeoutEngine publish sau khi thay đổi đã được commit
+ * - Listener chạy trên thread publish nên phải nhanh và không chặn (chỉ ghi ra kết nối)
+ * Chỉ có hiệu lực trong một server; client vẫn có thể poll payment-status làm dự phòng
+ */
+public class PaymentEventBus {
+    private static final Logger logger = Logger.getLogger(PaymentEventBus.class.getName());
+
+    public static final String STATUS_PAID = "paid";
+    public static final String STATUS_CANCELLED = "cancelled";
+
+    private static PaymentEventBus instance;
+
+    private final ConcurrentHashMap<Long, Set<Consumer<Map<String, Object>>>> topics = new ConcurrentHashMap<>();
+
+    private PaymentEventBus() {
+    }
+
+    public static synchronized PaymentEventBus getInstance() {
+        if (instance == null) {
+            instance = new PaymentEventBus();
+        }
+        return instance;
+    }
+
+    /**
+     * Đăng ký nhận sự kiện của một đơn thuốc
+     * @return Runnable để hủy đăng ký
+     */
+    public Runnable subscribe(long prescriptionId, Consumer<Map<String, Object>> listener) {
+        // Thêm trong compute để không lẫn với việc xóa topic rỗng ở unsubscribe
+        topics.compute(prescriptionId, (id, listeners) -> {
+            Set<Consumer<Map<String, Object>>> result = listeners != null ? listeners : new CopyOnWriteArraySet<>();
+            result.add(listener);
+            return result;
+        });
+        return () -> topics.computeIfPresent(prescriptionId, (id, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    /**
+     * Có kết nối nào đang chờ sự kiện của đơn này không
+     */
+    public boolean hasSubscribers(long prescriptionId) {
+        return topics.containsKey(prescriptionId);
+    }
+
+    /**
+     * Gửi sự kiện cho mọi subscriber của đơn thuốc
+     * @param event Dữ liệu giống data của GET /api/prescriptions/:id/payment-status
+     */
+    public void publish(long prescriptionId, Map<String, Object> event) {
+        Set<Consumer<Map<String, Object>>> listeners = topics.get(prescriptionId);
+        if (listeners == null) {
+            return;
+        }
+        for (Consumer<Map<String, Object>> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (Exception e) {
+                logger.warning("Payment event listener failed for prescription " + prescriptionId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Đơn thuốc đã được thanh toán
+     */
+    public void publishPaid(long prescriptionId, Object transactionId, Object amount, Object paidAt) {
+        if (!hasSubscribers(prescriptionId)) {
+            return;
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("prescriptionId", prescriptionId);
+        event.put("status", STATUS_PAID);
+        event.put("transactionId", transactionId);
+        event.put("amount", amount);
+        event.put("paidAt", paidAt);
+        publish(prescriptionId, event);
+    }
+
+    /**
+     * Đơn thuốc đã bị hủy (thủ công hoặc quá hạn thanh toán)
+     */
+    public void publishCancelled(long prescriptionId) {
+        if (!hasSubscribers(prescriptionId)) {
+            return;
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("prescriptionId", prescriptionId);
+        event.put("status", STATUS_CANCELLED);
+        publish(prescriptionId, event);
+    }
+
+    /**
+     * Số topic (đơn thuốc) đang có subscriber
+     */
+    public int getTopicCount() {
+        return topics.size();
+    }
+}
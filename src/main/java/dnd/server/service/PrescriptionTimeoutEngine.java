@@ -0,0 +1,233 @@
+package dnd.server.service;
+
+import dnd.server.config.ServerConfig;
+import dnd.server.db.ChangeLog;
+import dnd.server.db.DbManager;
+import dnd.server.db.Row;
+import dnd.server.util.HashedTimerWheel;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Tự động hủy đơn thuốc chưa thanh toán sau prescriptionTimeoutSeconds (mặc định 5 phút)
+ * - Đơn đang chờ (status 0/1) nằm trong HashedTimerWheel với deadline = lúc tạo + timeout
+ * - Wheel được nạp từ database lúc khởi động (và đồng bộ lại định kỳ để bắt các đơn
+ *   tạo ngoài server này), đơn mới được thêm bởi CreatePrescriptionEndpoint
+ * - Mỗi tick, các đơn hết hạn trong tick đó được hủy bằng một câu UPDATE ... WHERE id IN (...)
+ * - Điều kiện status, tuổi của đơn và "chưa có giao dịch" vẫn được kiểm tra trong UPDATE,
+ *   nên đơn đã thanh toán/đã xử lý mà còn trong wheel chỉ là một id thừa, không bị hủy nhầm
+ * - Đơn còn chờ nhưng chưa đủ tuổi theo đồng hồ database (lệch giờ) được đặt lại deadline
+ *   theo created_at của database, không phải chờ lần đồng bộ sau
+ */
+public class PrescriptionTimeoutEngine {
+    private static final Logger logger = Logger.getLogger(PrescriptionTimeoutEngine.class.getName());
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 512;
+    private static final long RETRY_DELAY_MILLIS = 5000;
+    private static final long MIN_RESCHEDULE_MILLIS = 1000;
+    private static final long RESYNC_MINUTES = 10;
+    private static final int MAX_IDS_PER_UPDATE = 500;
+
+    private static PrescriptionTimeoutEngine instance;
+
+    private final DbManager dbManager;
+    private volatile HashedTimerWheel<Long> wheel;
+    private int timeoutSeconds;
+    private long timeoutMillis;
+
+    private PrescriptionTimeoutEngine(DbManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    public static synchronized PrescriptionTimeoutEngine getInstance() {
+        if (instance == null) {
+            instance = new PrescriptionTimeoutEngine(DbManager.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Nạp các đơn đang chờ và chạy tick trên scheduler
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, ServerConfig config) {
+        if (wheel != null) {
+            logger.warning("Prescription timeout engine has already been started.");
+            return;
+        }
+        timeoutSeconds = Math.max(1, config.getPrescriptionTimeoutSeconds());
+        timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        wheel = new HashedTimerWheel<>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+        resync();
+
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (Exception e) {
+                logger.warning("Error in prescription timeout task: " + e.getMessage());
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                resync();
+            } catch (Exception e) {
+                logger.warning("Error resyncing pending prescriptions: " + e.getMessage());
+            }
+        }, RESYNC_MINUTES, RESYNC_MINUTES, TimeUnit.MINUTES);
+
+        logger.info("✓ Prescription timeout engine đã khởi động (timeout " + timeoutSeconds + "s, " + wheel.size() + " đơn đang chờ)");
+    }
+
+    /**
+     * Theo dõi đơn vừa tạo (gọi sau khi commit), hết hạn sau timeout tính từ bây giờ
+     */
+    public void track(long prescriptionId) {
+        HashedTimerWheel<Long> current = wheel;
+        if (current != null) {
+            current.schedule(prescriptionId, System.currentTimeMillis() + timeoutMillis);
+        }
+    }
+
+    /**
+     * Bỏ theo dõi đơn đã thanh toán hoặc đã xử lý xong
+     */
+    public void untrack(long prescriptionId) {
+        HashedTimerWheel<Long> current = wheel;
+        if (current != null) {
+            current.cancel(prescriptionId);
+        }
+    }
+
+    /**
+     * Số đơn đang chờ thanh toán trong wheel
+     */
+    public int getPendingCount() {
+        HashedTimerWheel<Long> current = wheel;
+        return current != null ? current.size() : 0;
+    }
+
+    /**
+     * Nạp lại các đơn đang chờ từ database
+     * Tuổi của đơn tính bằng đồng hồ của database, không phụ thuộc lệch giờ giữa server và database
+     */
+    private void resync() {
+        String sql = "SELECT id, TIMESTAMPDIFF(SECOND, created_at, NOW()) AS age_seconds FROM prescriptions WHERE status IN (0, 1)";
+        List<Row> pending = dbManager.queryRows(sql);
+        long now = System.currentTimeMillis();
+        for (Row row : pending) {
+            long id = ((Number) row.get("id")).longValue();
+            Object age = row.get("age_seconds");
+            long ageMillis = age != null ? TimeUnit.SECONDS.toMillis(((Number) age).longValue()) : 0;
+            if (!wheel.contains(id)) {
+                wheel.schedule(id, now + timeoutMillis - ageMillis);
+            }
+        }
+    }
+
+    /**
+     * Hủy các đơn đến hạn trong tick này
+     */
+    private void tick() {
+        List<Long> expired = wheel.advance(System.currentTimeMillis());
+        for (int from = 0; from < expired.size(); from += MAX_IDS_PER_UPDATE) {
+            cancelBatch(expired.subList(from, Math.min(expired.size(), from + MAX_IDS_PER_UPDATE)));
+        }
+    }
+
+    private void cancelBatch(List<Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String sql = """
+            UPDATE prescriptions
+            SET status = 3, updated_at = NOW()
+            WHERE id IN (%s)
+              AND status IN (0, 1)
+              AND created_at <= DATE_SUB(NOW(), INTERVAL ? SECOND)
+              AND NOT EXISTS (
+                  SELECT 1 FROM transactions t
+                  WHERE t.prescription_id = prescriptions.id
+              )
+            """.formatted(placeholders);
+
+        Object[] params = new Object[ids.size() + 1];
+        for (int i = 0; i < ids.size(); i++) {
+            params[i] = ids.get(i);
+        }
+        params[ids.size()] = timeoutSeconds;
+
+        // Ghi change_log cho cả batch (kể cả đơn không bị hủy): upsert thừa chỉ làm client đọc lại đơn đó
+        ChangeLog.Change[] changes = new ChangeLog.Change[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            changes[i] = ChangeLog.upsert(ChangeLog.PRESCRIPTION, ids.get(i));
+        }
+        int affected = ChangeLog.update(dbManager, sql, params, changes);
+        if (affected < 0) {
+            // Lỗi database: thử lại sau, đơn vẫn được giữ trong wheel
+            long retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+            for (Long id : ids) {
+                wheel.schedule(id, retryAt);
+            }
+            logger.warning("Không hủy được " + ids.size() + " đơn thuốc quá hạn, thử lại sau " + RETRY_DELAY_MILLIS + "ms");
+            return;
+        }
+        if (affected > 0) {
+            logger.info("Đã tự động hủy " + affected + "/" + ids.size() + " đơn thuốc quá hạn chưa thanh toán: " + ids);
+            publishCancelled(ids);
+            StatsSnapshot.getInstance().pendingPrescriptionsCancelled(affected);
+        }
+        if (affected < ids.size()) {
+            rescheduleNotYetDue(ids);
+        }
+    }
+
+    /**
+     * Đặt lại deadline cho các đơn còn chờ mà UPDATE bỏ qua vì chưa đủ tuổi theo đồng hồ database
+     * (database chậm giờ hơn server, hoặc deadline lúc track lệch với created_at)
+     * Deadline = created_at + timeout theo database, tối thiểu MIN_RESCHEDULE_MILLIS từ bây giờ
+     */
+    private void rescheduleNotYetDue(List<Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        List<Row> pending = dbManager.queryRows("""
+            SELECT p.id, TIMESTAMPDIFF(SECOND, p.created_at, NOW()) AS age_seconds
+            FROM prescriptions p
+            WHERE p.id IN (%s)
+              AND p.status IN (0, 1)
+              AND NOT EXISTS (
+                  SELECT 1 FROM transactions t
+                  WHERE t.prescription_id = p.id
+              )
+            """.formatted(placeholders), ids.toArray());
+        long now = System.currentTimeMillis();
+        for (Row row : pending) {
+            long id = ((Number) row.get("id")).longValue();
+            Object age = row.get("age_seconds");
+            long ageMillis = age != null ? TimeUnit.SECONDS.toMillis(((Number) age).longValue()) : 0;
+            if (!wheel.contains(id)) {
+                wheel.schedule(id, Math.max(now + MIN_RESCHEDULE_MILLIS, now + timeoutMillis - ageMillis));
+            }
+        }
+        if (!pending.isEmpty()) {
+            logger.fine("Rescheduled " + pending.size() + " prescriptions not yet due by database clock");
+        }
+    }
+
+    /**
+     * Báo cho các client đang hiển thị QR của những đơn vừa bị hủy
+     * Chỉ đọc lại status của các đơn có subscriber (thường là không có đơn nào)
+     */
+    private void publishCancelled(List<Long> ids) {
+        PaymentEventBus eventBus = PaymentEventBus.getInstance();
+        List<Long> watched = ids.stream().filter(eventBus::hasSubscribers).toList();
+        if (watched.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(watched.size(), "?"));
+        List<Row> cancelled = dbManager.queryRows(
+                "SELECT id FROM prescriptions WHERE id IN (" + placeholders + ") AND status = 3", watched.toArray());
+        for (Row row : cancelled) {
+            eventBus.publishCancelled(((Number) row.get("id")).longValue());
+        }
+    }
+}
@@ -1,63 +1,150 @@
 package dnd.server.service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import dnd.server.config.ServerConfig;
+import dnd.server.db.CardKeyDao;
+import dnd.server.db.DbManager;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Logger;
 
 /**
  * Session manager để lưu trữ tạm thời dữ liệu authentication giữa các bước
  * Singleton để share giữa các endpoints
+ * - Dữ liệu nằm trong SessionStore chọn bằng server.sessionStore:
+ *   memory (InMemorySessionStore, mặc định) hoặc jdbc (JdbcSessionStore, dùng chung giữa các node)
+ * - Tối đa authSessionCapacity session, vượt quá thì từ chối handshake mới
+ * - Mỗi thẻ tối đa authSessionsPerCard handshake đang chờ, vượt quá thì bỏ session cũ nhất của thẻ đó
+ * - Session hết hạn sau 5 phút và được store dọn định kỳ trên scheduler
  */
 public class SessionManager {
+    private static final Logger logger = Logger.getLogger(SessionManager.class.getName());
     private static SessionManager instance;
-    private final Map<String, AuthSession> sessions = new ConcurrentHashMap<>();
-    private static final long SESSION_TIMEOUT = 5 * 60 * 1000; // 5 phút
-    
-    private SessionManager() {}
-    
+    static final long SESSION_TIMEOUT = 5 * 60 * 1000; // 5 phút
+
+    private final SessionStore store;
+
+    private SessionManager(SessionStore store) {
+        this.store = store;
+    }
+
     public static synchronized SessionManager getInstance() {
         if (instance == null) {
-            instance = new SessionManager();
+            instance = new SessionManager(createStore(ServerConfig.getInstance()));
         }
         return instance;
     }
-    
-    public void putSession(String sessionId, AuthSession session) {
-        sessions.put(sessionId, session);
-    }
-    
-    public AuthSession getSession(String sessionId) {
-        AuthSession session = sessions.get(sessionId);
-        if (session == null) {
-            return null;
+
+    private static SessionStore createStore(ServerConfig config) {
+        String type = config.getSessionStore();
+        if ("jdbc".equalsIgnoreCase(type)) {
+            logger.info("Auth sessions are stored in auth_sessions (shared between nodes)");
+            return new JdbcSessionStore(DbManager.getInstance(), new CardKeyDao(DbManager.getInstance()),
+                config.getAuthSessionCapacity(), config.getAuthSessionsPerCard());
         }
-        
-        // Kiểm tra timeout
-        if (System.currentTimeMillis() - session.createdAt > SESSION_TIMEOUT) {
-            sessions.remove(sessionId);
-            return null;
+        if (!"memory".equalsIgnoreCase(type)) {
+            logger.warning("Unknown server.sessionStore: " + type + ", using memory");
         }
-        
-        return session;
+        return new InMemorySessionStore(config.getAuthSessionCapacity(), config.getAuthSessionsPerCard());
+    }
+
+    /**
+     * Dọn session hết hạn định kỳ trên scheduler
+     */
+    public void startExpirySweep(ScheduledExecutorService scheduler) {
+        store.startExpirySweep(scheduler);
+    }
+
+    /**
+     * Lưu session của một handshake mới
+     * @return false nếu đã đủ authSessionCapacity session (server đang bị dồn handshake) hoặc store lỗi
+     */
+    public boolean putSession(String sessionId, AuthSession session) {
+        return store.put(sessionId, session);
     }
-    
+
+    public AuthSession getSession(String sessionId) {
+        return store.get(sessionId);
+    }
+
+    /**
+     * Lấy và xóa session (dùng một lần, ví dụ ở bước complete)
+     * Người gọi xóa key material bằng AuthSession.destroy() sau khi dùng xong
+     */
+    public AuthSession takeSession(String sessionId) {
+        return store.take(sessionId);
+    }
+
     public void removeSession(String sessionId) {
-        sessions.remove(sessionId);
+        store.remove(sessionId);
     }
-    
+
+    /**
+     * Số session đang lưu
+     */
+    public int size() {
+        return store.size();
+    }
+
+    public int getCapacity() {
+        return store.getCapacity();
+    }
+
+    /**
+     * Số session bị xóa vì hết hạn
+     */
+    public long getExpiredCount() {
+        return store.getExpiredCount();
+    }
+
+    /**
+     * Số session bị bỏ vì thẻ vượt quá authSessionsPerCard handshake đang chờ
+     */
+    public long getReplacedCount() {
+        return store.getReplacedCount();
+    }
+
+    /**
+     * Số handshake bị từ chối vì đã đủ authSessionCapacity
+     */
+    public long getRejectedCount() {
+        return store.getRejectedCount();
+    }
+
     public static class AuthSession {
         public final String cardId;
         public final byte[] staticKey;
         public final byte[] publicKeyBytes;
+        public final PublicKey publicKey; // Đã parse ở bước start, null thì parse lại từ publicKeyBytes
         public final byte[] challengeServer;
         public final long createdAt;
-        
-        public AuthSession(String cardId, byte[] staticKey, byte[] publicKeyBytes, byte[] challengeServer) {
+
+        public AuthSession(String cardId, byte[] staticKey, byte[] publicKeyBytes, PublicKey publicKey,
+                           byte[] challengeServer) {
+            this(cardId, staticKey, publicKeyBytes, publicKey, challengeServer, System.currentTimeMillis());
+        }
+
+        /**
+         * Dựng lại session đã lưu (JdbcSessionStore), giữ nguyên thời điểm tạo
+         */
+        AuthSession(String cardId, byte[] staticKey, byte[] publicKeyBytes, PublicKey publicKey,
+                    byte[] challengeServer, long createdAt) {
             this.cardId = cardId;
             this.staticKey = staticKey;
             this.publicKeyBytes = publicKeyBytes;
+            this.publicKey = publicKey;
             this.challengeServer = challengeServer;
-            this.createdAt = System.currentTimeMillis();
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * Xóa static key (đã giải mã) khỏi bộ nhớ
+         */
+        public void destroy() {
+            if (staticKey != null) {
+                Arrays.fill(staticKey, (byte) 0);
+            }
         }
     }
 }
-
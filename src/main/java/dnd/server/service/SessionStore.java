@@ -0,0 +1,59 @@
+package dnd.server.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Nơi lưu các handshake xác thực thẻ đang chờ (auth/start -> auth/verify -> auth/complete)
+ * - memory: InMemorySessionStore, trong JVM, cả ba bước phải vào cùng một node (sticky)
+ * - jdbc: JdbcSessionStore, bảng auth_sessions dùng chung, node nào cũng xử lý được bước tiếp theo
+ * Chọn bằng server.sessionStore, SessionManager chuyển mọi lời gọi sang store đã chọn
+ */
+public interface SessionStore {
+
+    /**
+     * Lưu session của một handshake mới
+     * Thẻ đã đủ authSessionsPerCard handshake đang chờ thì bỏ handshake cũ nhất
+     * @return false nếu không lưu được (đã đủ authSessionCapacity hoặc store lỗi)
+     */
+    boolean put(String sessionId, SessionManager.AuthSession session);
+
+    /**
+     * Session còn hạn, null nếu không có hoặc đã hết hạn
+     * Static key có thể là null (store không giữ key), chỉ take đảm bảo có static key
+     */
+    SessionManager.AuthSession get(String sessionId);
+
+    /**
+     * Lấy và xóa session (dùng một lần), chỉ một lời gọi nhận được session dù gọi từ nhiều node
+     */
+    SessionManager.AuthSession take(String sessionId);
+
+    void remove(String sessionId);
+
+    /**
+     * Đăng ký việc dọn session hết hạn trên scheduler
+     */
+    void startExpirySweep(ScheduledExecutorService scheduler);
+
+    /**
+     * Số session đang lưu (còn hạn)
+     */
+    int size();
+
+    int getCapacity();
+
+    /**
+     * Số session bị xóa vì hết hạn
+     */
+    long getExpiredCount();
+
+    /**
+     * Số session bị bỏ vì thẻ vượt quá authSessionsPerCard handshake đang chờ
+     */
+    long getReplacedCount();
+
+    /**
+     * Số handshake bị từ chối vì đã đủ authSessionCapacity
+     */
+    long getRejectedCount();
+}
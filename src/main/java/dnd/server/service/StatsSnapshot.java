@@ -0,0 +1,300 @@
+package dnd.server.service;
+
+import dnd.server.db.DbManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Số liệu thống kê tổng quan (dashboard, tổng quan kho) giữ trong bộ nhớ
+ * Thay cho ~10 query COUNT/SUM chạy mỗi lần dashboard poll
+ * - Tính toàn bộ bằng một query aggregate lúc khởi động và tính lại định kỳ (sửa sai lệch)
+ * - Các endpoint ghi (thuốc, nhập/xuất kho, đơn thuốc, nhân viên) cập nhật số liệu bằng delta
+ *   sau khi ghi thành công, dựa trên giá trị trước/sau mà endpoint đã đọc được
+ * - Delta đến trong lúc đang tính lại thì kết quả lần tính đó bị bỏ (không biết query đã thấy thay đổi chưa),
+ *   trừ khi đã bị bỏ MAX_DISCARDS lần liên tiếp: khi ghi liên tục, sai lệch của delta vẫn phải được sửa
+ *   (kết quả lần đó có thể lệch một delta, được sửa ở lần tính lại sau)
+ * Nếu có sửa đổi ngoài server (chạy SQL tay, node khác), sai lệch được sửa ở lần tính lại kế tiếp
+ */
+public class StatsSnapshot {
+    private static final Logger logger = Logger.getLogger(StatsSnapshot.class.getName());
+    private static final int DEFAULT_MIN_QUANTITY = 10; // Giống COALESCE(min_quantity, 10)
+    private static final int MAX_DISCARDS = 3;
+
+    private static final String SELECT_STATS = """
+            SELECT m.totalMedicines, m.totalQuantity, m.lowStockCount,
+                   p.totalPrescriptions, p.pendingPrescriptions,
+                   s.totalStaff, s.totalAdmin, s.totalPharmacist, s.totalWarehouse, s.activeStaff
+            FROM (SELECT COUNT(*) AS totalMedicines,
+                         COALESCE(SUM(quantity), 0) AS totalQuantity,
+                         COUNT(CASE WHEN quantity < COALESCE(min_quantity, 10) THEN 1 END) AS lowStockCount
+                  FROM medicines) m
+            CROSS JOIN (SELECT COUNT(*) AS totalPrescriptions,
+                               COUNT(CASE WHEN status IN (0, 1) THEN 1 END) AS pendingPrescriptions
+                        FROM prescriptions) p
+            CROSS JOIN (SELECT COUNT(*) AS totalStaff,
+                               COUNT(CASE WHEN role = 0 AND active = 1 THEN 1 END) AS totalAdmin,
+                               COUNT(CASE WHEN role = 1 AND active = 1 THEN 1 END) AS totalPharmacist,
+                               COUNT(CASE WHEN role = 2 AND active = 1 THEN 1 END) AS totalWarehouse,
+                               COUNT(CASE WHEN active = 1 THEN 1 END) AS activeStaff
+                        FROM staff_info) s
+            """;
+
+    private static StatsSnapshot instance;
+    private final DbManager dbManager;
+
+    // Guarded by this
+    private boolean loaded;
+    private long version; // Tăng mỗi lần áp dụng delta
+    private int discards; // Số lần tính lại liên tiếp bị bỏ
+    private long totalMedicines;
+    private long totalQuantity;
+    private long lowStockCount;
+    private long totalPrescriptions;
+    private long pendingPrescriptions;
+    private long totalStaff;
+    private long totalAdmin;
+    private long totalPharmacist;
+    private long totalWarehouse;
+    private long activeStaff;
+
+    private StatsSnapshot(DbManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    public static synchronized StatsSnapshot getInstance() {
+        if (instance == null) {
+            instance = new StatsSnapshot(DbManager.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Tính lại toàn bộ số liệu bằng một query
+     * @return false nếu query lỗi hoặc bị bỏ vì có delta trong lúc tính (số liệu cũ được giữ nguyên)
+     * Bị bỏ MAX_DISCARDS lần liên tiếp thì lần này dùng kết quả query dù có delta
+     */
+    public boolean recompute() {
+        long startVersion;
+        synchronized (this) {
+            startVersion = version;
+        }
+        HashMap<String, Object> row = dbManager.queryOne(SELECT_STATS);
+        if (row == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (loaded && version != startVersion) {
+                if (++discards < MAX_DISCARDS) {
+                    logger.fine("Stats recompute discarded: counters changed while querying");
+                    return false;
+                }
+                logger.info("Stats recompute applied after " + discards + " consecutive discards");
+            }
+            discards = 0;
+            totalMedicines = longValue(row.get("totalMedicines"));
+            totalQuantity = longValue(row.get("totalQuantity"));
+            lowStockCount = longValue(row.get("lowStockCount"));
+            totalPrescriptions = longValue(row.get("totalPrescriptions"));
+            pendingPrescriptions = longValue(row.get("pendingPrescriptions"));
+            totalStaff = longValue(row.get("totalStaff"));
+            totalAdmin = longValue(row.get("totalAdmin"));
+            totalPharmacist = longValue(row.get("totalPharmacist"));
+            totalWarehouse = longValue(row.get("totalWarehouse"));
+            activeStaff = longValue(row.get("activeStaff"));
+            loaded = true;
+            return true;
+        }
+    }
+
+    /**
+     * Số liệu cho GET /api/dashboard/stats
+     */
+    public Map<String, Object> dashboard() {
+        ensureLoaded();
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            putInventory(stats);
+            stats.put("pendingPrescriptions", pendingPrescriptions);
+            stats.put("totalStaff", totalStaff);
+            stats.put("totalAdmin", totalAdmin);
+            stats.put("totalPharmacist", totalPharmacist);
+            stats.put("totalWarehouse", totalWarehouse);
+            stats.put("activeStaff", activeStaff);
+        }
+        return stats;
+    }
+
+    /**
+     * Số liệu cho GET /api/system/inventory/summary
+     */
+    public Map<String, Object> inventorySummary() {
+        ensureLoaded();
+        Map<String, Object> summary = new HashMap<>();
+        synchronized (this) {
+            putInventory(summary);
+        }
+        return summary;
+    }
+
+    private void putInventory(Map<String, Object> target) {
+        target.put("totalMedicines", totalMedicines);
+        target.put("totalQuantity", totalQuantity);
+        target.put("lowStockCount", lowStockCount);
+        target.put("totalPrescriptions", totalPrescriptions);
+    }
+
+    /**
+     * Chưa load được lúc khởi động thì thử load khi có request (lỗi thì trả về 0 như trước đây)
+     */
+    private void ensureLoaded() {
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+        }
+        recompute();
+    }
+
+    /**
+     * Thuốc mới được tạo
+     * @param medicine Dòng medicines vừa tạo (cần quantity, min_quantity)
+     */
+    public synchronized void medicineAdded(Map<String, Object> medicine) {
+        applyMedicine(medicine, 0, 1);
+    }
+
+    /**
+     * Thuốc bị xóa
+     * @param medicine Dòng medicines đọc trước khi xóa
+     */
+    public synchronized void medicineRemoved(Map<String, Object> medicine) {
+        applyMedicine(medicine, 0, -1);
+    }
+
+    /**
+     * Thuốc được sửa (quantity, min_quantity có thể đổi)
+     */
+    public synchronized void medicineChanged(Map<String, Object> before, Map<String, Object> after) {
+        if (before == null || after == null) {
+            return;
+        }
+        applyMedicine(before, 0, -1);
+        applyMedicine(after, 0, 1);
+    }
+
+    /**
+     * Quantity của thuốc thay đổi delta (nhập/xuất kho)
+     * @param before Dòng medicines (quantity, min_quantity) đọc trong transaction trước khi cập nhật
+     */
+    public synchronized void medicineQuantityChanged(Map<String, Object> before, long delta) {
+        applyMedicine(before, 0, -1);
+        applyMedicine(before, delta, 1);
+    }
+
+    /**
+     * Đơn thuốc mới được tạo
+     */
+    public synchronized void prescriptionCreated(int status) {
+        if (!loaded) {
+            return;
+        }
+        version++;
+        totalPrescriptions++;
+        if (isPending(status)) {
+            pendingPrescriptions++;
+        }
+    }
+
+    /**
+     * Status của đơn thuốc thay đổi
+     * @param oldStatus Status trước khi cập nhật (giá trị đọc từ database), null nếu không biết
+     */
+    public synchronized void prescriptionStatusChanged(Object oldStatus, Object newStatus) {
+        if (!loaded || !(oldStatus instanceof Number before) || !(newStatus instanceof Number after)) {
+            return;
+        }
+        version++;
+        pendingPrescriptions += (isPending(after.intValue()) ? 1 : 0) - (isPending(before.intValue()) ? 1 : 0);
+    }
+
+    /**
+     * Các đơn đang xử lý (status 0/1) bị hủy hàng loạt (PrescriptionTimeoutEngine)
+     */
+    public synchronized void pendingPrescriptionsCancelled(int count) {
+        if (!loaded || count <= 0) {
+            return;
+        }
+        version++;
+        pendingPrescriptions -= count;
+    }
+
+    /**
+     * Nhân viên mới được tạo
+     */
+    public synchronized void staffAdded(Integer role, boolean active) {
+        applyStaff(role, active, 1);
+    }
+
+    /**
+     * Nhân viên được sửa
+     * @param before Dòng staff_info (role, active) đọc trước khi cập nhật
+     * @param newRole null nếu role không đổi
+     * @param newActive null nếu active không đổi
+     */
+    public synchronized void staffChanged(Map<String, Object> before, Integer newRole, Boolean newActive) {
+        Integer oldRole = before.get("role") instanceof Number role ? role.intValue() : null;
+        boolean oldActive = isTrue(before.get("active"));
+        applyStaff(oldRole, oldActive, -1);
+        applyStaff(newRole != null ? newRole : oldRole, newActive != null ? newActive : oldActive, 1);
+    }
+
+    private void applyMedicine(Map<String, Object> medicine, long delta, int sign) {
+        if (!loaded || medicine == null) {
+            return;
+        }
+        version++;
+        long quantity = longValue(medicine.get("quantity")) + delta;
+        Object minQuantity = medicine.get("min_quantity");
+        totalMedicines += sign;
+        totalQuantity += sign * quantity;
+        if (quantity < (minQuantity instanceof Number min ? min.longValue() : DEFAULT_MIN_QUANTITY)) {
+            lowStockCount += sign;
+        }
+    }
+
+    private void applyStaff(Integer role, boolean active, int sign) {
+        if (!loaded) {
+            return;
+        }
+        version++;
+        totalStaff += sign;
+        if (!active) {
+            return;
+        }
+        activeStaff += sign;
+        if (role == null) {
+            return;
+        }
+        switch (role) {
+            case 0 -> totalAdmin += sign;
+            case 1 -> totalPharmacist += sign;
+            case 2 -> totalWarehouse += sign;
+            default -> {
+            }
+        }
+    }
+
+    private static boolean isPending(int status) {
+        return status == 0 || status == 1;
+    }
+
+    private static boolean isTrue(Object value) {
+        return value instanceof Boolean bool ? bool : value instanceof Number number && number.intValue() != 0;
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+}
@@ -0,0 +1,83 @@
+package dnd.server.service;
+
+import dnd.server.config.ServerConfig;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version theo bảng trong bộ nhớ, dùng làm ETag cho các route GET đọc danh mục (thuốc, nhân viên, thẻ)
+ * - Route ghi khai báo các bảng nó sửa (Route.invalidates), ApiRouter tăng version sau khi route chạy xong
+ * - Route đọc khai báo các bảng nó đọc (Route.versionedBy): ETag = epoch + version các bảng đó,
+ *   If-None-Match khớp thì trả 304 ngay, không query database và không hash body
+ * - Epoch đổi mỗi lần khởi động nên ETag của process trước không bao giờ khớp
+ * - writes(): đếm mọi lần ghi qua API (kể cả route không khai báo bảng), RequestCoalescer dùng để không
+ *   trả kết quả đọc trước một lần ghi cho request đến sau lần ghi đó
+ * Chỉ thấy thay đổi đi qua API của chính node này: khi chạy nhiều node hoặc có ghi database từ ngoài
+ * thì tắt server.tableVersionEtags, các route đó quay về ETag hash body như các GET khác
+ */
+public class TableVersions {
+    public static final String MEDICINES = "medicines";
+    public static final String MEDICINE_BATCHES = "medicine_batches";
+    public static final String STAFF_INFO = "staff_info";
+    public static final String ADMIN_ACCOUNTS = "admin_accounts";
+    public static final String CARD_KEYS = "card_keys";
+
+    private static TableVersions instance;
+
+    private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final AtomicLong writes = new AtomicLong();
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final boolean enabled;
+
+    private TableVersions(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public static synchronized TableVersions getInstance() {
+        if (instance == null) {
+            instance = new TableVersions(ServerConfig.getInstance().isTableVersionEtags());
+        }
+        return instance;
+    }
+
+    /**
+     * Đánh dấu các bảng đã thay đổi
+     */
+    public void bump(String... tables) {
+        for (String table : tables) {
+            counter(table).incrementAndGet();
+        }
+        writes.incrementAndGet(); // Sau version các bảng: ai thấy writes mới thì cũng thấy version mới
+    }
+
+    /**
+     * Số lần ghi qua API của node này (tăng sau mỗi bump)
+     */
+    public long writes() {
+        return writes.get();
+    }
+
+    public long version(String table) {
+        return counter(table).get();
+    }
+
+    /**
+     * ETag (strong, đã có dấu nháy) theo version hiện tại của các bảng
+     * @return null nếu server.tableVersionEtags tắt
+     */
+    public String etag(String... tables) {
+        if (!enabled) {
+            return null;
+        }
+        StringBuilder etag = new StringBuilder(32).append("\"v").append(epoch);
+        for (String table : tables) {
+            etag.append('-').append(version(table));
+        }
+        return etag.append('"').toString();
+    }
+
+    private AtomicLong counter(String table) {
+        return versions.computeIfAbsent(table, t -> new AtomicLong());
+    }
+}
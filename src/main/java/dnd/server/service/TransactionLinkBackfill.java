@@ -0,0 +1,86 @@
+package dnd.server.service;
+
+import dnd.server.db.DbManager;
+import dnd.server.db.Row;
+import dnd.server.util.PaymentRef;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Điền transactions.prescription_id cho các giao dịch cũ (trước migration V4)
+ * - Chỉ duyệt các row còn NULL và có "medcard " trong ref/content, theo id tăng dần (keyset)
+ * - Parse bằng PaymentRef giống TransactionEndpoint, ghi bằng batchUpdate theo từng trang
+ * - Row không parse được giữ NULL, không gắn với đơn thuốc nào
+ * Chạy một lần trên thread riêng sau khi server khởi động, an toàn khi chạy lại
+ */
+public class TransactionLinkBackfill implements Runnable {
+    private static final Logger logger = Logger.getLogger(TransactionLinkBackfill.class.getName());
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String SELECT_SQL = """
+        SELECT id, ref, content FROM transactions
+        WHERE id > ?
+          AND prescription_id IS NULL
+          AND (ref LIKE 'medcard %' OR content LIKE '%medcard %')
+        ORDER BY id
+        LIMIT ?
+        """;
+    private static final String UPDATE_SQL =
+            "UPDATE transactions SET prescription_id = ? WHERE id = ? AND prescription_id IS NULL";
+
+    private final DbManager dbManager;
+
+    public TransactionLinkBackfill(DbManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    /**
+     * Chạy backfill trên một daemon thread
+     */
+    public void startInBackground() {
+        Thread thread = new Thread(this, "transaction-link-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long lastId = 0;
+        long scanned = 0;
+        long linked = 0;
+
+        while (true) {
+            List<Row> rows = dbManager.queryRows(SELECT_SQL, lastId, PAGE_SIZE);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            List<Object[]> updates = new ArrayList<>();
+            for (Row row : rows) {
+                lastId = ((Number) row.get("id")).longValue();
+                Long prescriptionId = PaymentRef.parsePrescriptionId((String) row.get("ref"), (String) row.get("content"));
+                if (prescriptionId != null) {
+                    updates.add(new Object[]{prescriptionId, lastId});
+                }
+            }
+            scanned += rows.size();
+
+            if (!updates.isEmpty()) {
+                if (dbManager.batchUpdate(UPDATE_SQL, updates).length != updates.size()) {
+                    logger.warning("Transaction link backfill dừng ở id " + lastId + " do lỗi database, sẽ chạy lại lần khởi động sau");
+                    return;
+                }
+                linked += updates.size();
+            }
+            if (rows.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+
+        if (scanned > 0) {
+            logger.info("✓ Transaction link backfill: đã gắn " + linked + "/" + scanned + " giao dịch cũ với đơn thuốc");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dnd.server.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timer wheel cho các deadline theo key (id đơn thuốc, session ID...)
+ * - Thời gian chia thành tick, mỗi tick ứng với một ô (bucket = tick & mask) trên vòng
+ * - schedule/cancel O(1), advance chỉ duyệt các ô của những tick đã trôi qua
+ * - Deadline xa hơn một vòng vẫn nằm trong ô của nó, chỉ hết hạn khi đúng tick
+ * Thread-safe (synchronized), advance thường được gọi từ một scheduler duy nhất
+ */
+public class HashedTimerWheel<K> {
+    private final long tickMillis;
+    private final long mask;
+    private final List<Set<K>> buckets;
+    private final Map<K, Long> deadlineTicks = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * @param tickMillis Độ dài một tick (độ chính xác của deadline)
+     * @param wheelSize Số ô trên vòng, làm tròn lên lũy thừa của 2
+     * @param startMillis Thời điểm bắt đầu (thường là System.currentTimeMillis())
+     */
+    public HashedTimerWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new HashSet<>());
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Đặt (hoặc thay) deadline cho key
+     * Deadline đã qua sẽ hết hạn ở lần advance tiếp theo
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        cancel(key);
+        // Làm tròn lên: không bao giờ hết hạn trước deadline
+        long tick = Math.max(currentTick + 1, (deadlineMillis + tickMillis - 1) / tickMillis);
+        buckets.get((int) (tick & mask)).add(key);
+        deadlineTicks.put(key, tick);
+    }
+
+    /**
+     * Hủy deadline của key
+     * @return false nếu key không có trong wheel
+     */
+    public synchronized boolean cancel(K key) {
+        Long tick = deadlineTicks.remove(key);
+        if (tick == null) {
+            return false;
+        }
+        buckets.get((int) (tick & mask)).remove(key);
+        return true;
+    }
+
+    /**
+     * Tiến wheel đến thời điểm nowMillis
+     * @return Các key đã đến deadline (đã được xóa khỏi wheel)
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        long nowTick = nowMillis / tickMillis;
+        if (nowTick <= currentTick) {
+            return new ArrayList<>(0);
+        }
+
+        List<K> expired = new ArrayList<>();
+        // Trôi qua hơn một vòng (ví dụ bị pause lâu) thì chỉ cần duyệt mỗi ô một lần
+        long ticks = Math.min(nowTick - currentTick, buckets.size());
+        for (long i = 1; i <= ticks; i++) {
+            Iterator<K> it = buckets.get((int) ((currentTick + i) & mask)).iterator();
+            while (it.hasNext()) {
+                K key = it.next();
+                if (deadlineTicks.get(key) <= nowTick) {
+                    it.remove();
+                    deadlineTicks.remove(key);
+                    expired.add(key);
+                }
+            }
+        }
+        currentTick = nowTick;
+        return expired;
+    }
+
+    public synchronized boolean contains(K key) {
+        return deadlineTicks.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return deadlineTicks.size();
+    }
+}
@@ -4,6 +4,8 @@ package dnd.server.util;
  * Utility class cho các thao tác chuyển đổi hex
  */
 public class HexUtils {
+    private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+
     /**
      * Chuyển đổi mảng byte sang chuỗi hex
      */
@@ -35,5 +37,19 @@ public class HexUtils {
         }
         return bytes;
     }
-}
 
+    /**
+     * Chuyển đổi mảng byte sang chuỗi hex chữ thường
+     */
+    public static String bytesToHexLower(byte[] bytes) {
+        if (bytes == null) {
+            return "";
+        }
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_LOWER[(bytes[i] >> 4) & 0x0F];
+            chars[i * 2 + 1] = HEX_LOWER[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+}
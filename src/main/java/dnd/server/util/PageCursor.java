@@ -0,0 +1,74 @@
+package dnd.server.util;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Cursor cho keyset pagination: vị trí của row cuối cùng trong trang trước,
+ * gồm giá trị cột sắp xếp (thường là timestamp) và id
+ * Client nhận cursor dưới dạng token Base64 (field "next") và gửi lại qua query param "cursor"
+ */
+public class PageCursor {
+    private static final char SEPARATOR = '|';
+
+    private final String sortValue;
+    private final long id;
+
+    public PageCursor(String sortValue, long id) {
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+    /**
+     * Tạo cursor từ giá trị cột sắp xếp và id của row cuối cùng
+     */
+    public static PageCursor of(Object sortValue, Object id) {
+        return new PageCursor(sortValue != null ? sortValue.toString() : "", ((Number) id).longValue());
+    }
+
+    /**
+     * Encode thành token gửi cho client
+     */
+    public String encode() {
+        String raw = sortValue + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode token từ client
+     * @return null nếu token rỗng
+     * @throws IllegalArgumentException nếu token không hợp lệ
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new PageCursor(raw.substring(0, separator), Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public String getSortValue() {
+        return sortValue;
+    }
+
+    /**
+     * Giá trị sắp xếp dạng Timestamp (cho cột DATETIME/TIMESTAMP)
+     * @throws IllegalArgumentException nếu không phải timestamp hợp lệ
+     */
+    public Timestamp getSortTimestamp() {
+        return Timestamp.valueOf(sortValue);
+    }
+
+    public long getId() {
+        return id;
+    }
+}
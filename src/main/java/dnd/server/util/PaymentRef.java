@@ -0,0 +1,45 @@
+package dnd.server.util;
+
+/**
+ * Nội dung thanh toán của đơn thuốc: "medcard {prescriptionId}"
+ * - QR của đơn thuốc dùng đúng chuỗi này làm ref
+ * - Ngân hàng có thể đưa chuỗi vào ref, hoặc chỉ giữ lại trong content (kèm chữ khác)
+ */
+public class PaymentRef {
+    public static final String PREFIX = "medcard ";
+
+    /**
+     * Chuỗi ref cho đơn thuốc
+     */
+    public static String forPrescription(long prescriptionId) {
+        return PREFIX + prescriptionId;
+    }
+
+    /**
+     * Lấy prescription ID từ ref (ưu tiên) hoặc content của giao dịch
+     * @return null nếu giao dịch không gắn với đơn thuốc hoặc ID không hợp lệ
+     */
+    public static Long parsePrescriptionId(String ref, String content) {
+        String idStr = null;
+        if (ref != null && ref.startsWith(PREFIX)) {
+            idStr = ref.substring(PREFIX.length()).trim();
+        } else if (content != null) {
+            int index = content.indexOf(PREFIX);
+            if (index >= 0) {
+                // Lấy số ID (có thể có khoảng trắng hoặc ký tự khác sau)
+                String[] parts = content.substring(index + PREFIX.length()).trim().split("\\s+");
+                idStr = parts[0];
+            }
+        }
+
+        if (idStr == null || idStr.isEmpty()) {
+            return null;
+        }
+        try {
+            long id = Long.parseLong(idStr);
+            return id > 0 ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
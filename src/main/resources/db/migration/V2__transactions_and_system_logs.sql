@@ -0,0 +1,40 @@
+-- ============================================
+-- V2: Bảng transactions và system_logs
+--   - Trước đây được tạo trong TransactionEndpoint / SystemLogEndpoint ở mỗi request
+--   - Database cũ đã có bảng thì chỉ bổ sung index còn thiếu
+-- ============================================
+
+-- Giao dịch thanh toán nhận từ bank server (QR) hoặc thu tiền mặt
+CREATE TABLE IF NOT EXISTS transactions (
+    id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT,
+    bank_id VARCHAR(64) NOT NULL,
+    amount BIGINT NOT NULL,
+    ref VARCHAR(191) NOT NULL,
+    content TEXT NULL,
+    staff_id VARCHAR(64) NULL,
+    ts_ms BIGINT NOT NULL,
+    idempotency_key VARCHAR(191) NOT NULL,
+    payment_method VARCHAR(16) NOT NULL DEFAULT 'qr',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id),
+    UNIQUE KEY uniq_idem (idempotency_key),
+    INDEX idx_bank (bank_id),
+    INDEX idx_staff (staff_id),
+    INDEX idx_method (payment_method),
+    INDEX idx_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE INDEX IF NOT EXISTS idx_staff ON transactions(staff_id);
+CREATE INDEX IF NOT EXISTS idx_method ON transactions(payment_method);
+
+-- Log thao tác hệ thống (client gửi qua POST /api/system/logs, giao dịch, hủy thanh toán...)
+CREATE TABLE IF NOT EXISTS system_logs (
+    id INTEGER PRIMARY KEY AUTO_INCREMENT,
+    action VARCHAR(50) NOT NULL,
+    admin_staff_id VARCHAR(50),
+    description TEXT,
+    created_at VARCHAR(50) NOT NULL,
+    INDEX idx_action (action),
+    INDEX idx_admin (admin_staff_id),
+    INDEX idx_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,8 @@
+-- ============================================
+-- V3: Ảnh đại diện nhân viên lưu trên MinIO
+--   - Thêm cột avatar_url thay cho cột avatar (BLOB) cũ
+--   - Không xóa cột avatar: database mà GetStaffProfileEndpoint thêm avatar_url trước
+--     vẫn còn ảnh BLOB trong cột này, chuyển dữ liệu rồi mới xóa bằng tay
+--   - Trước đây được kiểm tra trong GetStaffProfileEndpoint / UploadStaffAvatarEndpoint
+-- ============================================
+ALTER TABLE staff_info ADD COLUMN IF NOT EXISTS avatar_url VARCHAR(500) NULL COMMENT 'URL ảnh đại diện trên MinIO';
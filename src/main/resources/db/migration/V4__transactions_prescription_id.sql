@@ -0,0 +1,14 @@
+-- ============================================
+-- V4: Liên kết giao dịch với đơn thuốc bằng cột prescription_id (có index)
+--   - TransactionEndpoint parse "medcard {id}" một lần khi nhận giao dịch
+--   - Trạng thái thanh toán, hủy thanh toán và tự động hủy đơn quá hạn tra theo cột này
+--   - Giao dịch cũ có ref đúng dạng "medcard {id}" được điền ngay tại đây,
+--     giao dịch chỉ có "medcard {id}" trong content được TransactionLinkBackfill điền sau khi khởi động
+-- ============================================
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS prescription_id BIGINT NULL AFTER ref;
+CREATE INDEX IF NOT EXISTS idx_prescription ON transactions(prescription_id, created_at);
+
+UPDATE transactions
+SET prescription_id = CAST(SUBSTRING(ref, 9) AS UNSIGNED)
+WHERE prescription_id IS NULL
+  AND ref REGEXP '^medcard [0-9]+$';
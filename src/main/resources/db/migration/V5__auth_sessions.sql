@@ -0,0 +1,15 @@
+-- ============================================
+-- V5: Bảng auth_sessions cho SessionStore dùng chung giữa các node (server.sessionStore=jdbc)
+--   - auth/start, auth/verify, auth/complete không còn phải vào cùng một node
+--   - record: [version][createdAt][độ dài challenge][challengeServer], static key không được lưu
+--   - idx_expires cho việc dọn session hết hạn, idx_card_expires cho giới hạn handshake mỗi thẻ
+-- ============================================
+CREATE TABLE IF NOT EXISTS auth_sessions (
+    session_id CHAR(32) NOT NULL COMMENT 'Temp session ID trả về ở auth/start',
+    card_id VARCHAR(64) NOT NULL COMMENT 'ID thẻ gửi ở auth/start',
+    record VARBINARY(255) NOT NULL COMMENT 'Dữ liệu handshake dạng nhị phân',
+    expires_at BIGINT NOT NULL COMMENT 'Thời điểm hết hạn (epoch ms)',
+    PRIMARY KEY (session_id),
+    INDEX idx_expires (expires_at),
+    INDEX idx_card_expires (card_id, expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='Handshake xác thực thẻ đang chờ';
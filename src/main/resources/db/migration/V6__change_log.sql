@@ -0,0 +1,15 @@
+-- ============================================
+-- V6: Outbox change_log cho delta sync (GET /api/sync)
+--   - Endpoint ghi ghi thêm một dòng trong cùng transaction, id là change token tăng dần
+--   - op: U = tạo/sửa (client lấy bản mới nhất), D = đã xóa (tombstone)
+--   - idx_changed cho việc dọn các dòng quá server.changeLogRetentionDays
+-- ============================================
+CREATE TABLE IF NOT EXISTS change_log (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT 'Change token',
+    entity VARCHAR(20) NOT NULL COMMENT 'medicine, prescription, staff, card',
+    entity_id VARCHAR(64) NOT NULL COMMENT 'Khóa của bản ghi (code, id, staff_id, card_id)',
+    op CHAR(1) NOT NULL COMMENT 'U = tạo/sửa, D = xóa',
+    changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (id),
+    INDEX idx_changed (changed_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='Thay đổi cho delta sync';
@@ -0,0 +1,297 @@
+package dnd.server.service;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dnd.server.crypto.CryptoUtils;
+import dnd.server.util.HexUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hai node MedCardServer (hai process riêng, server.sessionStore=jdbc) dùng chung một MariaDB nhúng
+ * - auth/start ở node A, auth/verify và auth/complete ở node B
+ * - Session chỉ complete được một lần dù gọi ở node nào
+ * - Thẻ bị vô hiệu hóa ở node B thì handshake đang chờ (bắt đầu ở node A) không dùng được ở cả hai node
+ * Thẻ được giả lập trong test: RSA key pair và static key mã hóa bằng master key của AuthenticationService
+ */
+class MultiNodeAuthTest {
+    private static final byte[] MASTER_KEY = new byte[32];
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+
+    static {
+        Arrays.fill(MASTER_KEY, (byte) 0x42); // Giống placeholder trong AuthenticationService
+    }
+
+    private static DB db;
+    private static String jdbcUrl;
+    private static Node nodeA;
+    private static Node nodeB;
+    private static final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    @BeforeAll
+    static void startCluster() throws Exception {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0); // Port trống bất kỳ
+        if ("root".equals(System.getProperty("user.name"))) {
+            config.addArg("--user=root"); // mariadbd từ chối chạy bằng root nếu không chỉ định (container CI)
+        }
+        db = DB.newEmbeddedDB(config.build());
+        db.start();
+        // Database được tạo qua JDBC (createDatabaseIfNotExist), không cần client mariadb (libncurses)
+        jdbcUrl = "jdbc:mysql://localhost:" + db.getConfiguration().getPort()
+            + "/medcard?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&createDatabaseIfNotExist=true";
+
+        // Node A chạy migration trước, node B khởi động trên schema đã có
+        nodeA = Node.start("a", jdbcUrl);
+        nodeB = Node.start("b", jdbcUrl);
+    }
+
+    @AfterAll
+    static void stopCluster() throws Exception {
+        if (nodeA != null) {
+            nodeA.stop();
+        }
+        if (nodeB != null) {
+            nodeB.stop();
+        }
+        if (db != null) {
+            db.stop();
+        }
+    }
+
+    @Test
+    void handshakeStartedOnOneNodeCompletesOnTheOther() throws Exception {
+        Card card = Card.issue(jdbcUrl);
+
+        JsonObject start = post(nodeA, "/api/auth/start", json("cardId", card.cardId));
+        assertEquals(200, start.get("statusCode").getAsInt(), start.toString());
+        String sessionId = start.getAsJsonObject("data").get("sessionId").getAsString();
+        byte[] challengeServer = HexUtils.hexToBytes(start.getAsJsonObject("data").get("challengeServer").getAsString());
+        byte[] challengeCard = CryptoUtils.generateChallenge();
+
+        JsonObject verify = post(nodeB, "/api/auth/verify", verifyBody(sessionId, card.sign(challengeServer), challengeCard));
+        assertEquals(200, verify.get("statusCode").getAsInt(), verify.toString());
+        assertTrue(verify.getAsJsonObject("data").get("valid").getAsBoolean());
+
+        JsonObject complete = post(nodeB, "/api/auth/complete", completeBody(sessionId, challengeCard));
+        assertEquals(200, complete.get("statusCode").getAsInt(), complete.toString());
+        // Node B giải mã lại static key từ card_keys (auth_sessions không chứa key) và tính đúng cryptogram
+        assertArrayEquals(CryptoUtils.computeServerCryptogram(card.staticKey, challengeCard),
+            HexUtils.hexToBytes(complete.getAsJsonObject("data").get("cryptogram").getAsString()));
+
+        // Mỗi handshake chỉ complete được một lần, kể cả ở node khác
+        JsonObject again = post(nodeA, "/api/auth/complete", completeBody(sessionId, challengeCard));
+        assertEquals(400, again.get("statusCode").getAsInt(), again.toString());
+    }
+
+    @Test
+    void cardRevokedOnOneNodeCannotFinishHandshakeOnAnyNode() throws Exception {
+        Card card = Card.issue(jdbcUrl);
+
+        JsonObject start = post(nodeA, "/api/auth/start", json("cardId", card.cardId));
+        assertEquals(200, start.get("statusCode").getAsInt(), start.toString());
+        String sessionId = start.getAsJsonObject("data").get("sessionId").getAsString();
+        byte[] challengeServer = HexUtils.hexToBytes(start.getAsJsonObject("data").get("challengeServer").getAsString());
+        byte[] challengeCard = CryptoUtils.generateChallenge();
+
+        JsonObject revoke = send(nodeB, "PUT", "/api/cards/" + card.cardId + "/revoke", "{}");
+        assertEquals(1, revoke.getAsJsonObject("data").get("affected").getAsInt(), revoke.toString());
+
+        JsonObject verify = post(nodeB, "/api/auth/verify", verifyBody(sessionId, card.sign(challengeServer), challengeCard));
+        assertEquals(400, verify.get("statusCode").getAsInt(), verify.toString());
+
+        // Node A vẫn còn thẻ trong CardCredentialCache nhưng session đọc thẻ thẳng từ database
+        JsonObject complete = post(nodeA, "/api/auth/complete", completeBody(sessionId, challengeCard));
+        assertEquals(400, complete.get("statusCode").getAsInt(), complete.toString());
+    }
+
+    private static JsonObject verifyBody(String sessionId, byte[] signature, byte[] challengeCard) {
+        JsonObject body = completeBody(sessionId, challengeCard);
+        body.addProperty("signature", HexUtils.bytesToHex(signature));
+        return body;
+    }
+
+    private static JsonObject completeBody(String sessionId, byte[] challengeCard) {
+        JsonObject body = json("sessionId", sessionId);
+        body.addProperty("challengeCard", HexUtils.bytesToHex(challengeCard));
+        return body;
+    }
+
+    private static JsonObject json(String name, String value) {
+        JsonObject body = new JsonObject();
+        body.addProperty(name, value);
+        return body;
+    }
+
+    private static JsonObject post(Node node, String path, JsonObject body) throws Exception {
+        return send(node, "POST", path, body.toString());
+    }
+
+    private static JsonObject send(Node node, String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + node.port + path))
+            .timeout(Duration.ofSeconds(10))
+            .header("Content-Type", "application/json")
+            .method(method, HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        return JsonParser.parseString(response.body()).getAsJsonObject();
+    }
+
+    /**
+     * Một node MedCardServer chạy trong process riêng (singleton, cache và SessionStore không dùng chung với node kia)
+     * Thư mục làm việc riêng chứa db.properties, server.properties và minio.properties của node
+     */
+    private static final class Node {
+        final String name;
+        final int port;
+        final Process process;
+        final Path log;
+
+        private Node(String name, int port, Process process, Path log) {
+            this.name = name;
+            this.port = port;
+            this.process = process;
+            this.log = log;
+        }
+
+        static Node start(String name, String jdbcUrl) throws Exception {
+            Path dir = Files.createTempDirectory("medcard-node-" + name);
+            Files.writeString(dir.resolve("db.properties"), String.join("\n",
+                "db.url=" + jdbcUrl,
+                "db.driver=com.mysql.cj.jdbc.Driver",
+                "db.username=root",
+                "db.password=",
+                "db.autoMigrate=true",
+                ""));
+            Files.writeString(dir.resolve("server.properties"), String.join("\n",
+                "server.sessionStore=jdbc",
+                "server.tableVersionEtags=false",
+                "server.workerThreads=4",
+                ""));
+            // MinIO client chỉ được tạo (không kết nối) khi dựng router, default "localhost:9000" thiếu scheme
+            Files.writeString(dir.resolve("minio.properties"), "minio.endpoint=http://localhost:9000\n");
+
+            int port = freePort();
+            Path log = dir.resolve("server.log");
+            String classpath = System.getProperty("medcard.serverClasspath", System.getProperty("java.class.path"));
+            Process process = new ProcessBuilder(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", classpath, "dnd.server.MedCardServer", Integer.toString(port))
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+            Node node = new Node(name, port, process, log);
+            node.awaitHealthy();
+            return node;
+        }
+
+        private void awaitHealthy() throws Exception {
+            long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Node " + name + " exited:\n" + Files.readString(log));
+                }
+                try {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/health"))
+                        .timeout(Duration.ofSeconds(2))
+                        .build();
+                    if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    // Chưa bind port
+                }
+                Thread.sleep(250);
+            }
+            stop();
+            throw new IllegalStateException("Node " + name + " not healthy after " + STARTUP_TIMEOUT + ":\n" + Files.readString(log));
+        }
+
+        void stop() throws InterruptedException {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+
+        private static int freePort() throws IOException {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                return socket.getLocalPort();
+            }
+        }
+    }
+
+    /**
+     * Thẻ giả lập: ghi thẳng vào card_keys như IssueCardEndpoint
+     */
+    private static final class Card {
+        final String cardId;
+        final byte[] staticKey;
+        final KeyPair keyPair;
+
+        private Card(String cardId, byte[] staticKey, KeyPair keyPair) {
+            this.cardId = cardId;
+            this.staticKey = staticKey;
+            this.keyPair = keyPair;
+        }
+
+        static Card issue(String jdbcUrl) throws Exception {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(1024);
+            Card card = new Card(CryptoUtils.randomHex(16).toUpperCase(), CryptoUtils.randomBytes(32), generator.generateKeyPair());
+
+            byte[] iv = CryptoUtils.randomBytes(16);
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(MASTER_KEY, "AES"), new IvParameterSpec(iv));
+            byte[] encrypted = cipher.doFinal(card.staticKey);
+
+            try (Connection conn = DriverManager.getConnection(jdbcUrl, "root", "");
+                 PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO card_keys (card_id, static_key_encrypted, static_key_iv, public_key_rsa, status) VALUES (?, ?, ?, ?, 1)")) {
+                stmt.setString(1, card.cardId);
+                stmt.setBytes(2, encrypted);
+                stmt.setBytes(3, iv);
+                stmt.setBytes(4, card.keyPair.getPublic().getEncoded());
+                assertNotEquals(0, stmt.executeUpdate());
+            }
+            return card;
+        }
+
+        byte[] sign(byte[] challengeServer) throws Exception {
+            Signature signature = Signature.getInstance("SHA1withRSA");
+            signature.initSign(keyPair.getPrivate());
+            signature.update(challengeServer);
+            return signature.sign();
+        }
+    }
+}